@@ -0,0 +1,71 @@
+package ian.phillip.norton.sudoku.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ian.phillip.norton.sudoku.board.PackedSudokuBoard;
+import ian.phillip.norton.sudoku.board.StandardSudokuBoard;
+
+/**
+ * Cost of the board operations the solver leans on: validity checks and
+ * copies.
+ * 
+ * @author Ian Norton
+ * 
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BoardBenchmark {
+	@Param({Corpus.EASY, Corpus.HARD, Corpus.SEVENTEEN_CLUE})
+	public String corpus;
+	
+	private StandardSudokuBoard[] boards;
+	private PackedSudokuBoard[] packedBoards;
+	private int next;
+	
+	@Setup
+	public void setUp() throws Exception {
+		this.packedBoards = Corpus.load(this.corpus);
+		this.boards = new StandardSudokuBoard[this.packedBoards.length];
+		for (int index = 0; index < this.boards.length; index++) {
+			this.boards[index] = this.packedBoards[index].toStandardBoard();
+		}
+	}
+	
+	@Benchmark
+	public boolean isValid() {
+		return this.boards[this.nextIndex()].isValid();
+	}
+	
+	@Benchmark
+	public StandardSudokuBoard copy() {
+		return new StandardSudokuBoard(this.boards[this.nextIndex()]);
+	}
+	
+	@Benchmark
+	public PackedSudokuBoard copyPacked() {
+		return new PackedSudokuBoard(this.packedBoards[this.nextIndex()]);
+	}
+	
+	private int nextIndex() {
+		int index = this.next;
+		this.next = index + 1 == this.boards.length ? 0 : index + 1;
+		
+		return index;
+	}
+}
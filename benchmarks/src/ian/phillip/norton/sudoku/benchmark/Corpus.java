@@ -0,0 +1,56 @@
+package ian.phillip.norton.sudoku.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.List;
+
+import ian.phillip.norton.sudoku.board.PackedSudokuBoard;
+import ian.phillip.norton.sudoku.exceptions.SudokuFileFormatException;
+import ian.phillip.norton.sudoku.loader.StandardSudokuLineFileLoader;
+
+/**
+ * Loads the graded puzzle corpora bundled with the benchmarks.  Each corpus
+ * is a line format file of puzzles with exactly one solution
+ *  - easy: 36 givens, solvable without guessing
+ *  - hard: well known hard puzzles and minimal puzzles of 21-26 givens
+ *  - 17clue: puzzles with only 17 givens, the fewest a unique puzzle can have
+ * 
+ * @author Ian Norton
+ * 
+ */
+public final class Corpus {
+	public static final String EASY = "easy";
+	public static final String HARD = "hard";
+	public static final String SEVENTEEN_CLUE = "17clue";
+	
+	private Corpus() {
+	}
+	
+	/**
+	 * Loads every puzzle in the named corpus
+	 * 
+	 * @param name
+	 * @return
+	 * @throws IOException
+	 * @throws SudokuFileFormatException
+	 */
+	public static PackedSudokuBoard[] load(String name) throws IOException, SudokuFileFormatException {
+		String resource = "/corpus/" + name + ".txt";
+		InputStream stream = Corpus.class.getResourceAsStream(resource);
+		if (stream == null) {
+			throw new IOException("No corpus named " + name);
+		}
+		
+		List<PackedSudokuBoard> boards = new ArrayList<PackedSudokuBoard>();
+		try (StandardSudokuLineFileLoader loader = new StandardSudokuLineFileLoader(Channels.newChannel(stream), resource)) {
+			PackedSudokuBoard board;
+			while ((board = loader.load()) != null) {
+				boards.add(board);
+			}
+		}
+		
+		return boards.toArray(new PackedSudokuBoard[0]);
+	}
+}
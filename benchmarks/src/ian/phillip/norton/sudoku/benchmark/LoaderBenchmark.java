@@ -0,0 +1,83 @@
+package ian.phillip.norton.sudoku.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ian.phillip.norton.sudoku.board.PackedSudokuBoard;
+import ian.phillip.norton.sudoku.board.StandardSudokuBoard;
+import ian.phillip.norton.sudoku.exceptions.SudokuFileFormatException;
+import ian.phillip.norton.sudoku.loader.StandardSudokuBoardFileLoader;
+import ian.phillip.norton.sudoku.writer.StandardSudokuFileWriter;
+
+/**
+ * Time to load one puzzle file.  The corpus is written out as individual
+ * puzzle files in a temporary directory before measuring.
+ * 
+ * @author Ian Norton
+ * 
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LoaderBenchmark {
+	@Param({Corpus.EASY, Corpus.SEVENTEEN_CLUE})
+	public String corpus;
+	
+	private File directory;
+	private File[] files;
+	private int next;
+	
+	@Setup
+	public void setUp() throws Exception {
+		PackedSudokuBoard[] boards = Corpus.load(this.corpus);
+		this.directory = Files.createTempDirectory("sudoku-benchmark").toFile();
+		this.files = new File[boards.length];
+		for (int index = 0; index < boards.length; index++) {
+			this.files[index] = new File(this.directory, "puzzle" + index + ".txt");
+			StandardSudokuFileWriter.writeToFile(this.files[index], boards[index]);
+		}
+	}
+	
+	@TearDown
+	public void tearDown() {
+		for (File file : this.files) {
+			file.delete();
+		}
+		this.directory.delete();
+	}
+	
+	@Benchmark
+	public StandardSudokuBoard load() throws IOException, SudokuFileFormatException {
+		return new StandardSudokuBoardFileLoader(this.files[this.nextIndex()]).load();
+	}
+	
+	@Benchmark
+	public PackedSudokuBoard loadPacked() throws IOException, SudokuFileFormatException {
+		return new StandardSudokuBoardFileLoader(this.files[this.nextIndex()]).loadPacked();
+	}
+	
+	private int nextIndex() {
+		int index = this.next;
+		this.next = index + 1 == this.files.length ? 0 : index + 1;
+		
+		return index;
+	}
+}
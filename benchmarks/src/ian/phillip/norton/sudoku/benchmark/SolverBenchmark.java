@@ -0,0 +1,96 @@
+package ian.phillip.norton.sudoku.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ian.phillip.norton.sudoku.board.PackedSudokuBoard;
+import ian.phillip.norton.sudoku.board.StandardSudokuBoard;
+import ian.phillip.norton.sudoku.solver.BitSlicedSudokuSolver;
+import ian.phillip.norton.sudoku.solver.DancingLinksSudokuSolver;
+import ian.phillip.norton.sudoku.solver.StandardSudokuSolver;
+
+/**
+ * Time to solve one puzzle from each corpus.  Each invocation solves the
+ * next puzzle in the corpus so the results average over all of them.  The
+ * bit sliced solver is given a full set of lanes, cycling through the
+ * corpus, and timed per puzzle.
+ * 
+ * @author Ian Norton
+ * 
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SolverBenchmark {
+	@Param({Corpus.EASY, Corpus.HARD, Corpus.SEVENTEEN_CLUE})
+	public String corpus;
+	
+	private StandardSudokuBoard[] boards;
+	private PackedSudokuBoard[] packedBoards;
+	private StandardSudokuSolver standardSolver;
+	private DancingLinksSudokuSolver dancingLinksSolver;
+	private BitSlicedSudokuSolver bitSlicedSolver;
+	private List<PackedSudokuBoard> laneBoards;
+	private int next;
+	
+	@Setup
+	public void setUp() throws Exception {
+		this.packedBoards = Corpus.load(this.corpus);
+		this.boards = new StandardSudokuBoard[this.packedBoards.length];
+		for (int index = 0; index < this.boards.length; index++) {
+			this.boards[index] = this.packedBoards[index].toStandardBoard();
+		}
+		this.standardSolver = new StandardSudokuSolver();
+		this.dancingLinksSolver = new DancingLinksSudokuSolver();
+		this.bitSlicedSolver = new BitSlicedSudokuSolver();
+		this.laneBoards = new ArrayList<PackedSudokuBoard>(BitSlicedSudokuSolver.LANES);
+		for (int lane = 0; lane < BitSlicedSudokuSolver.LANES; lane++) {
+			this.laneBoards.add(this.packedBoards[lane % this.packedBoards.length]);
+		}
+	}
+	
+	@Benchmark
+	public StandardSudokuBoard standardSolve() {
+		return this.standardSolver.solve(this.boards[this.nextIndex()]);
+	}
+	
+	@Benchmark
+	public PackedSudokuBoard standardSolvePacked() {
+		return this.standardSolver.solve(this.packedBoards[this.nextIndex()]);
+	}
+	
+	@Benchmark
+	public PackedSudokuBoard dancingLinksSolvePacked() {
+		return this.dancingLinksSolver.solve(this.packedBoards[this.nextIndex()]);
+	}
+	
+	@Benchmark
+	@OperationsPerInvocation(BitSlicedSudokuSolver.LANES)
+	public List<PackedSudokuBoard> bitSlicedSolveLanes() {
+		return this.bitSlicedSolver.solveAll(this.laneBoards);
+	}
+	
+	private int nextIndex() {
+		int index = this.next;
+		this.next = index + 1 == this.boards.length ? 0 : index + 1;
+		
+		return index;
+	}
+}
@@ -0,0 +1,52 @@
+package ian.phillip.norton.sudoku;
+
+/**
+ * Helpers shared by the command line interfaces for reading the values of
+ * options.  Problems are thrown as IllegalArgumentExceptions describing
+ * them, which each interface reports along with its usage.
+ * 
+ * @author Ian Norton
+ * 
+ */
+final class CommandLineArguments {
+	private CommandLineArguments() {
+	}
+	
+	/**
+	 * Gets the value following an option
+	 * 
+	 * @param args
+	 * @param index the index of the value
+	 * @return
+	 */
+	static String value(String[] args, int index) {
+		if (index >= args.length) {
+			throw new IllegalArgumentException("Missing value for option " + args[index - 1]);
+		}
+		
+		return args[index];
+	}
+	
+	/**
+	 * Gets the value following an option as an integer of at least minimum
+	 * 
+	 * @param args
+	 * @param index the index of the value
+	 * @param minimum
+	 * @return
+	 */
+	static int integerValue(String[] args, int index, int minimum) {
+		String value = CommandLineArguments.value(args, index);
+		try {
+			int parsed = Integer.parseInt(value);
+			if (parsed >= minimum) {
+				return parsed;
+			}
+		} catch (NumberFormatException e) {
+			// fall through to the error below
+		}
+		
+		throw new IllegalArgumentException("Option " + args[index - 1] + " needs an integer of at least " + minimum +
+				", not " + value);
+	}
+}
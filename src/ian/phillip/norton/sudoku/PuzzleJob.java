@@ -0,0 +1,294 @@
+package ian.phillip.norton.sudoku;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import ian.phillip.norton.sudoku.board.PackedSudokuBoard;
+import ian.phillip.norton.sudoku.board.SudokuBoard;
+import ian.phillip.norton.sudoku.exceptions.InvalidBoardTypeException;
+import ian.phillip.norton.sudoku.exceptions.SolveBudgetExceededException;
+import ian.phillip.norton.sudoku.generator.GeneratedPuzzle;
+import ian.phillip.norton.sudoku.generator.SudokuPuzzleGenerator;
+import ian.phillip.norton.sudoku.solver.BitSlicedSudokuSolver;
+import ian.phillip.norton.sudoku.solver.SolutionCounter;
+import ian.phillip.norton.sudoku.solver.SolveBudget;
+import ian.phillip.norton.sudoku.solver.SolveStatistics;
+import ian.phillip.norton.sudoku.solver.StandardSudokuSolver;
+import ian.phillip.norton.sudoku.solver.SudokuSolver;
+
+/**
+ * A single puzzle moving through the load, solve, and write stages of a
+ * PuzzlePipeline, or through the generate and write stages when puzzles are
+ * made rather than loaded.  A job may also hold a batch of puzzles to be
+ * solved together.  Each stage records either the board or a message
+ * describing why there is no board to hand to the next stage, so a job never
+ * throws.
+ * 
+ * @author Ian Norton
+ * 
+ */
+class PuzzleJob {
+	private final int sequence;
+	private SudokuBoard board;
+	private String message;
+	private SolveStatistics statistics;
+	private GeneratedPuzzle generated;
+	/**
+	 * Boards of a job holding many puzzles, null for a single puzzle
+	 */
+	private List<PackedSudokuBoard> batch;
+	/**
+	 * Why each board of the batch is missing, null where it is not
+	 */
+	private List<String> batchMessages;
+	
+	/**
+	 * @param sequence the position of the puzzle in its batch
+	 */
+	PuzzleJob(int sequence) {
+		this.sequence = sequence;
+	}
+	
+	/**
+	 * Records the loaded board
+	 * 
+	 * @param board
+	 */
+	void setBoard(SudokuBoard board) {
+		this.board = board;
+	}
+	
+	/**
+	 * Records that a stage failed and why
+	 * 
+	 * @param e
+	 */
+	void fail(Exception e) {
+		this.board = null;
+		this.message = e.getMessage() != null ? e.getMessage() : e.toString();
+	}
+	
+	/**
+	 * Solves the loaded board, if there is one
+	 * 
+	 * @param solver
+	 */
+	void solve(SudokuSolver solver) {
+		if (this.message != null) {
+			return;
+		}
+		
+		try {
+			this.board = solver.solve(this.board);
+		} catch (InvalidBoardTypeException | RuntimeException e) {
+			this.fail(e);
+		}
+	}
+	
+	/**
+	 * Counts the solutions of the loaded board, if there is one, up to the
+	 * limit.  The count is recorded as the message in place of a board.
+	 * 
+	 * @param counter
+	 * @param limit the number of solutions after which to stop counting
+	 */
+	void countSolutions(SolutionCounter counter, int limit) {
+		if (this.message != null) {
+			return;
+		}
+		
+		try {
+			this.recordCount(counter.countSolutions(this.board, limit), limit);
+		} catch (InvalidBoardTypeException | RuntimeException e) {
+			this.fail(e);
+		}
+	}
+	
+	/**
+	 * Solves the loaded board, if there is one, within a budget.  Going over
+	 * budget is recorded as the message.
+	 * 
+	 * @param solver
+	 * @param budget
+	 */
+	void solve(StandardSudokuSolver solver, SolveBudget budget) {
+		if (this.message != null) {
+			return;
+		}
+		
+		try {
+			this.board = solver.solve(this.board, budget);
+		} catch (InvalidBoardTypeException | SolveBudgetExceededException | RuntimeException e) {
+			this.fail(e);
+		}
+	}
+	
+	/**
+	 * Counts the solutions of the loaded board, if there is one, up to the
+	 * limit and within a budget.  The count, or going over budget, is
+	 * recorded as the message in place of a board.
+	 * 
+	 * @param solver
+	 * @param limit the number of solutions after which to stop counting
+	 * @param budget
+	 */
+	void countSolutions(StandardSudokuSolver solver, int limit, SolveBudget budget) {
+		if (this.message != null) {
+			return;
+		}
+		
+		try {
+			this.recordCount(solver.countSolutions(this.board, limit, budget), limit);
+		} catch (InvalidBoardTypeException | SolveBudgetExceededException | RuntimeException e) {
+			this.fail(e);
+		}
+	}
+	
+	/**
+	 * Records a solution count as the message in place of the board
+	 * 
+	 * @param count
+	 * @param limit the number of solutions after which counting stopped
+	 */
+	private void recordCount(int count, int limit) {
+		this.board = null;
+		if (count == 0) {
+			this.message = "No Solution";
+		} else {
+			this.message = (count >= limit ? "At least " : "") + count + (count == 1 ? " solution" : " solutions");
+		}
+	}
+	
+	/**
+	 * Records the loaded boards of a job holding many puzzles
+	 * 
+	 * @param boards
+	 * @param messages why each board could not be loaded, null where it was
+	 */
+	void setBatch(List<PackedSudokuBoard> boards, List<String> messages) {
+		this.batch = boards;
+		this.batchMessages = messages;
+	}
+	
+	/**
+	 * Solves every loaded board of the batch together, replacing each with
+	 * its solution or null if it has none
+	 * 
+	 * @param solver
+	 */
+	void solveBatch(BitSlicedSudokuSolver solver) {
+		List<PackedSudokuBoard> loaded = new ArrayList<PackedSudokuBoard>(this.batch.size());
+		for (int index = 0; index < this.batch.size(); index++) {
+			if (this.batchMessages.get(index) == null) {
+				loaded.add(this.batch.get(index));
+			}
+		}
+		
+		List<PackedSudokuBoard> solved;
+		String failure = null;
+		try {
+			solved = solver.solveAll(loaded);
+		} catch (RuntimeException e) {
+			solved = null;
+			failure = e.getMessage() != null ? e.getMessage() : e.toString();
+		}
+		
+		int next = 0;
+		for (int index = 0; index < this.batch.size(); index++) {
+			if (this.batchMessages.get(index) != null) {
+				continue;
+			}
+			
+			if (solved == null) {
+				this.batch.set(index, null);
+				this.batchMessages.set(index, failure);
+			} else {
+				this.batch.set(index, solved.get(next++));
+			}
+		}
+	}
+	
+	/**
+	 * Gets the boards of a job holding many puzzles, solved once the job has
+	 * been through a worker, or null for a single puzzle
+	 * 
+	 * @return
+	 */
+	List<PackedSudokuBoard> getBatch() {
+		return this.batch;
+	}
+	
+	/**
+	 * Gets why each board of the batch is missing, null where it is not
+	 * 
+	 * @return
+	 */
+	List<String> getBatchMessages() {
+		return this.batchMessages;
+	}
+	
+	/**
+	 * Generates the puzzle for this job's sequence number, recording it as
+	 * the board
+	 * 
+	 * @param generator
+	 */
+	void generate(SudokuPuzzleGenerator generator) {
+		try {
+			this.generated = generator.generate(this.sequence);
+			this.board = this.generated.getPuzzle();
+		} catch (RuntimeException e) {
+			this.fail(e);
+		}
+	}
+	
+	/**
+	 * Gets the generated puzzle, null if the job was not generated or
+	 * generating failed
+	 * 
+	 * @return
+	 */
+	GeneratedPuzzle getGenerated() {
+		return this.generated;
+	}
+	
+	/**
+	 * Records the statistics of the solve
+	 * 
+	 * @param statistics
+	 */
+	void setStatistics(SolveStatistics statistics) {
+		this.statistics = statistics;
+	}
+	
+	/**
+	 * Gets the statistics of the solve, null if none were kept
+	 * 
+	 * @return
+	 */
+	SolveStatistics getStatistics() {
+		return this.statistics;
+	}
+	
+	int getSequence() {
+		return this.sequence;
+	}
+	
+	/**
+	 * Gets the solved board, null if there is no solution or a stage failed
+	 * 
+	 * @return
+	 */
+	SudokuBoard getBoard() {
+		return this.board;
+	}
+	
+	/**
+	 * Gets the message describing why a stage failed, null if none did
+	 * 
+	 * @return
+	 */
+	String getMessage() {
+		return this.message;
+	}
+}
@@ -0,0 +1,208 @@
+package ian.phillip.norton.sudoku;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Loads, solves, and writes a stream of puzzles.  What is done to each job is
+ * up to the workers, normally solving it but possibly just checking it.
+ * 
+ * With more than one thread the stages run concurrently.  A single thread
+ * pulls jobs from the source in order, the solving threads each use their own
+ * worker, and the calling thread hands results to the sink back in the
+ * original order.  The number of jobs between loading and writing is capped
+ * so memory use stays bounded however many puzzles there are.
+ * 
+ * A stream of puzzles whose results are wanted as soon as they are ready,
+ * such as one read from a pipe, can be run staged even with one solving
+ * thread, so the sink is told whenever it has to wait and can pass on what
+ * it has written so far.  It may also take results as they finish rather
+ * than in order.
+ * 
+ * @author Ian Norton
+ * 
+ */
+class PuzzlePipeline {
+	/**
+	 * Number of jobs per solving thread allowed between the load and write
+	 * stages at once
+	 */
+	private static final int JOBS_IN_FLIGHT_PER_THREAD = 4;
+	
+	private final int threads;
+	private final Supplier<Consumer<PuzzleJob>> workerFactory;
+	
+	/**
+	 * @param threads number of solving threads
+	 * @param workerFactory creates the worker for each solving thread
+	 */
+	PuzzlePipeline(int threads, Supplier<Consumer<PuzzleJob>> workerFactory) {
+		this.threads = threads;
+		this.workerFactory = workerFactory;
+	}
+	
+	/**
+	 * Runs every job from the source through a worker and into the sink.
+	 * Returns once all have been written.
+	 * 
+	 * @param source
+	 * @param sink
+	 * @throws IOException if the source could not be read or the sink could
+	 * not be written
+	 */
+	void run(JobSource source, JobSink sink) throws IOException {
+		if (this.threads > 1) {
+			this.runStaged(source, sink, true);
+			return;
+		}
+		
+		Consumer<PuzzleJob> worker = this.workerFactory.get();
+		PuzzleJob job;
+		for (int sequence = 0; (job = source.next(sequence)) != null; sequence++) {
+			worker.accept(job);
+			sink.write(job);
+		}
+	}
+	
+	/**
+	 * Runs every job from the source through a worker and into the sink with
+	 * each stage on its own threads, however many solving threads there are.
+	 * The sink's idle method is called whenever no finished job is ready for
+	 * it.  Returns once all have been written.
+	 * 
+	 * @param source
+	 * @param sink
+	 * @param ordered whether jobs are written in the order they came from
+	 * the source, rather than as they finish
+	 * @throws IOException if the source could not be read or the sink could
+	 * not be written
+	 */
+	void runStaged(JobSource source, JobSink sink, boolean ordered) throws IOException {
+		int capacity = this.threads * JOBS_IN_FLIGHT_PER_THREAD;
+		BlockingQueue<PuzzleJob> toSolve = new ArrayBlockingQueue<PuzzleJob>(capacity);
+		BlockingQueue<PuzzleJob> toWrite = new ArrayBlockingQueue<PuzzleJob>(capacity + 1);
+		Semaphore inFlight = new Semaphore(capacity);
+		PuzzleJob endOfInput = new PuzzleJob(-1);
+		AtomicInteger jobCount = new AtomicInteger();
+		AtomicReference<Exception> sourceFailure = new AtomicReference<Exception>();
+		ExecutorService executor = Executors.newFixedThreadPool(this.threads + 1);
+		
+		try {
+			executor.execute(() -> {
+				try {
+					int sequence = 0;
+					try {
+						PuzzleJob job;
+						for (inFlight.acquire(); (job = source.next(sequence)) != null; inFlight.acquire()) {
+							toSolve.put(job);
+							sequence++;
+						}
+					} catch (IOException | RuntimeException e) {
+						// stop reading and report it once everything read so
+						// far has been written
+						sourceFailure.set(e);
+					}
+					for (int thread = 0; thread < this.threads; thread++) {
+						toSolve.put(endOfInput);
+					}
+					jobCount.set(sequence);
+					toWrite.put(endOfInput);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			});
+			
+			for (int thread = 0; thread < this.threads; thread++) {
+				executor.execute(() -> {
+					Consumer<PuzzleJob> worker = this.workerFactory.get();
+					try {
+						for (PuzzleJob job = toSolve.take(); job != endOfInput; job = toSolve.take()) {
+							worker.accept(job);
+							toWrite.put(job);
+						}
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				});
+			}
+			
+			// jobs finish out of order so hold them until their turn, unless
+			// they are wanted as they finish
+			Map<Integer, PuzzleJob> finished = new HashMap<Integer, PuzzleJob>();
+			int nextToWrite = 0;
+			int written = 0;
+			boolean endOfInputSeen = false;
+			while (!endOfInputSeen || written < jobCount.get()) {
+				if (toWrite.isEmpty()) {
+					sink.idle();
+				}
+				PuzzleJob job = toWrite.take();
+				if (job == endOfInput) {
+					endOfInputSeen = true;
+				} else if (!ordered) {
+					sink.write(job);
+					inFlight.release();
+					written++;
+				} else {
+					finished.put(job.getSequence(), job);
+				}
+				while ((job = finished.remove(nextToWrite)) != null) {
+					sink.write(job);
+					inFlight.release();
+					nextToWrite++;
+					written++;
+				}
+			}
+			
+			Exception failure = sourceFailure.get();
+			if (failure instanceof IOException) {
+				throw (IOException) failure;
+			} else if (failure != null) {
+				throw (RuntimeException) failure;
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+	
+	/**
+	 * Supplies the jobs to run, already loaded
+	 */
+	interface JobSource {
+		/**
+		 * @param sequence the sequence number to give the job
+		 * @return the next job or null when there are no more
+		 * @throws IOException
+		 */
+		PuzzleJob next(int sequence) throws IOException;
+	}
+	
+	/**
+	 * Receives finished jobs, in the order they came from the source unless
+	 * run unordered
+	 */
+	interface JobSink {
+		void write(PuzzleJob job) throws IOException;
+		
+		/**
+		 * Called when a staged run has no finished job ready to write, before
+		 * waiting for one
+		 * 
+		 * @throws IOException
+		 */
+		default void idle() throws IOException {
+		}
+	}
+}
@@ -0,0 +1,188 @@
+package ian.phillip.norton.sudoku;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Record of the solution files written by earlier runs, so an incremental
+ * run only solves puzzles whose result may have changed.
+ * 
+ * For each puzzle file the manifest holds a hash of its contents, the
+ * configuration it was solved with, and a hash of the solution file written.
+ * A puzzle is current if all three still match: the puzzle is unchanged, it
+ * would be solved the same way, and its solution file has not been changed
+ * or removed since.
+ * 
+ * A puzzle is hashed once, before it is solved, and that hash is the one
+ * recorded with its solution.  If the puzzle changes while it is being
+ * solved the recorded hash no longer matches, so the next run solves it
+ * again rather than keeping a stale solution.
+ * 
+ * The manifest is a text file with one tab separated line per puzzle file.
+ * It is replaced as a whole when saved so an interrupted run never leaves it
+ * half written.
+ * 
+ * @author Ian Norton
+ * 
+ */
+class SolutionManifest {
+	private static final String HASH_ALGORITHM = "SHA-256";
+	private static final int BUFFER_SIZE = 64 * 1024;
+	private static final String SEPARATOR = "\t";
+	
+	private final File file;
+	private final String configuration;
+	/**
+	 * Entries by puzzle file name, kept sorted so saved manifests are stable
+	 */
+	private final Map<String, Entry> entries = new TreeMap<String, Entry>();
+	
+	/**
+	 * Loads the manifest from a file, starting empty if there is none yet.
+	 * Lines which cannot be read are dropped, so their puzzles are solved
+	 * again.
+	 * 
+	 * @param file
+	 * @param configuration describes everything about the run which affects
+	 * its solutions
+	 * @throws IOException if the file exists but cannot be read
+	 */
+	SolutionManifest(File file, String configuration) throws IOException {
+		this.file = file;
+		this.configuration = configuration;
+		if (!file.isFile()) {
+			return;
+		}
+		
+		try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				String[] fields = line.split(SEPARATOR, -1);
+				if (fields.length == 4) {
+					this.entries.put(fields[0], new Entry(fields[1], fields[2], fields[3]));
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Checks whether the solution recorded for a puzzle is still valid
+	 * 
+	 * @param puzzle
+	 * @param puzzleHash the hash of the puzzle from hash()
+	 * @param solution the solution file for the puzzle
+	 * @return
+	 * @throws IOException if the solution file exists but cannot be read
+	 */
+	boolean isCurrent(File puzzle, String puzzleHash, File solution) throws IOException {
+		Entry entry = this.entries.get(puzzle.getName());
+		if (entry == null || !entry.configuration.equals(this.configuration) || !solution.isFile()) {
+			return false;
+		}
+		
+		return entry.puzzleHash.equals(puzzleHash) &&
+				entry.solutionHash.equals(SolutionManifest.hash(solution));
+	}
+	
+	/**
+	 * Records the solution just written for a puzzle
+	 * 
+	 * @param puzzle
+	 * @param puzzleHash the hash of the puzzle taken before it was solved
+	 * @param solution the solution file for the puzzle
+	 * @throws IOException if the solution file cannot be read
+	 */
+	void record(File puzzle, String puzzleHash, File solution) throws IOException {
+		this.entries.put(puzzle.getName(),
+				new Entry(puzzleHash, this.configuration, SolutionManifest.hash(solution)));
+	}
+	
+	/**
+	 * Drops the entries of puzzle files not in the given collection, so
+	 * removed puzzles do not build up
+	 * 
+	 * @param puzzles
+	 */
+	void retain(Collection<File> puzzles) {
+		Set<String> names = new HashSet<String>();
+		for (File puzzle : puzzles) {
+			names.add(puzzle.getName());
+		}
+		this.entries.keySet().retainAll(names);
+	}
+	
+	/**
+	 * Writes the manifest, replacing the previous one
+	 * 
+	 * @throws IOException
+	 */
+	void save() throws IOException {
+		File temporary = new File(this.file.getPath() + ".tmp");
+		try (BufferedWriter writer = Files.newBufferedWriter(temporary.toPath(), StandardCharsets.UTF_8)) {
+			for (Map.Entry<String, Entry> entry : this.entries.entrySet()) {
+				writer.write(entry.getKey() + SEPARATOR + entry.getValue().puzzleHash + SEPARATOR +
+						entry.getValue().configuration + SEPARATOR + entry.getValue().solutionHash);
+				writer.newLine();
+			}
+		}
+		Files.move(temporary.toPath(), this.file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+	}
+	
+	/**
+	 * Hashes the contents of a file
+	 * 
+	 * @param file
+	 * @return the hash in hexadecimal
+	 * @throws IOException
+	 */
+	static String hash(File file) throws IOException {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance(HASH_ALGORITHM);
+		} catch (NoSuchAlgorithmException e) {
+			// every Java platform is required to support SHA-256
+			throw new IllegalStateException(e);
+		}
+		
+		byte[] buffer = new byte[BUFFER_SIZE];
+		try (InputStream input = Files.newInputStream(file.toPath())) {
+			int read;
+			while ((read = input.read(buffer)) > 0) {
+				digest.update(buffer, 0, read);
+			}
+		}
+		
+		StringBuilder hex = new StringBuilder();
+		for (byte value : digest.digest()) {
+			hex.append(String.format("%02x", value));
+		}
+		
+		return hex.toString();
+	}
+	
+	private static class Entry {
+		private final String puzzleHash;
+		private final String configuration;
+		private final String solutionHash;
+		
+		private Entry(String puzzleHash, String configuration, String solutionHash) {
+			this.puzzleHash = puzzleHash;
+			this.configuration = configuration;
+			this.solutionHash = solutionHash;
+		}
+	}
+}
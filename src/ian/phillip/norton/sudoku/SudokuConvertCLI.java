@@ -0,0 +1,141 @@
+package ian.phillip.norton.sudoku;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import ian.phillip.norton.sudoku.board.PackedSudokuBoard;
+import ian.phillip.norton.sudoku.exceptions.SudokuFileFormatException;
+import ian.phillip.norton.sudoku.loader.BinarySudokuFileLoader;
+import ian.phillip.norton.sudoku.loader.StandardSudokuLineFileLoader;
+import ian.phillip.norton.sudoku.writer.BinarySudokuFileWriter;
+import ian.phillip.norton.sudoku.writer.StandardSudokuLineFileWriter;
+
+/**
+ * Command line interface to convert between line files and the packed binary
+ * format
+ * 
+ * Given an output file ending in .bin, every input is read as a line file
+ * and packed into the output, each as a section named after the input file.
+ * Lines which cannot be read are kept as failed records so record numbers
+ * still match line numbers.
+ * 
+ * Given any other output file, every input is read as a binary file and its
+ * records written to the output one per line.  Records without a board are
+ * written as "No Solution" or "Failed".
+ * 
+ * @author Ian Norton
+ * 
+ */
+public class SudokuConvertCLI {
+	private static final String BINARY_EXTENSION = ".bin";
+	private static final String USAGE = "Usage: java -cp SudokuSolver.jar ian.phillip.norton.sudoku.SudokuConvertCLI OUTPUT INPUT...";
+	
+	private final File output;
+	private final List<File> inputs = new ArrayList<File>();
+	
+	public SudokuConvertCLI(String[] args) {
+		if (args.length < 2) {
+			throw new IllegalArgumentException("Needs an output file and at least one input file");
+		}
+		
+		this.output = new File(args[0]);
+		for (int index = 1; index < args.length; index++) {
+			this.inputs.add(new File(args[index]));
+		}
+	}
+	
+	/**
+	 * Converts the inputs into the output
+	 * 
+	 * @return the number of records or lines written
+	 * @throws IOException if a file cannot be read or written
+	 * @throws SudokuFileFormatException if a binary input is not valid
+	 */
+	public long convert() throws IOException, SudokuFileFormatException {
+		return this.output.getName().endsWith(BINARY_EXTENSION) ? this.pack() : this.unpack();
+	}
+	
+	/**
+	 * Packs line files into a binary file
+	 * 
+	 * @return the number of records written
+	 * @throws IOException
+	 */
+	private long pack() throws IOException {
+		try (BinarySudokuFileWriter writer = new BinarySudokuFileWriter(this.output)) {
+			PackedSudokuBoard board = new PackedSudokuBoard();
+			for (File input : this.inputs) {
+				writer.startSection(input.getName());
+				try (StandardSudokuLineFileLoader loader = new StandardSudokuLineFileLoader(input)) {
+					while (true) {
+						try {
+							if (!loader.loadInto(board)) {
+								break;
+							}
+							writer.write(board);
+						} catch (SudokuFileFormatException e) {
+							System.err.println(e.getMessage());
+							writer.writeFailed();
+						}
+					}
+				}
+			}
+			
+			return writer.getRecordCount();
+		}
+	}
+	
+	/**
+	 * Unpacks binary files into a line file
+	 * 
+	 * @return the number of lines written
+	 * @throws IOException
+	 * @throws SudokuFileFormatException
+	 */
+	private long unpack() throws IOException, SudokuFileFormatException {
+		long lines = 0;
+		try (StandardSudokuLineFileWriter writer = new StandardSudokuLineFileWriter(this.output)) {
+			PackedSudokuBoard board = new PackedSudokuBoard();
+			for (File input : this.inputs) {
+				try (BinarySudokuFileLoader loader = new BinarySudokuFileLoader(input)) {
+					for (long record = 0; record < loader.getRecordCount(); record++) {
+						switch (loader.loadInto(record, board)) {
+						case BinarySudokuFileLoader.STATUS_BOARD:
+							writer.write(board);
+							break;
+						case BinarySudokuFileLoader.STATUS_NO_SOLUTION:
+							writer.write(null);
+							break;
+						default:
+							writer.writeMessage("Failed");
+							break;
+						}
+					}
+					lines += loader.getRecordCount();
+				}
+			}
+		}
+		
+		return lines;
+	}
+
+	public static void main(String[] args) {
+		SudokuConvertCLI cli = null;
+		try {
+			cli = new SudokuConvertCLI(args);
+		} catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			System.err.println(USAGE);
+			System.exit(1);
+		}
+		try {
+			System.out.println("Wrote " + cli.convert() + " boards to " + cli.output);
+		} catch (IOException | SudokuFileFormatException e) {
+			System.err.println("Failed to convert: " + e.getMessage());
+			System.exit(1);
+		}
+	}
+
+}
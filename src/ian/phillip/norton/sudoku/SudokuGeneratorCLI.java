@@ -0,0 +1,153 @@
+package ian.phillip.norton.sudoku;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.Map;
+
+import ian.phillip.norton.sudoku.board.PackedSudokuBoard;
+import ian.phillip.norton.sudoku.generator.Difficulty;
+import ian.phillip.norton.sudoku.generator.GeneratedPuzzle;
+import ian.phillip.norton.sudoku.generator.SudokuPuzzleGenerator;
+import ian.phillip.norton.sudoku.writer.StandardSudokuLineFileWriter;
+
+/**
+ * Command line interface to the puzzle generator
+ * Generates puzzles across all cores and writes them to one file per
+ * difficulty in the output directory, one puzzle per line in the format read
+ * by --format line.  Puzzles are written in the order of their index so the
+ * same seed always gives the same files.
+ * 
+ * Options:
+ *  --count N              number of puzzles to generate, 1000 by default
+ *  --seed N               seed to generate from, 0 by default
+ *  --threads N            number of generating threads, all cores by default
+ *  --min-givens N         stop removing givens once N are left, making
+ *                         easier puzzles.  17 by default so givens are
+ *                         removed until none can be
+ *  --output DIRECTORY     where to write the files, ./generated by default
+ * 
+ * @author Ian Norton
+ * 
+ */
+public class SudokuGeneratorCLI {
+	private int count = 1000;
+	private long seed = 0;
+	private int threads = Runtime.getRuntime().availableProcessors();
+	private int minimumGivens = SudokuPuzzleGenerator.MIN_GIVENS;
+	private File outputDirectory = new File("./generated");
+	private final Map<Difficulty, Integer> generated = new EnumMap<Difficulty, Integer>(Difficulty.class);
+	private static final String EXTENSION = ".txt";
+	private static final String USAGE = "Usage: java -cp SudokuSolver.jar ian.phillip.norton.sudoku.SudokuGeneratorCLI [--count N] [--seed N] [--threads N] [--min-givens N] [--output DIRECTORY]";
+	
+	public SudokuGeneratorCLI(String[] args) {
+		this.parseArguments(args);
+	}
+	
+	/**
+	 * Generates every puzzle and writes it to the file for its difficulty
+	 * 
+	 * @throws IOException if a file could not be written
+	 */
+	public void generate() throws IOException {
+		if (!this.outputDirectory.isDirectory() && !this.outputDirectory.mkdirs()) {
+			throw new IOException("Could not create " + this.outputDirectory);
+		}
+		
+		Map<Difficulty, StandardSudokuLineFileWriter> writers = new EnumMap<Difficulty, StandardSudokuLineFileWriter>(
+				Difficulty.class);
+		try {
+			for (Difficulty difficulty : Difficulty.values()) {
+				File file = new File(this.outputDirectory, difficulty.getOptionName() + EXTENSION);
+				writers.put(difficulty, new StandardSudokuLineFileWriter(file));
+				this.generated.put(difficulty, 0);
+			}
+			
+			PuzzlePipeline pipeline = new PuzzlePipeline(this.threads, () -> {
+				SudokuPuzzleGenerator generator = new SudokuPuzzleGenerator(this.seed, this.minimumGivens);
+				return job -> job.generate(generator);
+			});
+			pipeline.run(sequence -> sequence < this.count ? new PuzzleJob(sequence) : null, job -> {
+				GeneratedPuzzle puzzle = job.getGenerated();
+				if (puzzle == null) {
+					System.err.println("Failed to generate puzzle " + job.getSequence() + ": " + job.getMessage());
+					return;
+				}
+				
+				writers.get(puzzle.getDifficulty()).write(puzzle.getPuzzle());
+				this.generated.merge(puzzle.getDifficulty(), 1, Integer::sum);
+			});
+		} finally {
+			for (StandardSudokuLineFileWriter writer : writers.values()) {
+				writer.close();
+			}
+		}
+	}
+	
+	/**
+	 * Prints how many puzzles of each difficulty were generated
+	 */
+	private void printCounts() {
+		for (Difficulty difficulty : Difficulty.values()) {
+			System.out.println(difficulty.getOptionName() + ": " + this.generated.get(difficulty));
+		}
+	}
+	
+	/**
+	 * Reads the command line options.  Throws an IllegalArgumentException
+	 * describing the problem if any are not recognized.
+	 * 
+	 * @param args
+	 */
+	private void parseArguments(String[] args) {
+		for (int index = 0; index < args.length; index++) {
+			switch (args[index]) {
+			case "--count":
+				this.count = CommandLineArguments.integerValue(args, ++index, 1);
+				break;
+			case "--seed":
+				String value = CommandLineArguments.value(args, ++index);
+				try {
+					this.seed = Long.parseLong(value);
+				} catch (NumberFormatException e) {
+					throw new IllegalArgumentException("Option --seed needs an integer, not " + value);
+				}
+				break;
+			case "--threads":
+				this.threads = CommandLineArguments.integerValue(args, ++index, 1);
+				break;
+			case "--min-givens":
+				this.minimumGivens = CommandLineArguments.integerValue(args, ++index, SudokuPuzzleGenerator.MIN_GIVENS);
+				if (this.minimumGivens > PackedSudokuBoard.CELL_COUNT) {
+					throw new IllegalArgumentException("Option --min-givens needs an integer of at most " +
+							PackedSudokuBoard.CELL_COUNT + ", not " + this.minimumGivens);
+				}
+				break;
+			case "--output":
+				this.outputDirectory = new File(CommandLineArguments.value(args, ++index));
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown option " + args[index]);
+			}
+		}
+	}
+
+	public static void main(String[] args) {
+		SudokuGeneratorCLI cli = null;
+		try {
+			cli = new SudokuGeneratorCLI(args);
+		} catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			System.err.println(USAGE);
+			System.exit(1);
+		}
+		try {
+			cli.generate();
+		} catch (IOException e) {
+			System.err.println("Failed to write puzzles: " + e.getMessage());
+			System.exit(1);
+		}
+		cli.printCounts();
+	}
+
+}
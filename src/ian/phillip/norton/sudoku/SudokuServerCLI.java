@@ -0,0 +1,125 @@
+package ian.phillip.norton.sudoku;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+
+import ian.phillip.norton.sudoku.server.SudokuSolveServer;
+import ian.phillip.norton.sudoku.solver.PropagationPipeline;
+import ian.phillip.norton.sudoku.solver.SolveBudget;
+
+/**
+ * Command line interface to the solve server
+ * Starts a SudokuSolveServer on the loopback address and keeps it running
+ * until the process is stopped.  Puzzles are POSTed to /solve one per line.
+ * 
+ * Options:
+ *  --port N               port to listen on, 8080 by default.  0 lets the
+ *                         system choose one, which is printed
+ *  --threads N            number of solving threads, all cores by default
+ *  --queue N              number of requests that may wait for a solving
+ *                         thread before more are turned away, 64 by default
+ *  --max-batch N          most puzzles accepted in one request, 10000 by
+ *                         default
+ *  --propagation all|none|STAGE,STAGE...
+ *                         logical deductions each solver makes before each
+ *                         guess, as for SudokuSolverCLI
+ *  --time-limit MS        give up on any puzzle after MS milliseconds
+ *  --node-limit N         likewise give up after N search nodes
+ * 
+ * @author Ian Norton
+ * 
+ */
+public class SudokuServerCLI {
+	private int port = 8080;
+	private int threads = Runtime.getRuntime().availableProcessors();
+	private int queueLength = 64;
+	private int maxBatch = 10000;
+	private PropagationPipeline propagation = PropagationPipeline.NONE;
+	/**
+	 * Limits on each solve, null for none
+	 */
+	private SolveBudget budget = null;
+	private static final String USAGE = "Usage: java -cp SudokuSolver.jar ian.phillip.norton.sudoku.SudokuServerCLI [--port N] [--threads N] [--queue N] [--max-batch N] [--propagation all|none|STAGE,...] [--time-limit MS] [--node-limit N]";
+	
+	public SudokuServerCLI(String[] args) {
+		this.parseArguments(args);
+	}
+	
+	/**
+	 * Starts the server, stopping it again when the process is shut down
+	 * 
+	 * @return the running server
+	 * @throws IOException if the port cannot be listened on
+	 */
+	public SudokuSolveServer start() throws IOException {
+		SudokuSolveServer server = new SudokuSolveServer(
+				new InetSocketAddress(InetAddress.getLoopbackAddress(), this.port), this.threads, this.queueLength,
+				this.maxBatch, this.propagation, this.budget);
+		Runtime.getRuntime().addShutdownHook(new Thread(server::close));
+		server.start();
+		
+		return server;
+	}
+	
+	/**
+	 * Reads the command line options.  Throws an IllegalArgumentException
+	 * describing the problem if any are not recognized.
+	 * 
+	 * @param args
+	 */
+	private void parseArguments(String[] args) {
+		int timeLimit = 0;
+		int nodeLimit = 0;
+		for (int index = 0; index < args.length; index++) {
+			switch (args[index]) {
+			case "--port":
+				this.port = CommandLineArguments.integerValue(args, ++index, 0);
+				break;
+			case "--threads":
+				this.threads = CommandLineArguments.integerValue(args, ++index, 1);
+				break;
+			case "--queue":
+				this.queueLength = CommandLineArguments.integerValue(args, ++index, 1);
+				break;
+			case "--max-batch":
+				this.maxBatch = CommandLineArguments.integerValue(args, ++index, 1);
+				break;
+			case "--propagation":
+				this.propagation = SudokuSolverCLI.propagationValue(CommandLineArguments.value(args, ++index));
+				break;
+			case "--time-limit":
+				timeLimit = CommandLineArguments.integerValue(args, ++index, 1);
+				break;
+			case "--node-limit":
+				nodeLimit = CommandLineArguments.integerValue(args, ++index, 1);
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown option " + args[index]);
+			}
+		}
+		
+		if (timeLimit > 0 || nodeLimit > 0) {
+			this.budget = new SolveBudget(timeLimit, nodeLimit, null);
+		}
+	}
+
+	public static void main(String[] args) {
+		SudokuServerCLI cli = null;
+		try {
+			cli = new SudokuServerCLI(args);
+		} catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			System.err.println(USAGE);
+			System.exit(1);
+		}
+		try {
+			SudokuSolveServer server = cli.start();
+			System.out.println("Listening on port " + server.getPort());
+		} catch (IOException e) {
+			System.err.println("Failed to start server: " + e.getMessage());
+			System.exit(1);
+		}
+	}
+
+}
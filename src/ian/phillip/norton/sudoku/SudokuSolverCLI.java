@@ -1,35 +1,261 @@
 package ian.phillip.norton.sudoku;
 
 import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
-import ian.phillip.norton.sudoku.board.StandardSudokuBoard;
+import ian.phillip.norton.sudoku.board.Cage;
+import ian.phillip.norton.sudoku.board.ConstraintModel;
+import ian.phillip.norton.sudoku.board.GeneralSudokuBoard;
+import ian.phillip.norton.sudoku.board.PackedSudokuBoard;
+import ian.phillip.norton.sudoku.board.SudokuGeometry;
+import ian.phillip.norton.sudoku.board.Variant;
 import ian.phillip.norton.sudoku.exceptions.SudokuFileFormatException;
+import ian.phillip.norton.sudoku.loader.BinarySudokuFileLoader;
+import ian.phillip.norton.sudoku.loader.GeneralSudokuBoardFileLoader;
 import ian.phillip.norton.sudoku.loader.StandardSudokuBoardFileLoader;
+import ian.phillip.norton.sudoku.loader.StandardSudokuLineFileLoader;
+import ian.phillip.norton.sudoku.loader.StandardSudokuStreamLoader;
+import ian.phillip.norton.sudoku.solver.BitSlicedSudokuSolver;
+import ian.phillip.norton.sudoku.solver.CachingSudokuSolver;
+import ian.phillip.norton.sudoku.solver.DancingLinksSudokuSolver;
+import ian.phillip.norton.sudoku.solver.GeneralSudokuSolver;
+import ian.phillip.norton.sudoku.solver.PropagationPipeline;
+import ian.phillip.norton.sudoku.solver.PropagationStage;
+import ian.phillip.norton.sudoku.solver.SolutionCache;
+import ian.phillip.norton.sudoku.solver.SolutionCounter;
+import ian.phillip.norton.sudoku.solver.SolveBudget;
+import ian.phillip.norton.sudoku.solver.SolveStatistics;
 import ian.phillip.norton.sudoku.solver.StandardSudokuSolver;
-import ian.phillip.norton.sudoku.writer.StandardSudokuFileWriter;
+import ian.phillip.norton.sudoku.solver.SudokuSolver;
+import ian.phillip.norton.sudoku.solver.VariantSudokuSolver;
+import ian.phillip.norton.sudoku.writer.BatchedSudokuFileWriter;
+import ian.phillip.norton.sudoku.writer.BinarySudokuFileWriter;
+import ian.phillip.norton.sudoku.writer.GeneralSudokuFileWriter;
+import ian.phillip.norton.sudoku.writer.StandardSudokuLineFileWriter;
 
 /**
  * Command line interface to the sudoku loader
  * Loads in all the files in the puzzle directory, attempts to solve them,
  * then places solution files in the solution directory
  * 
+ * With more than one thread puzzles are loaded, solved, and written by
+ * separate stages connected by bounded queues.  Solutions are still written
+ * in the same order as a single threaded run.
+ * 
+ * Options:
+ *  --solver standard|dlx|parallel|bitsliced
+ *                         the solver to use, standard by default.  parallel
+ *                         is the standard solver splitting each search
+ *                         across all cores.  bitsliced propagates line
+ *                         and binary files 64 boards at a time, handing those
+ *                         needing guesses to the standard solver, and cannot
+ *                         count solutions
+ *  --threads N            number of solving threads, all cores by default
+ *  --format grid|line|large|binary
+ *                         grid (the default) files hold one board as 9 lines
+ *                         of 9 characters.  line files hold one board per
+ *                         line as 81 characters.  large files hold one board
+ *                         of any box size as lines of space separated
+ *                         numbers and are always solved by the general solver.
+ *                         binary files hold many boards packed as written by
+ *                         BinarySudokuFileWriter, and their solutions are
+ *                         written the same way to .sln.bin files
+ *  --count-solutions N    instead of solving, count the solutions of each
+ *                         puzzle stopping at N.  2 checks that puzzles have
+ *                         a unique solution.  Not for the binary format
+ *  --propagation all|none|STAGE,STAGE...
+ *                         logical deductions the standard, parallel, and
+ *                         general solvers make before each guess, such as
+ *                         hidden-singles,naked-pairs,pointing.  The number
+ *                         of deductions each made is printed at the end
+ *  --cache N              remember the solutions of up to N puzzles, so
+ *                         repeats and relabelled, reordered, or transposed
+ *                         copies of earlier puzzles are not solved again.
+ *                         Hits, misses, and evictions are printed at the end.
+ *                         Not used for large files or when counting
+ *  --statistics           print the work each search by the standard or
+ *                         parallel solver took: nodes, guesses, backtracks,
+ *                         deepest guess, singles placed, candidate checks,
+ *                         and wall and CPU time
+ *  --time-limit MS        give up on any puzzle the standard or parallel
+ *                         solver has spent MS milliseconds on, writing
+ *                         "Budget Exceeded" to its solution file.  The cache
+ *                         is not used with a limit.  Not for other solvers,
+ *                         the large format, or --variants
+ *  --node-limit N         likewise give up after N search nodes
+ *  --output-file FILE     write every solution of a grid format run to one
+ *                         file, each under a line naming its solution file,
+ *                         rather than a file per puzzle
+ *  --sync                 force solutions to the storage device in batches
+ *                         before going on
+ *  --watch                after processing the puzzle directory keep
+ *                         watching it, processing files as they are added
+ *                         or changed, until the process is stopped.
+ *                         Files landing during the first pass are processed
+ *                         after it
+ *  --incremental          skip puzzles whose solutions from an earlier
+ *                         incremental run are still valid: the puzzle file,
+ *                         the options, and the solution file are unchanged.
+ *                         Kept track of in ./solutions.manifest
+ *  --variants VARIANT,VARIANT...
+ *                         solve grid, line, or binary puzzles under extra
+ *                         rules: diagonal, windoku, anti-knight, anti-king.
+ *                         Replaces the chosen solver with the variant solver
+ *                         and turns off the cache
+ *  --stdio                read puzzles from standard input instead of the
+ *                         puzzle directory, each as a line of 81 characters
+ *                         or 9 lines of 9, and write a line for each to
+ *                         standard output in the same order.  Output is
+ *                         written in large blocks, passed on whenever the
+ *                         solvers have nothing more ready.  Statistics and
+ *                         counts go to standard error
+ *  --tagged               with --stdio, write each solution as soon as it is
+ *                         ready, starting with the puzzle's number from 1
+ *                         and a tab
+ * 
  * @author Ian Norton
- *
+ * 
  */
 public class SudokuSolverCLI {
 	private List<File> filesToParse;
+	private String solverName = STANDARD_SOLVER;
+	private int threads = Runtime.getRuntime().availableProcessors();
+	private String format = GRID_FORMAT;
+	/**
+	 * Number of solutions to count up to, 0 to solve instead
+	 */
+	private int solutionLimit = 0;
+	/**
+	 * Stages given on the command line, null to use each solver's default
+	 */
+	private PropagationPipeline propagation = null;
+	/**
+	 * Solutions shared by every solving thread, null to solve every puzzle
+	 */
+	private SolutionCache cache = null;
+	private boolean statistics = false;
+	/**
+	 * Limits on each solve, null for none
+	 */
+	private SolveBudget budget = null;
+	/**
+	 * File to write every solution to, null for a file per puzzle
+	 */
+	private File outputFile = null;
+	/**
+	 * Whether solutions are forced to the storage device in batches
+	 */
+	private boolean sync = false;
+	/**
+	 * Whether to keep watching the puzzle directory after the first pass
+	 */
+	private boolean watch = false;
+	/**
+	 * Watches the puzzle directory once startWatching has been called, null
+	 * until then
+	 */
+	private WatchService watcher = null;
+	/**
+	 * Record of earlier runs' solutions for an incremental run, null to
+	 * solve every puzzle
+	 */
+	private SolutionManifest manifest = null;
+	/**
+	 * Rules given by --variants, null to solve plain sudoku
+	 */
+	private ConstraintModel variantModel = null;
+	/**
+	 * Whether puzzles are read from standard input and solutions written to
+	 * standard output
+	 */
+	private boolean stdio = false;
+	/**
+	 * Whether standard output gets solutions as they finish, each tagged with
+	 * the number of its puzzle, rather than in order
+	 */
+	private boolean tagged = false;
+	/**
+	 * Where statistics and counts are printed, standard error when standard
+	 * output holds solutions
+	 */
+	private PrintStream report = System.out;
 	private static final String PUZZLE_DIRECTORY = "./puzzles";
+	private static final String STANDARD_INPUT = "stdin";
+	/**
+	 * Time a watched file must go without changing before it is processed
+	 */
+	private static final long DEBOUNCE_MILLIS = 500;
 	private static final String SOLUTION_DIRECTORY = "./solutions/";
 	private static final String SOLUTION_EXTENSION = ".sln.txt";
+	private static final String BINARY_SOLUTION_EXTENSION = ".sln.bin";
+	private static final String MANIFEST_FILE = "./solutions.manifest";
+	/**
+	 * Recorded in the manifest with each solution.  Change it whenever the
+	 * solution written for a puzzle may change, so incremental runs solve
+	 * everything again.
+	 */
+	private static final String SOLVER_VERSION = "1";
+	private static final String STANDARD_SOLVER = "standard";
+	private static final String DANCING_LINKS_SOLVER = "dlx";
+	private static final String PARALLEL_SOLVER = "parallel";
+	private static final String BIT_SLICED_SOLVER = "bitsliced";
+	/**
+	 * Number of levels of guesses the parallel solver splits into tasks
+	 */
+	private static final int PARALLEL_SEARCH_DEPTH = 3;
+	private static final String GRID_FORMAT = "grid";
+	private static final String LINE_FORMAT = "line";
+	private static final String LARGE_FORMAT = "large";
+	private static final String BINARY_FORMAT = "binary";
+	private static final String USAGE = "Usage: java -jar SudokuSolver.jar [--solver standard|dlx|parallel|bitsliced] [--threads N] [--format grid|line|large|binary] [--count-solutions N] [--propagation all|none|STAGE,...] [--cache N] [--statistics] [--time-limit MS] [--node-limit N] [--output-file FILE] [--sync] [--watch] [--incremental] [--variants VARIANT,...] [--stdio [--tagged]]";
 	
 	public SudokuSolverCLI(String[] args) {
+		this.parseArguments(args);
+		if (this.stdio) {
+			this.filesToParse = new ArrayList<File>();
+			return;
+		}
+		
+		this.filesToParse = SudokuSolverCLI.listPuzzleFiles();
+	}
+	
+	/**
+	 * Lists the puzzle directory
+	 * 
+	 * @return the files in name order, so runs are repeatable
+	 */
+	private static List<File> listPuzzleFiles() {
 		File puzzleDir = new File(PUZZLE_DIRECTORY);
 		File[] puzzleFiles = puzzleDir.listFiles();
 		
-		filesToParse = Arrays.asList(puzzleFiles);
+		List<File> files = new ArrayList<File>(Arrays.asList(puzzleFiles));
+		files.sort(Comparator.comparing(File::getName));
+		
+		return files;
 	}
 	
 	/**
@@ -38,29 +264,805 @@ public class SudokuSolverCLI {
 	 *  - attempt to solve it
 	 *  - output the solution or an appropriate message
 	 * 
+	 * In line format each file holds many boards and the solutions are
+	 * written to the corresponding lines of its solution file.
+	 * 
+	 * @throws IOException if a solution could not be written
+	 */
+	public void processFiles() throws IOException {
+		if (this.manifest != null) {
+			this.manifest.retain(this.filesToParse);
+		}
+		this.processFiles(this.filesToParse);
+	}
+	
+	/**
+	 * Processes the given puzzle files as processFiles does.  In an
+	 * incremental run files whose solutions are still current are skipped
+	 * and the manifest is updated afterwards.
+	 * 
+	 * @param files
+	 * @throws IOException if a solution could not be written
 	 */
-	public void processFiles() {
-		for (File file : this.filesToParse) {
-			StandardSudokuBoard board = null;
-			String outputFilename = SOLUTION_DIRECTORY + file.getName().split("\\.")[0] + SOLUTION_EXTENSION;
+	private void processFiles(List<File> files) throws IOException {
+		if (this.manifest == null) {
+			this.solveFiles(files);
+			return;
+		}
+		
+		// each puzzle is hashed before it is read for solving, so one changed
+		// during the solve is not recorded as current
+		List<File> changed = new ArrayList<File>();
+		Map<File, String> hashes = new HashMap<File, String>();
+		for (File file : files) {
+			String hash = SolutionManifest.hash(file);
+			if (!this.manifest.isCurrent(file, hash, new File(this.getOutputFilename(file)))) {
+				changed.add(file);
+				hashes.put(file, hash);
+			}
+		}
+		System.out.println("Skipped " + (files.size() - changed.size()) + " unchanged files");
+		
+		for (File file : this.solveFiles(changed)) {
+			this.manifest.record(file, hashes.get(file), new File(this.getOutputFilename(file)));
+		}
+		this.manifest.save();
+	}
+	
+	/**
+	 * Solves the given puzzle files and writes their solutions
+	 * 
+	 * @param files
+	 * @return the files whose solutions were written
+	 * @throws IOException if a solution could not be written
+	 */
+	private List<File> solveFiles(List<File> files) throws IOException {
+		PuzzlePipeline pipeline = new PuzzlePipeline(this.threads, this::createWorker);
+		
+		if (LINE_FORMAT.equals(this.format) || BINARY_FORMAT.equals(this.format)) {
+			List<File> written = new ArrayList<File>();
+			for (File file : files) {
+				if (LINE_FORMAT.equals(this.format) ? this.processLineFile(pipeline, file) :
+						this.processBinaryFile(pipeline, file)) {
+					written.add(file);
+				}
+			}
+			return written;
+		}
+		
+		boolean large = LARGE_FORMAT.equals(this.format);
+		try (BatchedSudokuFileWriter writer = this.outputFile == null ?
+				new BatchedSudokuFileWriter(BatchedSudokuFileWriter.DEFAULT_BATCH_SIZE, this.sync) :
+				new BatchedSudokuFileWriter(this.outputFile, BatchedSudokuFileWriter.DEFAULT_BATCH_SIZE, this.sync)) {
+			pipeline.run(sequence -> {
+				if (sequence >= files.size()) {
+					return null;
+				}
+				
+				PuzzleJob job = new PuzzleJob(sequence);
+				File file = files.get(sequence);
+				try {
+					job.setBoard(large ? GeneralSudokuBoardFileLoader.loadFromFile(file) :
+							new StandardSudokuBoardFileLoader(file).loadPacked());
+				} catch (IOException | SudokuFileFormatException | RuntimeException e) {
+					job.fail(e);
+				}
+				
+				return job;
+			}, job -> {
+				File file = files.get(job.getSequence());
+				String outputFilename = this.getOutputFilename(file);
+				this.printStatistics(file.getName(), job);
+				if (job.getMessage() != null) {
+					writer.writeMessage(new File(outputFilename), job.getMessage());
+				} else if (large) {
+					GeneralSudokuFileWriter.writeToFile(outputFilename, (GeneralSudokuBoard) job.getBoard());
+				} else {
+					writer.write(new File(outputFilename), (PackedSudokuBoard) job.getBoard());
+				}
+			});
+		}
+		
+		return files;
+	}
+	
+	/**
+	 * Starts watching the puzzle directory for files being added or changed,
+	 * then lists it again for processFiles.  Call it before processFiles so
+	 * files which land while the first pass runs, which may take minutes,
+	 * are picked up by watchFiles afterwards rather than missed.
+	 * 
+	 * @throws IOException if the directory cannot be watched
+	 */
+	public void startWatching() throws IOException {
+		Path directory = Paths.get(PUZZLE_DIRECTORY);
+		WatchService watcher = directory.getFileSystem().newWatchService();
+		try {
+			directory.register(watcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+		} catch (IOException | RuntimeException e) {
+			watcher.close();
+			throw e;
+		}
+		this.watcher = watcher;
+		this.filesToParse = SudokuSolverCLI.listPuzzleFiles();
+	}
+	
+	/**
+	 * Processes files in the puzzle directory as they are added or changed,
+	 * since startWatching was called, starting now if it was not.  A file is
+	 * only processed once it has gone DEBOUNCE_MILLIS without changing, so
+	 * files still being written are left until they are complete.  Files
+	 * which settle together are processed together.  Runs until the thread
+	 * is interrupted.
+	 * 
+	 * @throws IOException if the directory cannot be watched
+	 */
+	public void watchFiles() throws IOException {
+		if (this.watcher == null) {
+			this.startWatching();
+		}
+		
+		Path directory = Paths.get(PUZZLE_DIRECTORY);
+		try (WatchService watcher = this.watcher) {
+			// time of the latest change to each file waiting to settle
+			Map<Path, Long> pending = new HashMap<Path, Long>();
+			while (true) {
+				WatchKey key;
+				try {
+					key = pending.isEmpty() ? watcher.take() : watcher.poll(DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return;
+				}
+				
+				if (key != null) {
+					long now = System.nanoTime();
+					for (WatchEvent<?> event : key.pollEvents()) {
+						if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+							// events were lost so any file may have changed
+							for (File file : directory.toFile().listFiles()) {
+								pending.put(file.toPath(), now);
+							}
+						} else {
+							pending.put(directory.resolve((Path) event.context()), now);
+						}
+					}
+					if (!key.reset()) {
+						throw new IOException("Puzzle directory " + directory + " can no longer be watched");
+					}
+				}
+				
+				List<File> settled = SudokuSolverCLI.removeSettled(pending);
+				if (!settled.isEmpty()) {
+					try {
+						this.processFiles(settled);
+						for (File file : settled) {
+							System.out.println("Processed " + file.getName());
+						}
+					} catch (IOException e) {
+						System.err.println("Failed to write solutions: " + e.getMessage());
+					}
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Takes the files which have not changed for DEBOUNCE_MILLIS out of the
+	 * pending changes
+	 * 
+	 * @param pending time of the latest change to each file
+	 * @return the settled files which still exist, in name order
+	 */
+	private static List<File> removeSettled(Map<Path, Long> pending) {
+		List<File> settled = new ArrayList<File>();
+		long now = System.nanoTime();
+		Iterator<Map.Entry<Path, Long>> entries = pending.entrySet().iterator();
+		while (entries.hasNext()) {
+			Map.Entry<Path, Long> entry = entries.next();
+			if (now - entry.getValue() >= TimeUnit.MILLISECONDS.toNanos(DEBOUNCE_MILLIS)) {
+				entries.remove();
+				if (Files.isRegularFile(entry.getKey())) {
+					settled.add(entry.getKey().toFile());
+				}
+			}
+		}
+		settled.sort(Comparator.comparing(File::getName));
+		
+		return settled;
+	}
+	
+	/**
+	 * Solves every board in a file with one board per line, writing each
+	 * result to the same line of the solution file
+	 * 
+	 * @param pipeline
+	 * @param file
+	 * @return false if the file could not be processed
+	 */
+	private boolean processLineFile(PuzzlePipeline pipeline, File file) {
+		String outputFilename = this.getOutputFilename(file);
+		try (StandardSudokuLineFileLoader loader = new StandardSudokuLineFileLoader(file);
+				StandardSudokuLineFileWriter writer = new StandardSudokuLineFileWriter(new File(outputFilename))) {
+			boolean batched = BIT_SLICED_SOLVER.equals(this.solverName);
+			pipeline.run(sequence -> SudokuSolverCLI.nextJob(loader::loadInto, sequence, batched),
+					job -> this.writeLines(writer, job, file.getName(), false));
+		} catch (IOException e) {
+			System.err.println("Failed to process " + file.getName() + ": " + e.getMessage());
+			return false;
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Solves every board read from standard input, writing a line for each
+	 * to standard output.  Output is buffered, and passed on whenever the
+	 * writer has to wait for a solution so results are seen as soon as they
+	 * are ready.
+	 * 
+	 * @throws IOException if standard input could not be read or standard
+	 * output could not be written
+	 */
+	public void processStream() throws IOException {
+		PuzzlePipeline pipeline = new PuzzlePipeline(this.threads, this::createWorker);
+		try (StandardSudokuStreamLoader loader = new StandardSudokuStreamLoader(
+				new FileInputStream(FileDescriptor.in).getChannel(), STANDARD_INPUT);
+				StandardSudokuLineFileWriter writer = new StandardSudokuLineFileWriter(
+						new FileOutputStream(FileDescriptor.out).getChannel())) {
+			boolean batched = BIT_SLICED_SOLVER.equals(this.solverName);
+			pipeline.runStaged(sequence -> SudokuSolverCLI.nextJob(loader::loadInto, sequence, batched),
+					new PuzzlePipeline.JobSink() {
+						@Override
+						public void write(PuzzleJob job) throws IOException {
+							SudokuSolverCLI.this.writeLines(writer, job, STANDARD_INPUT,
+									SudokuSolverCLI.this.tagged);
+						}
+						
+						@Override
+						public void idle() throws IOException {
+							writer.flush();
+						}
+					}, !this.tagged);
+		}
+	}
+	
+	/**
+	 * Loads the next job from boards given one after another
+	 * 
+	 * @param reader
+	 * @param sequence
+	 * @param batched whether to load BitSlicedSudokuSolver.LANES boards into
+	 * the job
+	 * @return the job, or null if there are no more boards
+	 * @throws IOException
+	 */
+	private static PuzzleJob nextJob(BoardReader reader, int sequence, boolean batched) throws IOException {
+		PuzzleJob job = new PuzzleJob(sequence);
+		if (batched) {
+			return SudokuSolverCLI.loadBatch(reader, job) ? job : null;
+		}
+		
+		try {
+			PackedSudokuBoard board = new PackedSudokuBoard();
+			if (!reader.loadInto(board)) {
+				return null;
+			}
+			job.setBoard(board);
+		} catch (SudokuFileFormatException e) {
+			job.fail(e);
+		}
+		
+		return job;
+	}
+	
+	/**
+	 * Writes a line for each result of a job
+	 * 
+	 * @param writer
+	 * @param job
+	 * @param name the name of the input, for statistics
+	 * @param tagged whether to start each line with the number of its puzzle
+	 * @throws IOException
+	 */
+	private void writeLines(StandardSudokuLineFileWriter writer, PuzzleJob job, String name, boolean tagged)
+			throws IOException {
+		if (job.getBatch() != null) {
+			for (int index = 0; index < job.getBatch().size(); index++) {
+				if (tagged) {
+					writer.writeTag((long) job.getSequence() * BitSlicedSudokuSolver.LANES + index + 1);
+				}
+				if (job.getBatchMessages().get(index) != null) {
+					writer.writeMessage(job.getBatchMessages().get(index));
+				} else {
+					writer.write(job.getBatch().get(index));
+				}
+			}
+			return;
+		}
+		
+		this.printStatistics(name + ":" + (job.getSequence() + 1), job);
+		if (tagged) {
+			writer.writeTag(job.getSequence() + 1);
+		}
+		if (job.getMessage() != null) {
+			writer.writeMessage(job.getMessage());
+		} else {
+			writer.write((PackedSudokuBoard) job.getBoard());
+		}
+	}
+	
+	/**
+	 * Solves every board in a binary file, writing each result to the same
+	 * record of the solution file.  The solution file has the same sections
+	 * as the puzzle file.
+	 * 
+	 * @param pipeline
+	 * @param file
+	 * @return false if the file could not be processed
+	 */
+	private boolean processBinaryFile(PuzzlePipeline pipeline, File file) {
+		String outputFilename = this.getOutputFilename(file);
+		try (BinarySudokuFileLoader loader = new BinarySudokuFileLoader(file);
+				BinarySudokuFileWriter writer = new BinarySudokuFileWriter(new File(outputFilename))) {
+			boolean batched = BIT_SLICED_SOLVER.equals(this.solverName);
+			List<BinarySudokuFileLoader.Section> sections = loader.getSections();
+			// the next section to start in the solution file
+			int[] nextSection = new int[1];
+			pipeline.run(sequence -> {
+				PuzzleJob job = new PuzzleJob(sequence);
+				if (batched) {
+					return SudokuSolverCLI.loadBatch(loader, job) ? job : null;
+				} else if (!loader.hasNext()) {
+					return null;
+				}
+				
+				try {
+					PackedSudokuBoard board = loader.load();
+					if (board == null) {
+						job.fail(new SudokuFileFormatException("Record " + sequence + " holds no puzzle"));
+					} else {
+						job.setBoard(board);
+					}
+				} catch (SudokuFileFormatException e) {
+					job.fail(e);
+				}
+				
+				return job;
+			}, job -> {
+				List<PackedSudokuBoard> boards = job.getBatch() != null ? job.getBatch() :
+						Collections.singletonList((PackedSudokuBoard) job.getBoard());
+				for (int index = 0; index < boards.size(); index++) {
+					while (nextSection[0] < sections.size() &&
+							sections.get(nextSection[0]).getFirstRecord() <= writer.getRecordCount()) {
+						writer.startSection(sections.get(nextSection[0]++).getName());
+					}
+					
+					String message = job.getBatch() != null ? job.getBatchMessages().get(index) : job.getMessage();
+					if (job.getBatch() == null) {
+						this.printStatistics(file.getName() + ":" + (job.getSequence() + 1), job);
+					}
+					if (message != null) {
+						writer.writeFailed();
+					} else {
+						writer.write(boards.get(index));
+					}
+				}
+			});
+			while (nextSection[0] < sections.size()) {
+				writer.startSection(sections.get(nextSection[0]++).getName());
+			}
+		} catch (IOException | SudokuFileFormatException e) {
+			System.err.println("Failed to process " + file.getName() + ": " + e.getMessage());
+			return false;
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Loads the next BitSlicedSudokuSolver.LANES records of a binary file
+	 * into a job, so they are solved together
+	 * 
+	 * @param loader
+	 * @param job
+	 * @return false if there are no more records
+	 */
+	private static boolean loadBatch(BinarySudokuFileLoader loader, PuzzleJob job) {
+		List<PackedSudokuBoard> boards = new ArrayList<PackedSudokuBoard>(BitSlicedSudokuSolver.LANES);
+		List<String> messages = new ArrayList<String>(BitSlicedSudokuSolver.LANES);
+		while (boards.size() < BitSlicedSudokuSolver.LANES && loader.hasNext()) {
+			long record = loader.getPosition();
+			PackedSudokuBoard board;
 			try {
-				board = StandardSudokuBoardFileLoader.loadFromFile(file);
-			} catch (IOException | SudokuFileFormatException e) {
+				board = loader.load();
+				messages.add(board == null ? "Record " + record + " holds no puzzle" : null);
+			} catch (SudokuFileFormatException e) {
 				board = null;
-				StandardSudokuFileWriter.writeMessageToFile(outputFilename, e.getMessage());
+				messages.add(e.getMessage());
+			}
+			boards.add(board);
+		}
+		
+		if (boards.isEmpty()) {
+			return false;
+		}
+		job.setBatch(boards, messages);
+		
+		return true;
+	}
+	
+	/**
+	 * Loads the next BitSlicedSudokuSolver.LANES boards into a job, so they
+	 * are solved together
+	 * 
+	 * @param loader
+	 * @param job
+	 * @return false if there are no more boards
+	 * @throws IOException
+	 */
+	private static boolean loadBatch(BoardReader loader, PuzzleJob job) throws IOException {
+		List<PackedSudokuBoard> boards = new ArrayList<PackedSudokuBoard>(BitSlicedSudokuSolver.LANES);
+		List<String> messages = new ArrayList<String>(BitSlicedSudokuSolver.LANES);
+		while (boards.size() < BitSlicedSudokuSolver.LANES) {
+			PackedSudokuBoard board = new PackedSudokuBoard();
+			try {
+				if (!loader.loadInto(board)) {
+					break;
+				}
+				messages.add(null);
+			} catch (SudokuFileFormatException e) {
+				board = null;
+				messages.add(e.getMessage());
+			}
+			boards.add(board);
+		}
+		
+		if (boards.isEmpty()) {
+			return false;
+		}
+		job.setBatch(boards, messages);
+		
+		return true;
+	}
+	
+	/**
+	 * Creates the worker for one solving thread, which either solves jobs or
+	 * counts their solutions
+	 * 
+	 * @return
+	 */
+	private Consumer<PuzzleJob> createWorker() {
+		SudokuSolver solver;
+		if (LARGE_FORMAT.equals(this.format)) {
+			solver = this.propagation == null ? new GeneralSudokuSolver() : new GeneralSudokuSolver(this.propagation);
+		} else if (this.variantModel != null) {
+			solver = new VariantSudokuSolver(this.variantModel);
+		} else {
+			solver = SudokuSolverCLI.createSolver(this.solverName, this.propagation);
+		}
+		
+		// the listener runs on this worker's thread during the solve
+		SolveStatistics[] lastStatistics = new SolveStatistics[1];
+		if (this.statistics && solver instanceof StandardSudokuSolver) {
+			((StandardSudokuSolver) solver).setStatisticsListener((board, statistics) -> lastStatistics[0] = statistics);
+		}
+		
+		Consumer<PuzzleJob> work;
+		SolveBudget budget = this.budget;
+		int limit = this.solutionLimit;
+		if (budget != null && solver instanceof StandardSudokuSolver) {
+			StandardSudokuSolver standard = (StandardSudokuSolver) solver;
+			if (limit > 0) {
+				work = job -> job.countSolutions(standard, limit, budget);
+			} else {
+				work = job -> job.solve(standard, budget);
+			}
+		} else if (limit > 0) {
+			SolutionCounter counter = (SolutionCounter) solver;
+			work = job -> job.countSolutions(counter, limit);
+		} else if (solver instanceof BitSlicedSudokuSolver) {
+			BitSlicedSudokuSolver bitSliced = (BitSlicedSudokuSolver) solver;
+			work = job -> {
+				if (job.getBatch() != null) {
+					job.solveBatch(bitSliced);
+				} else {
+					job.solve(bitSliced);
+				}
+			};
+		} else {
+			// the cache relabels and reorders boards, which most variants'
+			// rules do not survive
+			SudokuSolver jobSolver = this.cache != null && !LARGE_FORMAT.equals(this.format) &&
+					this.variantModel == null ?
+					new CachingSudokuSolver(solver, this.cache) : solver;
+			work = job -> job.solve(jobSolver);
+		}
+		
+		return job -> {
+			lastStatistics[0] = null;
+			work.accept(job);
+			job.setStatistics(lastStatistics[0]);
+		};
+	}
+	
+	/**
+	 * Gets the name of the solution file for a puzzle file
+	 * 
+	 * @param file
+	 * @return
+	 */
+	private String getOutputFilename(File file) {
+		return SOLUTION_DIRECTORY + file.getName().split("\\.")[0] +
+				(BINARY_FORMAT.equals(this.format) ? BINARY_SOLUTION_EXTENSION : SOLUTION_EXTENSION);
+	}
+	
+	/**
+	 * Reads the command line options.  Throws an IllegalArgumentException
+	 * describing the problem if any are not recognized.
+	 * 
+	 * @param args
+	 */
+	private void parseArguments(String[] args) {
+		int timeLimit = 0;
+		int nodeLimit = 0;
+		boolean incremental = false;
+		Set<Variant> variants = EnumSet.noneOf(Variant.class);
+		for (int index = 0; index < args.length; index++) {
+			switch (args[index]) {
+			case "--solver":
+				this.solverName = CommandLineArguments.value(args, ++index);
+				SudokuSolverCLI.createSolver(this.solverName, null);
+				break;
+			case "--threads":
+				this.threads = CommandLineArguments.integerValue(args, ++index, 1);
+				break;
+			case "--format":
+				this.format = CommandLineArguments.value(args, ++index);
+				if (!GRID_FORMAT.equals(this.format) && !LINE_FORMAT.equals(this.format) &&
+						!LARGE_FORMAT.equals(this.format) && !BINARY_FORMAT.equals(this.format)) {
+					throw new IllegalArgumentException("Unknown format " + this.format);
+				}
+				break;
+			case "--propagation":
+				this.propagation = SudokuSolverCLI.propagationValue(CommandLineArguments.value(args, ++index));
+				break;
+			case "--cache":
+				this.cache = new SolutionCache(CommandLineArguments.integerValue(args, ++index, 1));
+				break;
+			case "--time-limit":
+				timeLimit = CommandLineArguments.integerValue(args, ++index, 1);
+				break;
+			case "--node-limit":
+				nodeLimit = CommandLineArguments.integerValue(args, ++index, 1);
+				break;
+			case "--output-file":
+				this.outputFile = new File(CommandLineArguments.value(args, ++index));
+				break;
+			case "--sync":
+				this.sync = true;
+				break;
+			case "--watch":
+				this.watch = true;
+				break;
+			case "--incremental":
+				incremental = true;
+				break;
+			case "--variants":
+				for (String name : CommandLineArguments.value(args, ++index).split(",")) {
+					variants.add(Variant.forOptionName(name));
+				}
+				break;
+			case "--stdio":
+				this.stdio = true;
+				this.report = System.err;
+				break;
+			case "--tagged":
+				this.tagged = true;
+				break;
+			case "--statistics":
+				this.statistics = true;
+				break;
+			case "--count-solutions":
+				this.solutionLimit = CommandLineArguments.integerValue(args, ++index, 1);
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown option " + args[index]);
+			}
+		}
+		
+		if (BIT_SLICED_SOLVER.equals(this.solverName) && this.solutionLimit > 0) {
+			throw new IllegalArgumentException("Solver " + BIT_SLICED_SOLVER + " cannot count solutions");
+		}
+		if (BINARY_FORMAT.equals(this.format) && this.solutionLimit > 0) {
+			// binary records hold a board or a status, with no room for a count
+			throw new IllegalArgumentException("Option --count-solutions does not apply to the binary format");
+		}
+		if (this.outputFile != null && !GRID_FORMAT.equals(this.format)) {
+			throw new IllegalArgumentException("Option --output-file only applies to the grid format");
+		}
+		if (this.outputFile != null && this.watch) {
+			throw new IllegalArgumentException("Option --output-file cannot be used with --watch");
+		}
+		if (this.outputFile != null && incremental) {
+			throw new IllegalArgumentException("Option --output-file cannot be used with --incremental");
+		}
+		if (this.tagged && !this.stdio) {
+			throw new IllegalArgumentException("Option --tagged only applies with --stdio");
+		}
+		if (this.stdio && (LARGE_FORMAT.equals(this.format) || BINARY_FORMAT.equals(this.format))) {
+			throw new IllegalArgumentException("Option --stdio reads grid or line puzzles, not " + this.format);
+		}
+		if (this.stdio && (this.outputFile != null || this.watch || incremental)) {
+			throw new IllegalArgumentException(
+					"Option --stdio cannot be used with --output-file, --watch, or --incremental");
+		}
+		if (!variants.isEmpty()) {
+			if (LARGE_FORMAT.equals(this.format)) {
+				throw new IllegalArgumentException("Option --variants does not apply to the large format");
+			} else if (BIT_SLICED_SOLVER.equals(this.solverName)) {
+				throw new IllegalArgumentException("Option --variants cannot be used with solver " + BIT_SLICED_SOLVER);
 			}
-			
-			if (board != null) {
-				StandardSudokuSolver solver = new StandardSudokuSolver();
-				board = solver.solve(board);
-				StandardSudokuFileWriter.writeToFile(outputFilename, board);
+			this.variantModel = new ConstraintModel(SudokuGeometry.forBoxSize(PackedSudokuBoard.SUBGRID_SIZE),
+					variants, Collections.<Cage> emptyList());
+		}
+		if (timeLimit > 0 || nodeLimit > 0) {
+			// only the standard search checks a budget, so anything else would
+			// silently ignore it
+			if (LARGE_FORMAT.equals(this.format) || !variants.isEmpty() ||
+					!(STANDARD_SOLVER.equals(this.solverName) || PARALLEL_SOLVER.equals(this.solverName))) {
+				throw new IllegalArgumentException("Options --time-limit and --node-limit only apply to the " +
+						STANDARD_SOLVER + " and " + PARALLEL_SOLVER + " solvers, not the large format or --variants");
+			}
+			this.budget = new SolveBudget(timeLimit, nodeLimit, null);
+		}
+		if (incremental) {
+			String configuration = String.join(",", SOLVER_VERSION, this.format, this.solverName,
+					Integer.toString(this.solutionLimit), this.propagation == null ? "default" :
+							this.propagation.getStages().toString(), Integer.toString(timeLimit),
+					Integer.toString(nodeLimit), variants.toString(),
+					Integer.toString(this.cache == null ? 0 : this.cache.getCapacity()));
+			try {
+				this.manifest = new SolutionManifest(new File(MANIFEST_FILE), configuration);
+			} catch (IOException e) {
+				throw new IllegalArgumentException("Cannot read manifest " + MANIFEST_FILE + ": " + e.getMessage());
 			}
 		}
 	}
+	
+	/**
+	 * Reads the propagation stages from a comma separated list of stage
+	 * names, all, or none
+	 * 
+	 * @param value
+	 * @return
+	 */
+	static PropagationPipeline propagationValue(String value) {
+		if ("all".equals(value)) {
+			return PropagationPipeline.all();
+		} else if ("none".equals(value)) {
+			return new PropagationPipeline();
+		}
+		
+		List<PropagationStage> stages = new ArrayList<PropagationStage>();
+		for (String name : value.split(",")) {
+			stages.add(PropagationStage.forOptionName(name));
+		}
+		
+		return new PropagationPipeline(stages);
+	}
+	
+	/**
+	 * Prints how many deductions each propagation stage made
+	 */
+	private void printPropagationHits() {
+		for (PropagationStage stage : this.propagation.getStages()) {
+			this.report.println(stage.getOptionName() + ": " + this.propagation.getHits(stage));
+		}
+	}
+	
+	/**
+	 * Prints the statistics of a job's solve, if any were kept
+	 * 
+	 * @param name the name of the puzzle
+	 * @param job
+	 */
+	private void printStatistics(String name, PuzzleJob job) {
+		if (job.getStatistics() != null) {
+			this.report.println(name + ": " + job.getStatistics());
+		}
+	}
+	
+	/**
+	 * Prints how well the solution cache did
+	 */
+	private void printCacheCounts() {
+		this.report.println("cache hits: " + this.cache.getHits());
+		this.report.println("cache misses: " + this.cache.getMisses());
+		this.report.println("cache evictions: " + this.cache.getEvictions());
+	}
+	
+	/**
+	 * Creates a new solver of the named type
+	 * 
+	 * @param name
+	 * @param propagation the stages to run, null for the solver's default
+	 * @return
+	 */
+	private static SudokuSolver createSolver(String name, PropagationPipeline propagation) {
+		if (propagation == null) {
+			propagation = PropagationPipeline.NONE;
+		}
+		
+		switch (name) {
+		case STANDARD_SOLVER:
+			return new StandardSudokuSolver(propagation);
+		case DANCING_LINKS_SOLVER:
+			return new DancingLinksSudokuSolver();
+		case PARALLEL_SOLVER:
+			return new StandardSudokuSolver(ForkJoinPool.commonPool(), PARALLEL_SEARCH_DEPTH, propagation);
+		case BIT_SLICED_SOLVER:
+			return new BitSlicedSudokuSolver(new StandardSudokuSolver(propagation));
+		default:
+			throw new IllegalArgumentException("Unknown solver " + name);
+		}
+	}
 
+	/**
+	 * Reads boards one after another, such as the lines of a line file
+	 */
+	private interface BoardReader {
+		/**
+		 * @param board the board to overwrite
+		 * @return false if there are no more boards
+		 * @throws IOException
+		 * @throws SudokuFileFormatException if the next board is formatted
+		 * incorrectly
+		 */
+		boolean loadInto(PackedSudokuBoard board) throws IOException, SudokuFileFormatException;
+	}
+	
 	public static void main(String[] args) {
-		SudokuSolverCLI cli = new SudokuSolverCLI(args);
-		cli.processFiles();
+		SudokuSolverCLI cli = null;
+		try {
+			cli = new SudokuSolverCLI(args);
+		} catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			System.err.println(USAGE);
+			System.exit(1);
+		}
+		if (cli.watch) {
+			try {
+				cli.startWatching();
+			} catch (IOException e) {
+				System.err.println("Failed to watch puzzles: " + e.getMessage());
+				System.exit(1);
+			}
+		}
+		try {
+			if (cli.stdio) {
+				cli.processStream();
+			} else {
+				cli.processFiles();
+			}
+		} catch (IOException e) {
+			System.err.println("Failed to write solutions: " + e.getMessage());
+			System.exit(1);
+		}
+		if (cli.watch) {
+			try {
+				cli.watchFiles();
+			} catch (IOException e) {
+				System.err.println("Failed to watch puzzles: " + e.getMessage());
+				System.exit(1);
+			}
+		}
+		if (cli.propagation != null) {
+			cli.printPropagationHits();
+		}
+		if (cli.cache != null) {
+			cli.printCacheCounts();
+		}
 	}
 
 }
@@ -0,0 +1,53 @@
+package ian.phillip.norton.sudoku.board;
+
+import java.util.Arrays;
+
+/**
+ * A killer sudoku cage: a group of locations which may not repeat a value
+ * and whose values add up to a given sum
+ * 
+ * @author Ian Norton
+ * 
+ */
+public final class Cage {
+	private final int sum;
+	private final int[] cells;
+	
+	/**
+	 * Creates a cage
+	 * 
+	 * @param sum the total of the values in the cage
+	 * @param cells the row major indexes of the locations in the cage
+	 */
+	public Cage(int sum, int... cells) {
+		if (cells.length == 0) {
+			throw new IllegalArgumentException("A cage needs at least one location");
+		}
+		
+		this.sum = sum;
+		this.cells = cells.clone();
+		Arrays.sort(this.cells);
+		for (int index = 1; index < this.cells.length; index++) {
+			if (this.cells[index] == this.cells[index - 1]) {
+				throw new IllegalArgumentException("Location " + this.cells[index] + " is in the cage twice");
+			}
+		}
+	}
+	
+	public int getSum() {
+		return this.sum;
+	}
+	
+	/**
+	 * Gets the row major indexes of the locations in the cage, lowest first
+	 * 
+	 * @return
+	 */
+	public int[] getCells() {
+		return this.cells.clone();
+	}
+	
+	public int getSize() {
+		return this.cells.length;
+	}
+}
@@ -0,0 +1,444 @@
+package ian.phillip.norton.sudoku.board;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * The canonical form of a standard board under the transformations which
+ * keep a sudoku a sudoku: relabelling the values, swapping bands (groups of
+ * three rows sharing subgrids) or rows within a band, swapping stacks
+ * (groups of three columns) or columns within a stack, and transposing.
+ * Boards which are transformations of each other have the same canonical
+ * form, so it can be used as a key to recognise a puzzle however it is
+ * presented.
+ * 
+ * The canonical form is found in two steps.  First the rows and columns are
+ * ordered by how many givens they hold, which does not depend on the values
+ * so fixes most of the arrangement cheaply.  Of the arrangements with the
+ * smallest sequence of row counts, then of column counts, the canonical form
+ * is the one which reads smallest in row major order, with blanks as 0 and
+ * values relabelled in the order they are first read.  That is found with a
+ * branch and bound search which places one source row or column at a time
+ * and abandons any arrangement which already reads larger than the best so
+ * far.
+ * 
+ * Boards with a great many symmetries, such as nearly blank boards, could
+ * take that search a long time.  If it gives up the board is used as it is,
+ * which is still a correct though less useful key.
+ * 
+ * @author Ian Norton
+ * 
+ */
+public final class CanonicalForm {
+	private static final int SUBGRID_SIZE = PackedSudokuBoard.SUBGRID_SIZE;
+	private static final int BOARD_SIZE = PackedSudokuBoard.BOARD_SIZE;
+	private static final int CELL_COUNT = PackedSudokuBoard.CELL_COUNT;
+	/**
+	 * Number of arrangements tried before giving up on finding the canonical
+	 * form
+	 */
+	private static final int SEARCH_LIMIT = 50000;
+	
+	private final boolean transposed;
+	/**
+	 * Source row and column, after any transposition, of each canonical row
+	 * and column
+	 */
+	private final int[] rowMap;
+	private final int[] columnMap;
+	/**
+	 * Canonical value of each source value, indexed by source value with
+	 * blank mapping to blank
+	 */
+	private final int[] valueMap;
+	private final byte[] cells;
+	
+	private CanonicalForm(boolean transposed, int[] rowMap, int[] columnMap, int[] valueMap, byte[] cells) {
+		this.transposed = transposed;
+		this.rowMap = rowMap;
+		this.columnMap = columnMap;
+		this.valueMap = valueMap;
+		this.cells = cells;
+	}
+	
+	/**
+	 * Finds the canonical form of a board
+	 * 
+	 * @param board
+	 * @return
+	 */
+	public static CanonicalForm of(PackedSudokuBoard board) {
+		return new Search(board).run();
+	}
+	
+	/**
+	 * Finds the canonical form of a board
+	 * 
+	 * @param board
+	 * @return
+	 */
+	public static CanonicalForm of(StandardSudokuBoard board) {
+		return CanonicalForm.of(board.getPackedBoard());
+	}
+	
+	/**
+	 * Gets the canonical form as a string of 81 digits with 0 for blanks,
+	 * equal for any two boards which are transformations of each other
+	 * 
+	 * @return
+	 */
+	public String getKey() {
+		byte[] digits = new byte[CELL_COUNT];
+		for (int index = 0; index < CELL_COUNT; index++) {
+			digits[index] = (byte) ('0' + this.cells[index]);
+		}
+		
+		return new String(digits, StandardCharsets.US_ASCII);
+	}
+	
+	/**
+	 * Gets the board in its canonical form
+	 * 
+	 * @return
+	 */
+	public PackedSudokuBoard getBoard() {
+		PackedSudokuBoard board = new PackedSudokuBoard();
+		for (int index = 0; index < CELL_COUNT; index++) {
+			board.setCell(index, this.cells[index]);
+		}
+		
+		return board;
+	}
+	
+	/**
+	 * Applies the same transformation which took the original board to its
+	 * canonical form to another board, such as a solution of the original
+	 * 
+	 * @param board
+	 * @return
+	 */
+	public PackedSudokuBoard toCanonical(PackedSudokuBoard board) {
+		PackedSudokuBoard transformed = new PackedSudokuBoard();
+		for (int row = 0; row < BOARD_SIZE; row++) {
+			for (int column = 0; column < BOARD_SIZE; column++) {
+				transformed.setValue(row, column, this.valueMap[this.getSource(board, row, column)]);
+			}
+		}
+		
+		return transformed;
+	}
+	
+	/**
+	 * Undoes the transformation to canonical form on a board in the
+	 * canonical arrangement, such as a solution of the canonical board
+	 * 
+	 * @param board
+	 * @return
+	 */
+	public PackedSudokuBoard fromCanonical(PackedSudokuBoard board) {
+		int[] inverseValueMap = new int[BOARD_SIZE + 1];
+		for (int value = 0; value <= BOARD_SIZE; value++) {
+			inverseValueMap[this.valueMap[value]] = value;
+		}
+		
+		PackedSudokuBoard original = new PackedSudokuBoard();
+		for (int row = 0; row < BOARD_SIZE; row++) {
+			for (int column = 0; column < BOARD_SIZE; column++) {
+				int sourceRow = this.rowMap[row];
+				int sourceColumn = this.columnMap[column];
+				int value = inverseValueMap[board.getValue(row, column)];
+				if (this.transposed) {
+					original.setValue(sourceColumn, sourceRow, value);
+				} else {
+					original.setValue(sourceRow, sourceColumn, value);
+				}
+			}
+		}
+		
+		return original;
+	}
+	
+	/**
+	 * Gets the value of a board at the source location of a canonical
+	 * location
+	 */
+	private int getSource(PackedSudokuBoard board, int row, int column) {
+		int sourceRow = this.rowMap[row];
+		int sourceColumn = this.columnMap[column];
+		
+		return this.transposed ? board.getValue(sourceColumn, sourceRow) : board.getValue(sourceRow, sourceColumn);
+	}
+	
+	/**
+	 * The branch and bound search for the arrangement which reads smallest.
+	 * Canonical locations are filled in row major order.  Reaching the first
+	 * location of a row picks its source row, and each location of the first
+	 * row picks its source column.  Values are relabelled as they are read.
+	 */
+	private static class Search {
+		private final byte[][] sources = new byte[2][CELL_COUNT];
+		/**
+		 * Givens in each row and column of each source
+		 */
+		private final int[][] rowCounts = new int[2][BOARD_SIZE];
+		private final int[][] columnCounts = new int[2][BOARD_SIZE];
+		/**
+		 * Smallest sequences of row and column counts each source can be
+		 * arranged into
+		 */
+		private final int[][] targetRowCounts = new int[2][];
+		private final int[][] targetColumnCounts = new int[2][];
+		private byte[] source;
+		private int transpose;
+		private boolean transposed;
+		private final int[] rowMap = new int[BOARD_SIZE];
+		private final int[] columnMap = new int[BOARD_SIZE];
+		private final int[] valueMap = new int[BOARD_SIZE + 1];
+		private int nextValue = 1;
+		private final byte[] current = new byte[CELL_COUNT];
+		
+		private final byte[] best = new byte[CELL_COUNT];
+		private boolean bestTransposed;
+		private final int[] bestRowMap = new int[BOARD_SIZE];
+		private final int[] bestColumnMap = new int[BOARD_SIZE];
+		private final int[] bestValueMap = new int[BOARD_SIZE + 1];
+		/**
+		 * Incremented whenever a new best is found
+		 */
+		private int bestVersion;
+		
+		private int steps;
+		
+		Search(PackedSudokuBoard board) {
+			for (int row = 0; row < BOARD_SIZE; row++) {
+				for (int column = 0; column < BOARD_SIZE; column++) {
+					int value = board.getValue(row, column);
+					this.sources[0][row * BOARD_SIZE + column] = (byte) value;
+					this.sources[1][column * BOARD_SIZE + row] = (byte) value;
+					if (value != PackedSudokuBoard.BLANK) {
+						this.rowCounts[0][row]++;
+						this.columnCounts[0][column]++;
+						this.rowCounts[1][column]++;
+						this.columnCounts[1][row]++;
+					}
+				}
+			}
+			
+			for (int transpose = 0; transpose < 2; transpose++) {
+				this.targetRowCounts[transpose] = Search.smallestArrangement(this.rowCounts[transpose]);
+				this.targetColumnCounts[transpose] = Search.smallestArrangement(this.columnCounts[transpose]);
+			}
+		}
+		
+		CanonicalForm run() {
+			// only search the orientations with the smallest counts
+			int order = Search.compare(this.targetRowCounts[0], this.targetRowCounts[1]);
+			if (order == 0) {
+				order = Search.compare(this.targetColumnCounts[0], this.targetColumnCounts[1]);
+			}
+			
+			for (int transpose = 0; transpose < 2 && this.steps <= SEARCH_LIMIT; transpose++) {
+				if ((transpose == 0 && order > 0) || (transpose == 1 && order < 0)) {
+					continue;
+				}
+				
+				this.transpose = transpose;
+				this.transposed = transpose == 1;
+				this.source = this.sources[transpose];
+				this.fill(0, this.bestVersion > 0);
+			}
+			
+			if (this.steps > SEARCH_LIMIT) {
+				return this.identity();
+			}
+			
+			// give values missing from the board the remaining labels in order
+			int nextValue = 1;
+			for (int value = 1; value <= BOARD_SIZE; value++) {
+				if (this.bestValueMap[value] != 0) {
+					nextValue++;
+				}
+			}
+			for (int value = 1; value <= BOARD_SIZE; value++) {
+				if (this.bestValueMap[value] == 0) {
+					this.bestValueMap[value] = nextValue++;
+				}
+			}
+			
+			return new CanonicalForm(this.bestTransposed, this.bestRowMap, this.bestColumnMap, this.bestValueMap,
+					this.best);
+		}
+		
+		/**
+		 * Fills the canonical location at index onwards in every way which
+		 * could still beat the best
+		 * 
+		 * @param index
+		 * @param tied whether everything before index reads the same as the
+		 * best, false if it reads smaller or there is no best yet
+		 */
+		private void fill(int index, boolean tied) {
+			if (++this.steps > SEARCH_LIMIT) {
+				return;
+			} else if (index == CELL_COUNT) {
+				if (!tied) {
+					this.recordBest();
+				}
+				return;
+			}
+			
+			int row = index / BOARD_SIZE;
+			int column = index % BOARD_SIZE;
+			int rowChoices = column == 0 ?
+					this.choices(this.rowMap, row, this.rowCounts[this.transpose], this.targetRowCounts[this.transpose]) :
+					1 << this.rowMap[row];
+			int columnChoices = row == 0 ?
+					this.choices(this.columnMap, column, this.columnCounts[this.transpose],
+							this.targetColumnCounts[this.transpose]) :
+					1 << this.columnMap[column];
+			
+			// try blanks first so a good best is found early
+			for (int pass = 0; pass < 2; pass++) {
+				for (int rows = rowChoices; rows != 0; rows &= rows - 1) {
+					int sourceRow = Integer.numberOfTrailingZeros(rows);
+					for (int columns = columnChoices; columns != 0; columns &= columns - 1) {
+						int sourceColumn = Integer.numberOfTrailingZeros(columns);
+						int sourceValue = this.source[sourceRow * BOARD_SIZE + sourceColumn];
+						if ((sourceValue == PackedSudokuBoard.BLANK) != (pass == 0)) {
+							continue;
+						}
+						
+						boolean newValue = sourceValue != PackedSudokuBoard.BLANK && this.valueMap[sourceValue] == 0;
+						int value = newValue ? this.nextValue : this.valueMap[sourceValue];
+						if (tied && value > this.best[index]) {
+							continue;
+						}
+						
+						this.rowMap[row] = sourceRow;
+						this.columnMap[column] = sourceColumn;
+						this.current[index] = (byte) value;
+						if (newValue) {
+							this.valueMap[sourceValue] = this.nextValue++;
+						}
+						
+						int version = this.bestVersion;
+						this.fill(index + 1, tied && value == this.best[index]);
+						
+						if (newValue) {
+							this.valueMap[sourceValue] = 0;
+							this.nextValue--;
+						}
+						if (this.steps > SEARCH_LIMIT) {
+							return;
+						} else if (version != this.bestVersion) {
+							// the new best shares everything before index
+							tied = true;
+						}
+					}
+				}
+			}
+		}
+		
+		/**
+		 * Gets the source rows or columns which may be placed at a canonical
+		 * row or column as a bit mask.  The first of a band or stack may be
+		 * any from a band or stack not yet used, the others must come from
+		 * the same band or stack as the first.  All must hold the target
+		 * number of givens.
+		 * 
+		 * @param map rows or columns placed so far
+		 * @param index the canonical row or column
+		 * @param counts givens in each source row or column
+		 * @param targetCounts givens needed in each canonical row or column
+		 * @return
+		 */
+		private int choices(int[] map, int index, int[] counts, int[] targetCounts) {
+			int used = 0;
+			for (int placed = 0; placed < index; placed++) {
+				used |= 1 << map[placed];
+			}
+			
+			int group = (1 << SUBGRID_SIZE) - 1;
+			int allowed = 0;
+			if (index % SUBGRID_SIZE == 0) {
+				for (int start = 0; start < BOARD_SIZE; start += SUBGRID_SIZE) {
+					if ((used & group << start) == 0) {
+						allowed |= group << start;
+					}
+				}
+			} else {
+				int start = map[index - 1] / SUBGRID_SIZE * SUBGRID_SIZE;
+				allowed = group << start;
+			}
+			
+			for (int source = 0; source < BOARD_SIZE; source++) {
+				if (counts[source] != targetCounts[index]) {
+					allowed &= ~(1 << source);
+				}
+			}
+			
+			return allowed & ~used;
+		}
+		
+		/**
+		 * Arranges the counts of rows or columns into the smallest sequence
+		 * reachable by reordering whole bands or stacks and the rows or
+		 * columns within them
+		 * 
+		 * @param counts
+		 * @return
+		 */
+		private static int[] smallestArrangement(int[] counts) {
+			int[][] groups = new int[SUBGRID_SIZE][];
+			for (int group = 0; group < SUBGRID_SIZE; group++) {
+				groups[group] = Arrays.copyOfRange(counts, group * SUBGRID_SIZE, (group + 1) * SUBGRID_SIZE);
+				Arrays.sort(groups[group]);
+			}
+			Arrays.sort(groups, Search::compare);
+			
+			int[] arranged = new int[BOARD_SIZE];
+			for (int group = 0; group < SUBGRID_SIZE; group++) {
+				System.arraycopy(groups[group], 0, arranged, group * SUBGRID_SIZE, SUBGRID_SIZE);
+			}
+			
+			return arranged;
+		}
+		
+		private static int compare(int[] first, int[] second) {
+			for (int index = 0; index < first.length; index++) {
+				if (first[index] != second[index]) {
+					return Integer.compare(first[index], second[index]);
+				}
+			}
+			
+			return 0;
+		}
+		
+		private void recordBest() {
+			System.arraycopy(this.current, 0, this.best, 0, CELL_COUNT);
+			System.arraycopy(this.rowMap, 0, this.bestRowMap, 0, BOARD_SIZE);
+			System.arraycopy(this.columnMap, 0, this.bestColumnMap, 0, BOARD_SIZE);
+			System.arraycopy(this.valueMap, 0, this.bestValueMap, 0, BOARD_SIZE + 1);
+			this.bestTransposed = this.transposed;
+			this.bestVersion++;
+		}
+		
+		/**
+		 * Gets the form leaving the board as it is
+		 * 
+		 * @return
+		 */
+		private CanonicalForm identity() {
+			int[] rowMap = new int[BOARD_SIZE];
+			int[] columnMap = new int[BOARD_SIZE];
+			int[] valueMap = new int[BOARD_SIZE + 1];
+			for (int index = 0; index < BOARD_SIZE; index++) {
+				rowMap[index] = index;
+				columnMap[index] = index;
+				valueMap[index + 1] = index + 1;
+			}
+			
+			return new CanonicalForm(false, rowMap, columnMap, valueMap, this.sources[0].clone());
+		}
+	}
+}
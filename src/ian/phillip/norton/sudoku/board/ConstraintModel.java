@@ -0,0 +1,335 @@
+package ian.phillip.norton.sudoku.board;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The rules of a sudoku variant, compiled into flat tables a solver can
+ * walk without knowing which variant it is solving.
+ * 
+ * A model starts from the rows, columns, and boxes of a SudokuGeometry and
+ * adds the units and distance rules of its Variants and any killer Cages.
+ * When it is created every unit is flattened into one array of locations
+ * indexed by unit offsets, and the peers of every location, the others it
+ * may not share a value with for any reason, into another.  Units which must
+ * hold every value come first, numbered as the geometry numbers them
+ * followed by the diagonals and windows; the cages follow them.
+ * 
+ * Models are immutable and may be shared between solvers and threads.
+ * 
+ * @author Ian Norton
+ * 
+ */
+public final class ConstraintModel {
+	private static final int[][] KNIGHT_MOVES = { { -2, -1 }, { -2, 1 }, { -1, -2 }, { -1, 2 }, { 1, -2 },
+			{ 1, 2 }, { 2, -1 }, { 2, 1 } };
+	private static final int[][] KING_MOVES = { { -1, -1 }, { -1, 0 }, { -1, 1 }, { 0, -1 }, { 0, 1 }, { 1, -1 },
+			{ 1, 0 }, { 1, 1 } };
+	
+	private final SudokuGeometry geometry;
+	private final Set<Variant> variants;
+	private final List<Cage> cages;
+	/**
+	 * Number of units which must hold every value
+	 */
+	private final int fullUnitCount;
+	/**
+	 * The locations of unit u are unitCells[unitOffsets[u]] to
+	 * unitCells[unitOffsets[u + 1] - 1]
+	 */
+	private final int[] unitOffsets;
+	private final int[] unitCells;
+	/**
+	 * The peers of location c are peerCells[peerOffsets[c]] to
+	 * peerCells[peerOffsets[c + 1] - 1], lowest first
+	 */
+	private final int[] peerOffsets;
+	private final int[] peerCells;
+	/**
+	 * The cage of each location, -1 for none
+	 */
+	private final int[] cageOf;
+	private final int[] cageSums;
+	
+	/**
+	 * Creates the model of a plain sudoku
+	 * 
+	 * @param geometry
+	 */
+	public ConstraintModel(SudokuGeometry geometry) {
+		this(geometry, EnumSet.noneOf(Variant.class), Collections.<Cage> emptyList());
+	}
+	
+	/**
+	 * Creates the model of a sudoku with extra rules
+	 * 
+	 * @param geometry
+	 * @param variants
+	 * @param cages killer cages, which may not overlap
+	 */
+	public ConstraintModel(SudokuGeometry geometry, Set<Variant> variants, List<Cage> cages) {
+		this.geometry = geometry;
+		this.variants = variants.isEmpty() ? EnumSet.noneOf(Variant.class) : EnumSet.copyOf(variants);
+		this.cages = Collections.unmodifiableList(new ArrayList<Cage>(cages));
+		
+		int size = geometry.getSize();
+		int cellCount = geometry.getCellCount();
+		List<int[]> units = new ArrayList<int[]>();
+		for (int unit = 0; unit < geometry.getUnitCount(); unit++) {
+			units.add(geometry.getUnitCells(unit));
+		}
+		if (this.variants.contains(Variant.DIAGONAL)) {
+			int[] leading = new int[size];
+			int[] trailing = new int[size];
+			for (int index = 0; index < size; index++) {
+				leading[index] = geometry.getCellIndex(index, index);
+				trailing[index] = geometry.getCellIndex(index, size - 1 - index);
+			}
+			units.add(leading);
+			units.add(trailing);
+		}
+		if (this.variants.contains(Variant.WINDOKU)) {
+			int boxSize = geometry.getBoxSize();
+			for (int top = 1; top + boxSize <= size; top += boxSize + 1) {
+				for (int left = 1; left + boxSize <= size; left += boxSize + 1) {
+					int[] window = new int[size];
+					for (int index = 0; index < size; index++) {
+						window[index] = geometry.getCellIndex(top + index / boxSize, left + index % boxSize);
+					}
+					units.add(window);
+				}
+			}
+		}
+		this.fullUnitCount = units.size();
+		
+		this.cageOf = new int[cellCount];
+		this.cageSums = new int[this.cages.size()];
+		Arrays.fill(this.cageOf, -1);
+		for (int cage = 0; cage < this.cages.size(); cage++) {
+			int[] cells = this.cages.get(cage).getCells();
+			if (cells.length > size) {
+				throw new IllegalArgumentException("A cage may hold at most " + size + " locations");
+			}
+			for (int cell : cells) {
+				if (cell < 0 || cell >= cellCount) {
+					throw new IllegalArgumentException("Location " + cell + " is not on the board");
+				} else if (this.cageOf[cell] >= 0) {
+					throw new IllegalArgumentException("Location " + cell + " is in more than one cage");
+				}
+				this.cageOf[cell] = cage;
+			}
+			this.cageSums[cage] = this.cages.get(cage).getSum();
+			units.add(cells);
+		}
+		
+		this.unitOffsets = new int[units.size() + 1];
+		for (int unit = 0; unit < units.size(); unit++) {
+			this.unitOffsets[unit + 1] = this.unitOffsets[unit] + units.get(unit).length;
+		}
+		this.unitCells = new int[this.unitOffsets[units.size()]];
+		for (int unit = 0; unit < units.size(); unit++) {
+			System.arraycopy(units.get(unit), 0, this.unitCells, this.unitOffsets[unit], units.get(unit).length);
+		}
+		
+		// the units holding each location
+		int[][] cellUnits = new int[cellCount][];
+		int[] unitCounts = new int[cellCount];
+		for (int[] unit : units) {
+			for (int cell : unit) {
+				unitCounts[cell]++;
+			}
+		}
+		for (int cell = 0; cell < cellCount; cell++) {
+			cellUnits[cell] = new int[unitCounts[cell]];
+			unitCounts[cell] = 0;
+		}
+		for (int unit = 0; unit < units.size(); unit++) {
+			for (int cell : units.get(unit)) {
+				cellUnits[cell][unitCounts[cell]++] = unit;
+			}
+		}
+		
+		// mark every location related to each location in turn, then list
+		// the marked ones in order
+		this.peerOffsets = new int[cellCount + 1];
+		int[] peers = new int[cellCount * cellCount];
+		boolean[] related = new boolean[cellCount];
+		for (int cell = 0; cell < cellCount; cell++) {
+			Arrays.fill(related, false);
+			for (int unit : cellUnits[cell]) {
+				for (int other : units.get(unit)) {
+					related[other] = true;
+				}
+			}
+			if (this.variants.contains(Variant.ANTI_KNIGHT)) {
+				this.relateMoves(related, cell, KNIGHT_MOVES);
+			}
+			if (this.variants.contains(Variant.ANTI_KING)) {
+				this.relateMoves(related, cell, KING_MOVES);
+			}
+			related[cell] = false;
+			
+			int found = this.peerOffsets[cell];
+			for (int other = 0; other < cellCount; other++) {
+				if (related[other]) {
+					peers[found++] = other;
+				}
+			}
+			this.peerOffsets[cell + 1] = found;
+		}
+		this.peerCells = Arrays.copyOf(peers, this.peerOffsets[cellCount]);
+	}
+	
+	public SudokuGeometry getGeometry() {
+		return this.geometry;
+	}
+	
+	public Set<Variant> getVariants() {
+		return Collections.unmodifiableSet(this.variants);
+	}
+	
+	public List<Cage> getCages() {
+		return this.cages;
+	}
+	
+	/**
+	 * Gets the number of units, including the cages
+	 * 
+	 * @return
+	 */
+	public int getUnitCount() {
+		return this.unitOffsets.length - 1;
+	}
+	
+	/**
+	 * Gets the number of units which must hold every value.  They are
+	 * numbered before the cages.
+	 * 
+	 * @return
+	 */
+	public int getFullUnitCount() {
+		return this.fullUnitCount;
+	}
+	
+	/**
+	 * Gets the index in getUnitCells() of the first location of a unit.  The
+	 * unit ends where the next one starts.
+	 * 
+	 * @param unit
+	 * @return
+	 */
+	public int getUnitOffset(int unit) {
+		return this.unitOffsets[unit];
+	}
+	
+	/**
+	 * Gets the locations of every unit, one after another.  The returned
+	 * array is shared and must not be changed.
+	 * 
+	 * @return
+	 */
+	public int[] getUnitCells() {
+		return this.unitCells;
+	}
+	
+	/**
+	 * Gets the index in getPeerCells() of the first peer of a location.  Its
+	 * peers end where the next location's start.
+	 * 
+	 * @param cell
+	 * @return
+	 */
+	public int getPeerOffset(int cell) {
+		return this.peerOffsets[cell];
+	}
+	
+	/**
+	 * Gets the peers of every location, one after another.  The returned
+	 * array is shared and must not be changed.
+	 * 
+	 * @return
+	 */
+	public int[] getPeerCells() {
+		return this.peerCells;
+	}
+	
+	/**
+	 * Gets the cage a location is in
+	 * 
+	 * @param cell
+	 * @return the index of the cage in getCages(), or -1 if it is in none
+	 */
+	public int getCageOf(int cell) {
+		return this.cageOf[cell];
+	}
+	
+	/**
+	 * Gets the unit holding the locations of a cage
+	 * 
+	 * @param cage
+	 * @return
+	 */
+	public int getCageUnit(int cage) {
+		return this.fullUnitCount + cage;
+	}
+	
+	public int getCageSum(int cage) {
+		return this.cageSums[cage];
+	}
+	
+	/**
+	 * Checks a complete board against every rule of the model
+	 * 
+	 * @param board
+	 * @return true if every location is filled and no rule is broken
+	 */
+	public boolean isSolvedBy(GeneralSudokuBoard board) {
+		if (board.getBoxSize() != this.geometry.getBoxSize() || !board.isComplete()) {
+			return false;
+		}
+		
+		for (int cell = 0; cell < this.geometry.getCellCount(); cell++) {
+			for (int index = this.peerOffsets[cell]; index < this.peerOffsets[cell + 1]; index++) {
+				if (board.getCell(this.peerCells[index]) == board.getCell(cell)) {
+					return false;
+				}
+			}
+		}
+		for (int cage = 0; cage < this.cageSums.length; cage++) {
+			int sum = 0;
+			int unit = this.getCageUnit(cage);
+			for (int index = this.unitOffsets[unit]; index < this.unitOffsets[unit + 1]; index++) {
+				sum += board.getCell(this.unitCells[index]);
+			}
+			if (sum != this.cageSums[cage]) {
+				return false;
+			}
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Marks the locations a move away from a location as related to it
+	 * 
+	 * @param related
+	 * @param cell
+	 * @param moves row and column offsets of each move
+	 */
+	private void relateMoves(boolean[] related, int cell, int[][] moves) {
+		int size = this.geometry.getSize();
+		int row = this.geometry.getRow(cell);
+		int column = this.geometry.getColumn(cell);
+		for (int[] move : moves) {
+			int otherRow = row + move[0];
+			int otherColumn = column + move[1];
+			if (otherRow >= 0 && otherRow < size && otherColumn >= 0 && otherColumn < size) {
+				related[this.geometry.getCellIndex(otherRow, otherColumn)] = true;
+			}
+		}
+	}
+}
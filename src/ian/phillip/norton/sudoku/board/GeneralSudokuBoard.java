@@ -0,0 +1,248 @@
+package ian.phillip.norton.sudoku.board;
+
+/**
+ * 
+ * Sudoku board of any box size from 2 (4x4) to 8 (64x64), laid out by a
+ * SudokuGeometry.  Locations are held in a single byte array in row major
+ * order with 0 representing a blank and 1 to the board size the filled
+ * values.
+ * 
+ * As with PackedSudokuBoard every unit keeps a count of each value and a mask
+ * of the values it holds, updated as values are set, so validity,
+ * completeness, and conflict checks are answered without scanning the board.
+ * 
+ * @author Ian Norton
+ * 
+ */
+public class GeneralSudokuBoard implements SudokuBoard {
+	public static final int BLANK = 0;
+	
+	private final SudokuGeometry geometry;
+	private final byte[] cells;
+	/**
+	 * Number of times each value appears in each unit indexed by
+	 * unit * size + value - 1
+	 */
+	private final byte[] unitValueCounts;
+	/**
+	 * Mask of the values present in each unit with bit (value - 1) set
+	 */
+	private final long[] unitMasks;
+	private int filledCount;
+	/**
+	 * Number of extra appearances of values in units they already appear in
+	 */
+	private int duplicateCount;
+	
+	/**
+	 * Creates a blank board
+	 * 
+	 * @param boxSize the width of a box, 3 for a standard board
+	 */
+	public GeneralSudokuBoard(int boxSize) {
+		this.geometry = SudokuGeometry.forBoxSize(boxSize);
+		this.cells = new byte[this.geometry.getCellCount()];
+		this.unitValueCounts = new byte[this.geometry.getUnitCount() * this.geometry.getSize()];
+		this.unitMasks = new long[this.geometry.getUnitCount()];
+	}
+	
+	/**
+	 * Copy constructor.  Creates a deep copy of the passed in original
+	 * @param original
+	 */
+	public GeneralSudokuBoard(GeneralSudokuBoard original) {
+		this.geometry = original.geometry;
+		this.cells = original.cells.clone();
+		this.unitValueCounts = original.unitValueCounts.clone();
+		this.unitMasks = original.unitMasks.clone();
+		this.filledCount = original.filledCount;
+		this.duplicateCount = original.duplicateCount;
+	}
+	
+	/**
+	 * Checks that a board is currently in a valid configuration.  This means
+	 * all rows, columns, and boxes contain no more than one instance of each
+	 * value.  Blank entries do not count against a board being valid
+	 */
+	@Override
+	public boolean isValid() {
+		return this.duplicateCount == 0;
+	}
+	
+	/**
+	 * Checks that a board is fully completed.  This means it is entirely filled
+	 * out and also valid.
+	 * 
+	 */
+	@Override
+	public boolean isComplete() {
+		return this.filledCount == this.cells.length && this.duplicateCount == 0;
+	}
+	
+	/**
+	 * Checks if placing the value at the given location would repeat a value
+	 * already present elsewhere in its row, column, or box.  Placing a blank
+	 * never conflicts.
+	 * 
+	 * @param rowNumber
+	 * @param columnNumber
+	 * @param value
+	 * @return
+	 */
+	public boolean wouldConflict(int rowNumber, int columnNumber, int value) {
+		this.validateBounds(rowNumber, columnNumber);
+		if (value == BLANK) {
+			return false;
+		}
+		
+		int index = this.geometry.getCellIndex(rowNumber, columnNumber);
+		int size = this.geometry.getSize();
+		// the location itself holding the value does not count as a conflict
+		int allowed = this.cells[index] == value ? 1 : 0;
+		
+		return this.unitValueCounts[this.geometry.getRowUnit(index) * size + value - 1] > allowed ||
+				this.unitValueCounts[this.geometry.getColumnUnit(index) * size + value - 1] > allowed ||
+				this.unitValueCounts[this.geometry.getBoxUnit(index) * size + value - 1] > allowed;
+	}
+	
+	/**
+	 * Gets the mask of values present in a unit with bit (value - 1) set for
+	 * each value
+	 * 
+	 * @param unit a unit index as numbered by the geometry
+	 * @return
+	 */
+	public long getUnitMask(int unit) {
+		return this.unitMasks[unit];
+	}
+	
+	/**
+	 * Gets the number of non blank locations
+	 * 
+	 * @return
+	 */
+	public int getFilledCount() {
+		return this.filledCount;
+	}
+	
+	/**
+	 * Gets the value at a location, 0 if the location is blank
+	 * 
+	 * @param rowNumber
+	 * @param columnNumber
+	 * @return
+	 */
+	public int getValue(int rowNumber, int columnNumber) {
+		this.validateBounds(rowNumber, columnNumber);
+		
+		return this.cells[this.geometry.getCellIndex(rowNumber, columnNumber)];
+	}
+	
+	/**
+	 * Sets the specified location to the given value, 0 for a blank
+	 * 
+	 * @param rowNumber
+	 * @param columnNumber
+	 * @param value
+	 */
+	public void setValue(int rowNumber, int columnNumber, int value) {
+		this.validateBounds(rowNumber, columnNumber);
+		
+		this.setCell(this.geometry.getCellIndex(rowNumber, columnNumber), value);
+	}
+	
+	/**
+	 * Gets the value at a row major cell index, 0 if the location is blank
+	 * 
+	 * @param index
+	 * @return
+	 */
+	public int getCell(int index) {
+		return this.cells[index];
+	}
+	
+	/**
+	 * Sets the value at a row major cell index, 0 for a blank
+	 * 
+	 * @param index
+	 * @param value
+	 */
+	public void setCell(int index, int value) {
+		if (!this.isValidEntry(value)) {
+			throw new IllegalArgumentException("Invalid sudoku value " + value);
+		}
+		
+		int oldValue = this.cells[index];
+		if (oldValue == value) {
+			return;
+		}
+		
+		if (oldValue != BLANK) {
+			this.removeFromUnit(this.geometry.getRowUnit(index), oldValue);
+			this.removeFromUnit(this.geometry.getColumnUnit(index), oldValue);
+			this.removeFromUnit(this.geometry.getBoxUnit(index), oldValue);
+			this.filledCount--;
+		}
+		if (value != BLANK) {
+			this.addToUnit(this.geometry.getRowUnit(index), value);
+			this.addToUnit(this.geometry.getColumnUnit(index), value);
+			this.addToUnit(this.geometry.getBoxUnit(index), value);
+			this.filledCount++;
+		}
+		
+		this.cells[index] = (byte) value;
+	}
+	
+	/**
+	 * Determines if the given value may be stored in the board.  0 is a blank.
+	 * 
+	 * @param value
+	 * @return
+	 */
+	public boolean isValidEntry(int value) {
+		return value >= BLANK && value <= this.geometry.getSize();
+	}
+	
+	/**
+	 * Gets the size of the board
+	 * 
+	 * @return
+	 */
+	public int getSize() {
+		return this.geometry.getSize();
+	}
+	
+	public int getBoxSize() {
+		return this.geometry.getBoxSize();
+	}
+	
+	public SudokuGeometry getGeometry() {
+		return this.geometry;
+	}
+	
+	private void addToUnit(int unit, int value) {
+		int countIndex = unit * this.geometry.getSize() + value - 1;
+		if (this.unitValueCounts[countIndex]++ > 0) {
+			this.duplicateCount++;
+		}
+		this.unitMasks[unit] |= 1L << (value - 1);
+	}
+	
+	private void removeFromUnit(int unit, int value) {
+		int countIndex = unit * this.geometry.getSize() + value - 1;
+		if (--this.unitValueCounts[countIndex] > 0) {
+			this.duplicateCount--;
+		} else {
+			this.unitMasks[unit] &= ~(1L << (value - 1));
+		}
+	}
+	
+	private void validateBounds(int rowNumber, int columnNumber) throws IndexOutOfBoundsException {
+		if (rowNumber < 0 || rowNumber >= this.geometry.getSize()) {
+			throw new IndexOutOfBoundsException("Invalid row index");
+		}
+		if (columnNumber < 0 || columnNumber >= this.geometry.getSize()) {
+			throw new IndexOutOfBoundsException("Invalid column index");
+		}
+	}
+}
@@ -0,0 +1,329 @@
+package ian.phillip.norton.sudoku.board;
+
+/**
+ * 
+ * Compact 9x9 sudoku board.  All 81 locations are held in a single byte array
+ * in row major order with 0 representing a blank and 1-9 the filled values.
+ * Copying a board is a handful of array copies and reading or writing a
+ * location never boxes.
+ * 
+ * Every row, column, and subgrid (a unit) keeps a count of each value and a
+ * mask of the values it holds.  These and a count of filled locations and
+ * duplicated values are updated as values are set so validity, completeness,
+ * and conflict checks are answered without scanning the board.
+ * 
+ * Can be converted to and from a StandardSudokuBoard.
+ * 
+ * @author Ian Norton
+ * 
+ */
+public class PackedSudokuBoard implements SudokuBoard {
+	public static final int SUBGRID_SIZE = 3;
+	public static final int BOARD_SIZE = SUBGRID_SIZE * SUBGRID_SIZE;
+	public static final int CELL_COUNT = BOARD_SIZE * BOARD_SIZE;
+	public static final int BLANK = 0;
+	
+	private static final int UNIT_COUNT = 3 * BOARD_SIZE;
+	private static final int COLUMN_UNITS = BOARD_SIZE;
+	private static final int SUBGRID_UNITS = 2 * BOARD_SIZE;
+	
+	private final byte[] cells;
+	/**
+	 * Number of times each value appears in each unit indexed by
+	 * unit * BOARD_SIZE + value - 1
+	 */
+	private final byte[] unitValueCounts;
+	/**
+	 * Mask of the values present in each unit with bit (value - 1) set
+	 */
+	private final int[] unitMasks;
+	private int filledCount;
+	/**
+	 * Number of extra appearances of values in units they already appear in
+	 */
+	private int duplicateCount;
+	
+	public PackedSudokuBoard() {
+		this.cells = new byte[CELL_COUNT];
+		this.unitValueCounts = new byte[UNIT_COUNT * BOARD_SIZE];
+		this.unitMasks = new int[UNIT_COUNT];
+	}
+	
+	/**
+	 * Copy constructor.  Creates a deep copy of the passed in original
+	 * @param original
+	 */
+	public PackedSudokuBoard(PackedSudokuBoard original) {
+		this.cells = original.cells.clone();
+		this.unitValueCounts = original.unitValueCounts.clone();
+		this.unitMasks = original.unitMasks.clone();
+		this.filledCount = original.filledCount;
+		this.duplicateCount = original.duplicateCount;
+	}
+	
+	/**
+	 * Creates a packed copy of the given standard board
+	 * @param original
+	 */
+	public PackedSudokuBoard(StandardSudokuBoard original) {
+		this(original.getPackedBoard());
+	}
+	
+	/**
+	 * Creates a standard board holding the same values as this board
+	 * 
+	 * @return
+	 */
+	public StandardSudokuBoard toStandardBoard() {
+		return new StandardSudokuBoard(this);
+	}
+	
+	/**
+	 * Overwrites this board with the values of another board without
+	 * allocating
+	 * 
+	 * @param other
+	 */
+	public void copyFrom(PackedSudokuBoard other) {
+		System.arraycopy(other.cells, 0, this.cells, 0, CELL_COUNT);
+		System.arraycopy(other.unitValueCounts, 0, this.unitValueCounts, 0, this.unitValueCounts.length);
+		System.arraycopy(other.unitMasks, 0, this.unitMasks, 0, UNIT_COUNT);
+		this.filledCount = other.filledCount;
+		this.duplicateCount = other.duplicateCount;
+	}
+	
+	/**
+	 * Checks that a board is currently in a valid configuration.  This means
+	 * all rows, columns, and subgrids contain no more than one instance of
+	 * the numbers 1-9.  Blank entries do not count against a board being valid
+	 */
+	@Override
+	public boolean isValid() {
+		return this.duplicateCount == 0;
+	}
+	
+	/**
+	 * Checks that a board is fully completed.  This means it is entirely filled
+	 * out and also valid.
+	 * 
+	 */
+	@Override
+	public boolean isComplete() {
+		return this.filledCount == CELL_COUNT && this.duplicateCount == 0;
+	}
+	
+	/**
+	 * Checks if placing the value at the given location would repeat a value
+	 * already present elsewhere in its row, column, or subgrid.  Placing a
+	 * blank never conflicts.
+	 * 
+	 * @param rowNumber
+	 * @param columnNumber
+	 * @param value
+	 * @return
+	 */
+	public boolean wouldConflict(int rowNumber, int columnNumber, int value) {
+		validateBounds(rowNumber, columnNumber);
+		if (value == BLANK) {
+			return false;
+		}
+		
+		int index = getCellIndex(rowNumber, columnNumber);
+		// the location itself holding the value does not count as a conflict
+		int allowed = this.cells[index] == value ? 1 : 0;
+		
+		return this.unitValueCounts[rowUnit(index) * BOARD_SIZE + value - 1] > allowed ||
+				this.unitValueCounts[columnUnit(index) * BOARD_SIZE + value - 1] > allowed ||
+				this.unitValueCounts[subgridUnit(index) * BOARD_SIZE + value - 1] > allowed;
+	}
+	
+	/**
+	 * Gets the mask of values present in the given row with bit (value - 1)
+	 * set for each value
+	 * 
+	 * @param rowNumber
+	 * @return
+	 */
+	public int getRowMask(int rowNumber) {
+		return this.unitMasks[rowNumber];
+	}
+	
+	/**
+	 * Gets the mask of values present in the given column with bit
+	 * (value - 1) set for each value
+	 * 
+	 * @param columnNumber
+	 * @return
+	 */
+	public int getColumnMask(int columnNumber) {
+		return this.unitMasks[COLUMN_UNITS + columnNumber];
+	}
+	
+	/**
+	 * Gets the mask of values present in the given subgrid with bit
+	 * (value - 1) set for each value
+	 * 
+	 * @param gridIndex
+	 * @return
+	 */
+	public int getSubgridMask(int gridIndex) {
+		return this.unitMasks[SUBGRID_UNITS + gridIndex];
+	}
+	
+	/**
+	 * Gets the number of non blank locations
+	 * 
+	 * @return
+	 */
+	public int getFilledCount() {
+		return this.filledCount;
+	}
+	
+	/**
+	 * Gets the value at a location, 0 if the location is blank
+	 * 
+	 * @param rowNumber
+	 * @param columnNumber
+	 * @return
+	 */
+	public int getValue(int rowNumber, int columnNumber) {
+		validateBounds(rowNumber, columnNumber);
+		
+		return this.cells[getCellIndex(rowNumber, columnNumber)];
+	}
+	
+	/**
+	 * Sets the specified location to the given value, 0 for a blank
+	 * 
+	 * @param rowNumber
+	 * @param columnNumber
+	 * @param value
+	 */
+	public void setValue(int rowNumber, int columnNumber, int value) {
+		validateBounds(rowNumber, columnNumber);
+		
+		this.setCell(getCellIndex(rowNumber, columnNumber), value);
+	}
+	
+	/**
+	 * Gets the value at a row major cell index, 0 if the location is blank
+	 * 
+	 * @param index
+	 * @return
+	 */
+	public int getCell(int index) {
+		return this.cells[index];
+	}
+	
+	/**
+	 * Sets the value at a row major cell index, 0 for a blank
+	 * 
+	 * @param index
+	 * @param value
+	 */
+	public void setCell(int index, int value) {
+		if (!isValidEntry(value)) {
+			throw new IllegalArgumentException("Invalid sudoku value " + value);
+		}
+		
+		int oldValue = this.cells[index];
+		if (oldValue == value) {
+			return;
+		}
+		
+		if (oldValue != BLANK) {
+			this.removeFromUnit(rowUnit(index), oldValue);
+			this.removeFromUnit(columnUnit(index), oldValue);
+			this.removeFromUnit(subgridUnit(index), oldValue);
+			this.filledCount--;
+		}
+		if (value != BLANK) {
+			this.addToUnit(rowUnit(index), value);
+			this.addToUnit(columnUnit(index), value);
+			this.addToUnit(subgridUnit(index), value);
+			this.filledCount++;
+		}
+		
+		this.cells[index] = (byte) value;
+	}
+	
+	/**
+	 * Determines if the given value may be stored in the board.  0 is a blank.
+	 * 
+	 * @param value
+	 * @return
+	 */
+	public static boolean isValidEntry(int value) {
+		return value >= BLANK && value <= BOARD_SIZE;
+	}
+	
+	/**
+	 * Gets the row major index of a location
+	 * 
+	 * @param row
+	 * @param column
+	 * @return
+	 */
+	public static int getCellIndex(int row, int column) {
+		return row * BOARD_SIZE + column;
+	}
+	
+	/**
+	 * Gets the size of the board
+	 * 
+	 * @return
+	 */
+	public int getSize() {
+		return BOARD_SIZE;
+	}
+	
+	/**
+	 * Gets the subgrid index of a location.  Subgrids are indexed starting in
+	 * the top left going first left to right then top to bottom.
+	 * 
+	 * @param row
+	 * @param column
+	 * @return
+	 */
+	public static int getSubgridIndex(int row, int column) {
+		return SUBGRID_SIZE * (row / SUBGRID_SIZE) + (column / SUBGRID_SIZE);
+	}
+	
+	private void addToUnit(int unit, int value) {
+		int countIndex = unit * BOARD_SIZE + value - 1;
+		if (this.unitValueCounts[countIndex]++ > 0) {
+			this.duplicateCount++;
+		}
+		this.unitMasks[unit] |= 1 << (value - 1);
+	}
+	
+	private void removeFromUnit(int unit, int value) {
+		int countIndex = unit * BOARD_SIZE + value - 1;
+		if (--this.unitValueCounts[countIndex] > 0) {
+			this.duplicateCount--;
+		} else {
+			this.unitMasks[unit] &= ~(1 << (value - 1));
+		}
+	}
+	
+	private static int rowUnit(int index) {
+		return index / BOARD_SIZE;
+	}
+	
+	private static int columnUnit(int index) {
+		return COLUMN_UNITS + index % BOARD_SIZE;
+	}
+	
+	private static int subgridUnit(int index) {
+		return SUBGRID_UNITS + getSubgridIndex(index / BOARD_SIZE, index % BOARD_SIZE);
+	}
+	
+	private static void validateBounds(int rowNumber, int columnNumber) throws IndexOutOfBoundsException {
+		if (rowNumber < 0 || rowNumber >= BOARD_SIZE) {
+			throw new IndexOutOfBoundsException("Invalid row index");
+		}
+		if (columnNumber < 0 || columnNumber >= BOARD_SIZE) {
+			throw new IndexOutOfBoundsException("Invalid column index");
+		}
+	}
+}
@@ -1,15 +1,16 @@
 package ian.phillip.norton.sudoku.board;
 
 import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
 
 /**
  * 
  * Defines a standard 9x9 sudoku board which can be filled with the numbers
  * 1-9 or null to represent a blank.  
  * 
+ * The values are stored in a PackedSudokuBoard so copying a board is a single
+ * array copy.
+ * 
  * @author Ian Norton
  *
  */
@@ -17,10 +18,10 @@ public class StandardSudokuBoard implements SudokuBoard {
 	private static final int SUBGRID_SIZE = 3;
 	public static final int BOARD_SIZE = 9;
 	
-	private Grid<Integer> grid;
+	private PackedSudokuBoard cells;
 	
 	public StandardSudokuBoard () {
-		this.grid = new Grid<Integer>(BOARD_SIZE, BOARD_SIZE);
+		this.cells = new PackedSudokuBoard();
 	}
 	
 	/**
@@ -28,7 +29,34 @@ public class StandardSudokuBoard implements SudokuBoard {
 	 * @param original
 	 */
 	public StandardSudokuBoard(StandardSudokuBoard original) {
-		this.grid = new Grid<Integer>(original.grid);
+		this.cells = new PackedSudokuBoard(original.cells);
+	}
+	
+	/**
+	 * Creates a standard board holding a copy of the values in the given
+	 * packed board
+	 * @param packed
+	 */
+	public StandardSudokuBoard(PackedSudokuBoard packed) {
+		this.cells = new PackedSudokuBoard(packed);
+	}
+	
+	/**
+	 * Creates a packed copy of this board
+	 * 
+	 * @return
+	 */
+	public PackedSudokuBoard toPackedBoard() {
+		return new PackedSudokuBoard(this.cells);
+	}
+	
+	/**
+	 * Gets the packed board backing this board without copying it
+	 * 
+	 * @return
+	 */
+	PackedSudokuBoard getPackedBoard() {
+		return this.cells;
 	}
 
 	/**
@@ -39,17 +67,7 @@ public class StandardSudokuBoard implements SudokuBoard {
 	 */
 	@Override
 	public boolean isValid() {
-		for (int index = 0; index < StandardSudokuBoard.BOARD_SIZE; index++) {
-			// if row, column, or subgrid is not valid then the whole thing
-			// is not valid
-			if(!(this.sectionValid(this.grid.getRow(index)) &&
-				this.sectionValid(this.grid.getColumn(index)) &&
-				this.sectionValid(this.getSubgridValues(index)))) {
-				return false;
-			};
-		}
-		
-		return true;
+		return this.cells.isValid();
 	}
 	
 	/**
@@ -59,7 +77,20 @@ public class StandardSudokuBoard implements SudokuBoard {
 	 */
 	@Override
 	public boolean isComplete() {
-		return this.isValid() && this.allEntriesFilled();
+		return this.cells.isComplete();
+	}
+	
+	/**
+	 * Checks if placing the value at the given location would repeat a value
+	 * already present elsewhere in its row, column, or subgrid.
+	 * 
+	 * @param rowNumber
+	 * @param columnNumber
+	 * @param value the value to check, null for a blank which never conflicts
+	 * @return
+	 */
+	public boolean wouldConflict(int rowNumber, int columnNumber, Integer value) {
+		return value != null && this.cells.wouldConflict(rowNumber, columnNumber, value);
 	}
 	
 	/**
@@ -70,7 +101,12 @@ public class StandardSudokuBoard implements SudokuBoard {
 	 * @return List<Integer> The values in the specified row
 	 */
 	public List<Integer> getRow(int rowNumber) {
-		return this.grid.getRow(rowNumber);
+		List<Integer> values = new ArrayList<Integer>(BOARD_SIZE);
+		for (int column = 0; column < BOARD_SIZE; column++) {
+			values.add(this.getValue(rowNumber, column));
+		}
+		
+		return values;
 	}
 	
 	/**
@@ -81,7 +117,12 @@ public class StandardSudokuBoard implements SudokuBoard {
 	 * @return List<Integer> The values in the specified row
 	 */
 	public List<Integer> getColumn(int columnNumber) {
-		return this.grid.getColumn(columnNumber);
+		List<Integer> values = new ArrayList<Integer>(BOARD_SIZE);
+		for (int row = 0; row < BOARD_SIZE; row++) {
+			values.add(this.getValue(row, columnNumber));
+		}
+		
+		return values;
 	}
 	
 	/**
@@ -93,15 +134,13 @@ public class StandardSudokuBoard implements SudokuBoard {
 	 * @return List<Integer> The values in the specified row
 	 */
 	public List<Integer> getSubgridValues(int gridIndex) {		
-		List<Integer> values = new ArrayList<Integer>();
+		List<Integer> values = new ArrayList<Integer>(BOARD_SIZE);
 		
-		Grid<Integer> subgrid = this.grid.getSubgrid(
-				StandardSudokuBoard.SUBGRID_SIZE * (gridIndex / StandardSudokuBoard.SUBGRID_SIZE), // row
-				StandardSudokuBoard.SUBGRID_SIZE * (gridIndex % StandardSudokuBoard.SUBGRID_SIZE), // column
-				StandardSudokuBoard.SUBGRID_SIZE, StandardSudokuBoard.SUBGRID_SIZE);
+		int startRow = StandardSudokuBoard.SUBGRID_SIZE * (gridIndex / StandardSudokuBoard.SUBGRID_SIZE);
+		int startColumn = StandardSudokuBoard.SUBGRID_SIZE * (gridIndex % StandardSudokuBoard.SUBGRID_SIZE);
 		for (int row = 0; row < StandardSudokuBoard.SUBGRID_SIZE; row++) {
 			for (int column = 0; column < StandardSudokuBoard.SUBGRID_SIZE; column++) {
-				values.add(subgrid.getValue(row, column));
+				values.add(this.getValue(startRow + row, startColumn + column));
 			}
 		}
 		
@@ -119,28 +158,35 @@ public class StandardSudokuBoard implements SudokuBoard {
 	 * @return index of the subgrid
 	 */
 	public static int getSubgridIndex(int row, int column) {
-		return StandardSudokuBoard.SUBGRID_SIZE * (row / StandardSudokuBoard.SUBGRID_SIZE) + (column / StandardSudokuBoard.SUBGRID_SIZE);
+		return PackedSudokuBoard.getSubgridIndex(row, column);
 	}
 	
 	/**
-	 * Gets all values (including nulls) in a given row
+	 * Gets the value at a given location or null if it is blank
 	 * 
 	 * @param rowNumber
-	 * @return List<Integer> The values in the specified row
+	 * @param columnNumber
+	 * @return Integer The value at the location
 	 */
 	public Integer getValue(int rowNumber, int columnNumber) {
-		return this.grid.getValue(rowNumber, columnNumber);
+		int value = this.cells.getValue(rowNumber, columnNumber);
+		return value == PackedSudokuBoard.BLANK ? null : value;
 	}
 	
 	/**
-	 * Sets the specified location to the given value
+	 * Sets the specified location to the given value.  Throws an
+	 * IllegalArgumentException if the value is not a valid entry.
 	 * 
 	 * @param rowNumber
 	 * @param columnNumber
 	 * @param value
 	 */
 	public void setValue(int rowNumber, int columnNumber, Integer value) {
-		this.grid.setValue(rowNumber, columnNumber, value);
+		if (!this.isValidEntry(value)) {
+			throw new IllegalArgumentException("Invalid sudoku value " + value);
+		}
+		
+		this.cells.setValue(rowNumber, columnNumber, value == null ? PackedSudokuBoard.BLANK : value);
 	}
 
 	/**
@@ -162,42 +208,4 @@ public class StandardSudokuBoard implements SudokuBoard {
 	public int getSize() {
 		return StandardSudokuBoard.BOARD_SIZE;
 	}
-	
-	/**
-	 * Checks if all values passed in are valid and unique
-	 * 
-	 * @param section
-	 * @return
-	 */
-	private boolean sectionValid(List<Integer> section) {
-		Set<Integer> valuesPresent = new HashSet<Integer>();
-		
-		if (section == null) {
-			return false;
-		}
-		
-		for (Integer entry : section) {
-			if (entry != null && (!this.isValidEntry(entry) || !valuesPresent.add(entry))) {
-				return false;
-			}
-		}
-		
-		return true;
-	}
-	
-	/**
-	 * Checks that all entries are non-null
-	 * @return
-	 */
-	private boolean allEntriesFilled() {
-		for (int row = 0; row < BOARD_SIZE; row++) {
-			for (int column = 0; column < BOARD_SIZE; column++) {
-				if (this.grid.getValue(row, column) == null) {
-					return false;
-				};
-			}
-		}
-		
-		return true;
-	}
 }
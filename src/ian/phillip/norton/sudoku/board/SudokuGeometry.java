@@ -0,0 +1,197 @@
+package ian.phillip.norton.sudoku.board;
+
+/**
+ * The layout of a sudoku board made of n x n boxes, giving a board n^2
+ * locations wide holding the values 1 to n^2.  A standard board has a box
+ * size of 3.
+ * 
+ * Locations are numbered in row major order.  Rows, columns, and boxes are
+ * all units, numbered with the rows first, then the columns, then the boxes.
+ * The row, column, and box of every location and the peers of every
+ * location, the other locations sharing a unit with it, are worked out once
+ * per box size so solvers never recompute them.
+ * 
+ * Values are held as bits of a long so the box size is at most 8.
+ * Geometries are immutable and shared.
+ * 
+ * @author Ian Norton
+ * 
+ */
+public final class SudokuGeometry {
+	public static final int MIN_BOX_SIZE = 2;
+	public static final int MAX_BOX_SIZE = 8;
+	
+	private static final SudokuGeometry[] GEOMETRIES = new SudokuGeometry[MAX_BOX_SIZE + 1];
+	
+	private final int boxSize;
+	private final int size;
+	private final int cellCount;
+	private final int[] rowOf;
+	private final int[] columnOf;
+	private final int[] boxOf;
+	private final int[][] peers;
+	private final int[][] unitCells;
+	
+	private SudokuGeometry(int boxSize) {
+		this.boxSize = boxSize;
+		this.size = boxSize * boxSize;
+		this.cellCount = this.size * this.size;
+		this.rowOf = new int[this.cellCount];
+		this.columnOf = new int[this.cellCount];
+		this.boxOf = new int[this.cellCount];
+		this.peers = new int[this.cellCount][];
+		this.unitCells = new int[this.getUnitCount()][this.size];
+		
+		for (int cell = 0; cell < this.cellCount; cell++) {
+			this.rowOf[cell] = cell / this.size;
+			this.columnOf[cell] = cell % this.size;
+			this.boxOf[cell] = boxSize * (this.rowOf[cell] / boxSize) + this.columnOf[cell] / boxSize;
+		}
+		
+		// locations are added to each unit in row major order
+		int[] unitSizes = new int[this.getUnitCount()];
+		for (int cell = 0; cell < this.cellCount; cell++) {
+			for (int unit : new int[] { this.getRowUnit(cell), this.getColumnUnit(cell), this.getBoxUnit(cell) }) {
+				this.unitCells[unit][unitSizes[unit]++] = cell;
+			}
+		}
+		
+		// every other location in the row and column, plus the locations of
+		// the box not already in either
+		int peerCount = 2 * (this.size - 1) + (boxSize - 1) * (boxSize - 1);
+		for (int cell = 0; cell < this.cellCount; cell++) {
+			int[] cellPeers = new int[peerCount];
+			int found = 0;
+			for (int other = 0; other < this.cellCount; other++) {
+				if (other != cell && (this.rowOf[other] == this.rowOf[cell] ||
+						this.columnOf[other] == this.columnOf[cell] || this.boxOf[other] == this.boxOf[cell])) {
+					cellPeers[found++] = other;
+				}
+			}
+			this.peers[cell] = cellPeers;
+		}
+	}
+	
+	/**
+	 * Gets the geometry for boards with the given box size
+	 * 
+	 * @param boxSize
+	 * @return
+	 */
+	public static synchronized SudokuGeometry forBoxSize(int boxSize) {
+		if (boxSize < MIN_BOX_SIZE || boxSize > MAX_BOX_SIZE) {
+			throw new IllegalArgumentException(String.format("Box size must be %d-%d, not %d",
+					MIN_BOX_SIZE, MAX_BOX_SIZE, boxSize));
+		}
+		
+		if (GEOMETRIES[boxSize] == null) {
+			GEOMETRIES[boxSize] = new SudokuGeometry(boxSize);
+		}
+		
+		return GEOMETRIES[boxSize];
+	}
+	
+	/**
+	 * Gets the width of a box
+	 * 
+	 * @return
+	 */
+	public int getBoxSize() {
+		return this.boxSize;
+	}
+	
+	/**
+	 * Gets the width of the board, which is also the largest value
+	 * 
+	 * @return
+	 */
+	public int getSize() {
+		return this.size;
+	}
+	
+	public int getCellCount() {
+		return this.cellCount;
+	}
+	
+	/**
+	 * Gets the number of rows, columns, and boxes together
+	 * 
+	 * @return
+	 */
+	public int getUnitCount() {
+		return 3 * this.size;
+	}
+	
+	/**
+	 * Gets the mask with a bit set for every value
+	 * 
+	 * @return
+	 */
+	public long getAllValues() {
+		return this.size == Long.SIZE ? -1L : (1L << this.size) - 1;
+	}
+	
+	/**
+	 * Gets the row major index of a location
+	 * 
+	 * @param row
+	 * @param column
+	 * @return
+	 */
+	public int getCellIndex(int row, int column) {
+		return row * this.size + column;
+	}
+	
+	public int getRow(int cell) {
+		return this.rowOf[cell];
+	}
+	
+	public int getColumn(int cell) {
+		return this.columnOf[cell];
+	}
+	
+	/**
+	 * Gets the box of a location.  Boxes are indexed starting in the top left
+	 * going first left to right then top to bottom.
+	 * 
+	 * @param cell
+	 * @return
+	 */
+	public int getBox(int cell) {
+		return this.boxOf[cell];
+	}
+	
+	public int getRowUnit(int cell) {
+		return this.rowOf[cell];
+	}
+	
+	public int getColumnUnit(int cell) {
+		return this.size + this.columnOf[cell];
+	}
+	
+	public int getBoxUnit(int cell) {
+		return 2 * this.size + this.boxOf[cell];
+	}
+	
+	/**
+	 * Gets the locations in a unit.  The returned array is shared and must
+	 * not be changed.
+	 * 
+	 * @param unit
+	 * @return
+	 */
+	public int[] getUnitCells(int unit) {
+		return this.unitCells[unit];
+	}
+	
+	/**
+	 * Gets the locations sharing a row, column, or box with the given
+	 * location.  The returned array is shared and must not be changed.
+	 * 
+	 * @param cell
+	 * @return
+	 */
+	public int[] getPeers(int cell) {
+		return this.peers[cell];
+	}
+}
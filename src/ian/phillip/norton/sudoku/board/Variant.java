@@ -0,0 +1,58 @@
+package ian.phillip.norton.sudoku.board;
+
+import java.util.Locale;
+
+/**
+ * Extra rules a ConstraintModel may add to the rows, columns, and boxes of a
+ * board.  Some add units which must hold every value once, the others forbid
+ * locations a set distance apart from holding the same value.
+ * 
+ * @author Ian Norton
+ * 
+ */
+public enum Variant {
+	/**
+	 * Both main diagonals hold every value once, as in Sudoku X
+	 */
+	DIAGONAL,
+	/**
+	 * Extra boxes, one location in from the edges with a line of locations
+	 * between them, hold every value once.  A standard board has four.
+	 */
+	WINDOKU,
+	/**
+	 * Locations a chess knight's move apart may not hold the same value
+	 */
+	ANTI_KNIGHT,
+	/**
+	 * Locations a chess king's move apart, including diagonally, may not hold
+	 * the same value
+	 */
+	ANTI_KING;
+	
+	/**
+	 * Gets the name of the variant as given on the command line, such as
+	 * anti-knight
+	 * 
+	 * @return
+	 */
+	public String getOptionName() {
+		return this.name().toLowerCase(Locale.ROOT).replace('_', '-');
+	}
+	
+	/**
+	 * Gets the variant with the given command line name
+	 * 
+	 * @param optionName
+	 * @return
+	 */
+	public static Variant forOptionName(String optionName) {
+		for (Variant variant : Variant.values()) {
+			if (variant.getOptionName().equals(optionName)) {
+				return variant;
+			}
+		}
+		
+		throw new IllegalArgumentException("Unknown variant " + optionName);
+	}
+}
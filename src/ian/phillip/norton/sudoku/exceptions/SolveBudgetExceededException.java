@@ -0,0 +1,9 @@
+package ian.phillip.norton.sudoku.exceptions;
+
+public class SolveBudgetExceededException extends Exception {
+	private static final long serialVersionUID = 6472398115820642091L;
+	
+	public SolveBudgetExceededException(String message) {
+		super(message);
+	}
+}
@@ -0,0 +1,39 @@
+package ian.phillip.norton.sudoku.generator;
+
+import java.util.Locale;
+
+/**
+ * How hard a puzzle is, judged by the least the solver needs to solve it
+ * without guessing
+ * 
+ * @author Ian Norton
+ * 
+ */
+public enum Difficulty {
+	/**
+	 * Solved by filling locations with a single candidate
+	 */
+	EASY,
+	/**
+	 * Also needs hidden singles
+	 */
+	MEDIUM,
+	/**
+	 * Also needs pairs, triples, or box line reductions
+	 */
+	HARD,
+	/**
+	 * Needs guessing even with every propagation stage
+	 */
+	EXPERT;
+	
+	/**
+	 * Gets the name used for the difficulty on the command line and in file
+	 * names
+	 * 
+	 * @return
+	 */
+	public String getOptionName() {
+		return this.name().toLowerCase(Locale.ROOT);
+	}
+}
@@ -0,0 +1,64 @@
+package ian.phillip.norton.sudoku.generator;
+
+import ian.phillip.norton.sudoku.board.PackedSudokuBoard;
+
+/**
+ * A puzzle made by a SudokuPuzzleGenerator along with its solution and
+ * rating
+ * 
+ * @author Ian Norton
+ * 
+ */
+public class GeneratedPuzzle {
+	private final long index;
+	private final PackedSudokuBoard puzzle;
+	private final PackedSudokuBoard solution;
+	private final Difficulty difficulty;
+	private final long score;
+	
+	GeneratedPuzzle(long index, PackedSudokuBoard puzzle, PackedSudokuBoard solution, Difficulty difficulty,
+			long score) {
+		this.index = index;
+		this.puzzle = puzzle;
+		this.solution = solution;
+		this.difficulty = difficulty;
+		this.score = score;
+	}
+	
+	/**
+	 * Gets the index the puzzle was generated for, which along with the seed
+	 * makes it again
+	 * 
+	 * @return
+	 */
+	public long getIndex() {
+		return this.index;
+	}
+	
+	public PackedSudokuBoard getPuzzle() {
+		return this.puzzle;
+	}
+	
+	public PackedSudokuBoard getSolution() {
+		return this.solution;
+	}
+	
+	public Difficulty getDifficulty() {
+		return this.difficulty;
+	}
+	
+	/**
+	 * Gets the number of search nodes the standard solver visited solving the
+	 * puzzle without any propagation, a finer measure of effort than the
+	 * difficulty
+	 * 
+	 * @return
+	 */
+	public long getScore() {
+		return this.score;
+	}
+	
+	public int getGivens() {
+		return this.puzzle.getFilledCount();
+	}
+}
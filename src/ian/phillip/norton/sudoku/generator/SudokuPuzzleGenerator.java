@@ -0,0 +1,206 @@
+package ian.phillip.norton.sudoku.generator;
+
+import java.util.SplittableRandom;
+
+import ian.phillip.norton.sudoku.board.PackedSudokuBoard;
+import ian.phillip.norton.sudoku.solver.PropagationPipeline;
+import ian.phillip.norton.sudoku.solver.PropagationStage;
+import ian.phillip.norton.sudoku.solver.SolveStatistics;
+import ian.phillip.norton.sudoku.solver.StandardSudokuSolver;
+
+/**
+ * Generates random standard puzzles with a single solution and rates how
+ * hard they are.
+ * 
+ * Each puzzle is made from its own random numbers seeded by the generator's
+ * seed and the puzzle's index, so the same seed and index always give the
+ * same puzzle whichever generator or thread makes it.  A full grid is made
+ * by filling the three subgrids on the diagonal, which do not constrain each
+ * other, with random permutations and solving the rest.  Givens are then
+ * removed in a random order, putting back any whose removal leaves more than
+ * one solution, until none can be removed or the minimum is reached.
+ * 
+ * The puzzle is rated by solving it with less propagation first and more
+ * until no guess is needed, see Difficulty.
+ * 
+ * A generator is not safe to share between threads, but generators with the
+ * same seed may be used on many threads to make different indexes.
+ * 
+ * @author Ian Norton
+ * 
+ */
+public class SudokuPuzzleGenerator {
+	private static final int SUBGRID_SIZE = PackedSudokuBoard.SUBGRID_SIZE;
+	private static final int BOARD_SIZE = PackedSudokuBoard.BOARD_SIZE;
+	private static final int CELL_COUNT = PackedSudokuBoard.CELL_COUNT;
+	/**
+	 * Fewest givens a standard puzzle with a single solution can have
+	 */
+	public static final int MIN_GIVENS = 17;
+	/**
+	 * Odd constant spreading indexes across the seed space
+	 */
+	private static final long INDEX_MULTIPLIER = 0x9E3779B97F4A7C15L;
+	
+	private final long seed;
+	private final int minimumGivens;
+	
+	/**
+	 * Checks uniqueness while removing givens, kept apart from the rating
+	 * solvers so it does not pay for statistics
+	 */
+	private final StandardSudokuSolver uniquenessSolver = new StandardSudokuSolver(
+			new PropagationPipeline(PropagationStage.HIDDEN_SINGLES));
+	private final StandardSudokuSolver plainSolver = new StandardSudokuSolver();
+	private final StandardSudokuSolver hiddenSinglesSolver = new StandardSudokuSolver(
+			new PropagationPipeline(PropagationStage.HIDDEN_SINGLES));
+	private final StandardSudokuSolver fullSolver = new StandardSudokuSolver(PropagationPipeline.all());
+	/**
+	 * Statistics of the last rating solve, set by the listener
+	 */
+	private SolveStatistics lastStatistics;
+	
+	/**
+	 * Creates a generator removing givens until none can be removed
+	 * 
+	 * @param seed
+	 */
+	public SudokuPuzzleGenerator(long seed) {
+		this(seed, MIN_GIVENS);
+	}
+	
+	/**
+	 * Creates a generator removing givens until none can be removed or only
+	 * minimumGivens are left.  More givens make easier puzzles.
+	 * 
+	 * @param seed
+	 * @param minimumGivens
+	 */
+	public SudokuPuzzleGenerator(long seed, int minimumGivens) {
+		if (minimumGivens < MIN_GIVENS || minimumGivens > CELL_COUNT) {
+			throw new IllegalArgumentException("Minimum givens must be from " + MIN_GIVENS + " to " + CELL_COUNT);
+		}
+		
+		this.seed = seed;
+		this.minimumGivens = minimumGivens;
+		this.plainSolver.setStatisticsListener((board, statistics) -> this.lastStatistics = statistics);
+		this.hiddenSinglesSolver.setStatisticsListener((board, statistics) -> this.lastStatistics = statistics);
+		this.fullSolver.setStatisticsListener((board, statistics) -> this.lastStatistics = statistics);
+	}
+	
+	/**
+	 * Generates the puzzle for an index
+	 * 
+	 * @param index
+	 * @return
+	 */
+	public GeneratedPuzzle generate(long index) {
+		SplittableRandom random = new SplittableRandom(this.seed ^ index * INDEX_MULTIPLIER);
+		PackedSudokuBoard solution = this.generateGrid(random);
+		PackedSudokuBoard puzzle = this.removeGivens(solution, random);
+		
+		this.plainSolver.solve(puzzle);
+		SolveStatistics plainStatistics = this.lastStatistics;
+		
+		return new GeneratedPuzzle(index, puzzle, solution, this.rate(puzzle, plainStatistics),
+				plainStatistics.getNodes());
+	}
+	
+	/**
+	 * Makes a random full grid
+	 * 
+	 * @param random
+	 * @return
+	 */
+	private PackedSudokuBoard generateGrid(SplittableRandom random) {
+		PackedSudokuBoard board = new PackedSudokuBoard();
+		int[] values = new int[BOARD_SIZE];
+		for (int index = 0; index < BOARD_SIZE; index++) {
+			values[index] = index + 1;
+		}
+		
+		for (int subgrid = 0; subgrid < SUBGRID_SIZE; subgrid++) {
+			SudokuPuzzleGenerator.shuffle(values, random);
+			for (int index = 0; index < BOARD_SIZE; index++) {
+				board.setValue(subgrid * SUBGRID_SIZE + index / SUBGRID_SIZE,
+						subgrid * SUBGRID_SIZE + index % SUBGRID_SIZE, values[index]);
+			}
+		}
+		
+		// any filling of the diagonal subgrids can be completed
+		return this.uniquenessSolver.solve(board);
+	}
+	
+	/**
+	 * Removes givens from a full grid in a random order, keeping the
+	 * solution unique
+	 * 
+	 * @param solution
+	 * @param random
+	 * @return
+	 */
+	private PackedSudokuBoard removeGivens(PackedSudokuBoard solution, SplittableRandom random) {
+		PackedSudokuBoard puzzle = new PackedSudokuBoard(solution);
+		int[] cells = new int[CELL_COUNT];
+		for (int index = 0; index < CELL_COUNT; index++) {
+			cells[index] = index;
+		}
+		SudokuPuzzleGenerator.shuffle(cells, random);
+		
+		int givens = CELL_COUNT;
+		for (int index = 0; index < CELL_COUNT && givens > this.minimumGivens; index++) {
+			int cell = cells[index];
+			int value = puzzle.getCell(cell);
+			puzzle.setCell(cell, PackedSudokuBoard.BLANK);
+			if (this.uniquenessSolver.hasUniqueSolution(puzzle)) {
+				givens--;
+			} else {
+				puzzle.setCell(cell, value);
+			}
+		}
+		
+		return puzzle;
+	}
+	
+	/**
+	 * Rates a puzzle by the least propagation needed to solve it without
+	 * guessing
+	 * 
+	 * @param puzzle
+	 * @param plainStatistics statistics of solving the puzzle without
+	 * propagation
+	 * @return
+	 */
+	private Difficulty rate(PackedSudokuBoard puzzle, SolveStatistics plainStatistics) {
+		if (plainStatistics.getGuesses() == 0) {
+			return Difficulty.EASY;
+		}
+		
+		this.hiddenSinglesSolver.solve(puzzle);
+		if (this.lastStatistics.getGuesses() == 0) {
+			return Difficulty.MEDIUM;
+		}
+		
+		this.fullSolver.solve(puzzle);
+		if (this.lastStatistics.getGuesses() == 0) {
+			return Difficulty.HARD;
+		}
+		
+		return Difficulty.EXPERT;
+	}
+	
+	/**
+	 * Shuffles values in place
+	 * 
+	 * @param values
+	 * @param random
+	 */
+	private static void shuffle(int[] values, SplittableRandom random) {
+		for (int index = values.length - 1; index > 0; index--) {
+			int other = random.nextInt(index + 1);
+			int value = values[index];
+			values[index] = values[other];
+			values[other] = value;
+		}
+	}
+}
@@ -0,0 +1,349 @@
+package ian.phillip.norton.sudoku.loader;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import ian.phillip.norton.sudoku.board.PackedSudokuBoard;
+import ian.phillip.norton.sudoku.exceptions.SudokuFileFormatException;
+
+/**
+ * Class to load standard sudoku boards from the packed binary format written
+ * by BinarySudokuFileWriter, meant for corpora of many millions of boards.
+ * 
+ * A file is a header, fixed size records, and an index.  All numbers are big
+ * endian.
+ * 
+ * The HEADER_SIZE byte header holds the MAGIC bytes, the format VERSION as a
+ * short, RECORD_SIZE as a short, the number of records as a long, the offset
+ * of the index as a long, the number of index entries as an int, and an int
+ * kept as 0.
+ * 
+ * Records follow the header, record n starting at
+ * HEADER_SIZE + n * RECORD_SIZE.  A record holds the 81 locations of a board
+ * in row major order at 4 bits each, high bits first, with 0 for a blank.
+ * The last 4 bits hold the status of the record: whether it is a board, a
+ * puzzle with no solution, or a puzzle which could not be solved.
+ * 
+ * The index follows the records and divides them into named sections, such
+ * as the puzzle files a corpus was built from.  Each entry is the length of
+ * the name in UTF-8 as a short, the name, the first record of the section as
+ * a long, and its number of records as a long.
+ * 
+ * Records are read straight from the file through memory mapped windows, so
+ * any record can be read without reading the ones before it and files larger
+ * than memory are streamed by the operating system.  Reading from a loader
+ * does not change it apart from the position of load(), so threads may share
+ * a loader to read records by number.
+ * 
+ * @author Ian Norton
+ * 
+ */
+public class BinarySudokuFileLoader implements SudokuBoardLoader, Closeable {
+	public static final byte[] MAGIC = { 'S', 'D', 'K', 'B' };
+	public static final short VERSION = 1;
+	public static final int HEADER_SIZE = 32;
+	public static final int RECORD_SIZE = (PackedSudokuBoard.CELL_COUNT + 2) / 2;
+	/**
+	 * Status of a record holding a board
+	 */
+	public static final int STATUS_BOARD = 0;
+	/**
+	 * Status of a record for a puzzle with no solution
+	 */
+	public static final int STATUS_NO_SOLUTION = 1;
+	/**
+	 * Status of a record for a puzzle which could not be solved, such as one
+	 * which was formatted incorrectly or ran out of time
+	 */
+	public static final int STATUS_FAILED = 2;
+	/**
+	 * Number of records in each mapped window.  Windows hold whole records
+	 * and stay well under the 2GB limit on a single mapping.
+	 */
+	private static final int WINDOW_RECORDS = 1 << 24;
+	
+	private final FileChannel channel;
+	private final String name;
+	private final long recordCount;
+	private final MappedByteBuffer[] windows;
+	private final List<Section> sections;
+	/**
+	 * The next record load() returns
+	 */
+	private long position = 0;
+	
+	/**
+	 * Opens the given file and maps its records
+	 * 
+	 * @param file
+	 * @throws IOException if the file cannot be opened or mapped
+	 * @throws SudokuFileFormatException if the header or index are not valid
+	 */
+	public BinarySudokuFileLoader(File file) throws IOException, SudokuFileFormatException {
+		this.name = file.getName();
+		this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		try {
+			long size = this.channel.size();
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+			this.readFully(header, 0);
+			byte[] magic = new byte[MAGIC.length];
+			header.get(magic);
+			for (int index = 0; index < MAGIC.length; index++) {
+				if (magic[index] != MAGIC[index]) {
+					throw this.formatException("Not a binary sudoku file");
+				}
+			}
+			short version = header.getShort();
+			short recordSize = header.getShort();
+			if (version != VERSION || recordSize != RECORD_SIZE) {
+				throw this.formatException("Unsupported version " + version + " with records of " + recordSize +
+						" bytes");
+			}
+			
+			this.recordCount = header.getLong();
+			long indexOffset = header.getLong();
+			int sectionCount = header.getInt();
+			if (this.recordCount < 0 || indexOffset != HEADER_SIZE + this.recordCount * RECORD_SIZE ||
+					indexOffset > size || sectionCount < 0) {
+				throw this.formatException("Header does not match the file size of " + size + " bytes");
+			}
+			
+			this.windows = new MappedByteBuffer[(int) ((this.recordCount + WINDOW_RECORDS - 1) / WINDOW_RECORDS)];
+			for (int window = 0; window < this.windows.length; window++) {
+				long first = (long) window * WINDOW_RECORDS;
+				long records = Math.min(WINDOW_RECORDS, this.recordCount - first);
+				this.windows[window] = this.channel.map(FileChannel.MapMode.READ_ONLY,
+						HEADER_SIZE + first * RECORD_SIZE, records * RECORD_SIZE);
+			}
+			
+			this.sections = this.readIndex(indexOffset, size - indexOffset, sectionCount);
+		} catch (IOException | SudokuFileFormatException | RuntimeException e) {
+			this.channel.close();
+			throw e;
+		}
+	}
+	
+	/**
+	 * Loads the board at the current position and moves on to the next
+	 * record.  Records without a board are returned as null, as is the end
+	 * of the file; use hasNext() to tell them apart.
+	 * 
+	 * @return the board or null
+	 */
+	@Override
+	public PackedSudokuBoard load() throws SudokuFileFormatException {
+		if (!this.hasNext()) {
+			return null;
+		}
+		
+		PackedSudokuBoard board = new PackedSudokuBoard();
+		
+		return this.loadInto(this.position++, board) == STATUS_BOARD ? board : null;
+	}
+	
+	/**
+	 * Reads a record into the given board.  If the record does not hold a
+	 * board the contents of the board are undefined.
+	 * 
+	 * @param record the number of the record, from 0
+	 * @param board the board to overwrite
+	 * @return the status of the record
+	 * @throws SudokuFileFormatException if the record holds an invalid value
+	 * or status
+	 */
+	public int loadInto(long record, PackedSudokuBoard board) throws SudokuFileFormatException {
+		if (record < 0 || record >= this.recordCount) {
+			throw new IndexOutOfBoundsException("Record " + record + " of " + this.recordCount);
+		}
+		
+		MappedByteBuffer window = this.windows[(int) (record / WINDOW_RECORDS)];
+		int offset = (int) (record % WINDOW_RECORDS) * RECORD_SIZE;
+		int status = window.get(offset + RECORD_SIZE - 1) & 0x0F;
+		if (status != STATUS_BOARD) {
+			if (status != STATUS_NO_SOLUTION && status != STATUS_FAILED) {
+				throw this.formatException("Record " + record + " has invalid status " + status);
+			}
+			return status;
+		}
+		
+		for (int cell = 0; cell < PackedSudokuBoard.CELL_COUNT; cell += 2) {
+			int packed = window.get(offset + cell / 2);
+			int high = (packed >>> 4) & 0x0F;
+			int low = packed & 0x0F;
+			if (high > PackedSudokuBoard.BOARD_SIZE ||
+					(cell + 1 < PackedSudokuBoard.CELL_COUNT && low > PackedSudokuBoard.BOARD_SIZE)) {
+				throw this.formatException("Record " + record + " has an invalid value near location " + cell);
+			}
+			
+			board.setCell(cell, high);
+			if (cell + 1 < PackedSudokuBoard.CELL_COUNT) {
+				board.setCell(cell + 1, low);
+			}
+		}
+		
+		return status;
+	}
+	
+	/**
+	 * Checks whether load() has records left to read
+	 * 
+	 * @return
+	 */
+	public boolean hasNext() {
+		return this.position < this.recordCount;
+	}
+	
+	/**
+	 * Gets the number of the record load() reads next
+	 * 
+	 * @return
+	 */
+	public long getPosition() {
+		return this.position;
+	}
+	
+	/**
+	 * Moves load() to the given record, such as the first of a section
+	 * 
+	 * @param position
+	 */
+	public void setPosition(long position) {
+		if (position < 0 || position > this.recordCount) {
+			throw new IndexOutOfBoundsException("Record " + position + " of " + this.recordCount);
+		}
+		
+		this.position = position;
+	}
+	
+	public long getRecordCount() {
+		return this.recordCount;
+	}
+	
+	/**
+	 * Gets the sections of the index in the order they were written
+	 * 
+	 * @return
+	 */
+	public List<Section> getSections() {
+		return this.sections;
+	}
+	
+	/**
+	 * Gets the section with the given name
+	 * 
+	 * @param name
+	 * @return the first section with the name, or null if there is none
+	 */
+	public Section getSection(String name) {
+		for (Section section : this.sections) {
+			if (section.getName().equals(name)) {
+				return section;
+			}
+		}
+		
+		return null;
+	}
+	
+	@Override
+	public void close() throws IOException {
+		this.channel.close();
+	}
+	
+	/**
+	 * Reads the index at the end of the file
+	 * 
+	 * @param offset
+	 * @param length
+	 * @param count the number of entries
+	 * @return
+	 * @throws IOException
+	 * @throws SudokuFileFormatException if the entries do not fit the file
+	 * or the records
+	 */
+	private List<Section> readIndex(long offset, long length, int count)
+			throws IOException, SudokuFileFormatException {
+		if (length > Integer.MAX_VALUE) {
+			throw this.formatException("Index of " + length + " bytes is too large");
+		}
+		
+		ByteBuffer index = ByteBuffer.allocate((int) length);
+		this.readFully(index, offset);
+		List<Section> sections = new ArrayList<Section>();
+		try {
+			for (int entry = 0; entry < count; entry++) {
+				byte[] name = new byte[index.getShort() & 0xFFFF];
+				index.get(name);
+				long first = index.getLong();
+				long records = index.getLong();
+				if (first < 0 || records < 0 || first + records > this.recordCount) {
+					throw this.formatException("Index entry " + entry + " is outside the records");
+				}
+				sections.add(new Section(new String(name, StandardCharsets.UTF_8), first, records));
+			}
+		} catch (BufferUnderflowException e) {
+			throw this.formatException("Index is shorter than its " + count + " entries");
+		}
+		
+		return Collections.unmodifiableList(sections);
+	}
+	
+	/**
+	 * Fills the buffer from the file starting at the given offset
+	 * 
+	 * @param buffer
+	 * @param offset
+	 * @throws IOException
+	 * @throws SudokuFileFormatException if the file ends first
+	 */
+	private void readFully(ByteBuffer buffer, long offset) throws IOException, SudokuFileFormatException {
+		while (buffer.hasRemaining()) {
+			int read = this.channel.read(buffer, offset + buffer.position());
+			if (read < 0) {
+				throw this.formatException("File is too short");
+			}
+		}
+		buffer.flip();
+	}
+	
+	private SudokuFileFormatException formatException(String problem) {
+		return new SudokuFileFormatException(String.format("File %s is formatted incorrectly.  %s", this.name,
+				problem));
+	}
+	
+	/**
+	 * A named run of records listed in the index
+	 */
+	public static class Section {
+		private final String name;
+		private final long firstRecord;
+		private final long recordCount;
+		
+		public Section(String name, long firstRecord, long recordCount) {
+			this.name = name;
+			this.firstRecord = firstRecord;
+			this.recordCount = recordCount;
+		}
+		
+		public String getName() {
+			return this.name;
+		}
+		
+		public long getFirstRecord() {
+			return this.firstRecord;
+		}
+		
+		public long getRecordCount() {
+			return this.recordCount;
+		}
+	}
+}
@@ -0,0 +1,145 @@
+package ian.phillip.norton.sudoku.loader;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+
+import ian.phillip.norton.sudoku.board.GeneralSudokuBoard;
+import ian.phillip.norton.sudoku.board.SudokuGeometry;
+import ian.phillip.norton.sudoku.exceptions.SudokuFileFormatException;
+
+/**
+ * Class to load files describing sudoku boards of any box size.
+ * 
+ * Files hold one line per row, each with one value per column separated by
+ * whitespace.  Values are the numbers 1 to the board size, so may be more
+ * than one character, and X, '.', or 0 represent unfilled locations.  The
+ * number of values on the first line sets the board size, which must be the
+ * square of a supported box size.
+ * 
+ * Line numbers in error messages start at 1.
+ * 
+ * @author Ian Norton
+ * 
+ */
+public class GeneralSudokuBoardFileLoader implements SudokuBoardLoader {
+	
+	private File file;
+	
+	/**
+	 * Constructs a loader based around the given file
+	 * 
+	 * @param file the file with the board description
+	 */
+	public GeneralSudokuBoardFileLoader(File file) {
+		this.file = file;
+	}
+	
+	/**
+	 * Create a board matching the description given in the file set to this
+	 * loader
+	 * 
+	 * @return GeneralSudokuBoard the board described by the file
+	 */
+	@Override
+	public GeneralSudokuBoard load() throws IOException, SudokuFileFormatException {
+		try (BufferedReader reader = new BufferedReader(new FileReader(this.file))) {
+			GeneralSudokuBoard board = null;
+			String line = null;
+			int row = 0;
+			
+			while ((line = reader.readLine()) != null) {
+				String[] tokens = line.trim().split("\\s+");
+				int columns = tokens[0].isEmpty() ? 0 : tokens.length;
+				if (board == null) {
+					board = this.createBoard(columns);
+				}
+				
+				if (row >= board.getSize()) {
+					throw new SudokuFileFormatException(String.format(
+							"File %s is formatted incorrectly on line %d.  Board has more than %d lines.",
+							this.file.getName(), row + 1, board.getSize()));
+				} else if (columns != board.getSize()) {
+					throw new SudokuFileFormatException(String.format(
+							"File %s is formatted incorrectly on line %d.  Line has %d values, expected %d.",
+							this.file.getName(), row + 1, columns, board.getSize()));
+				}
+				for (int column = 0; column < columns; column++) {
+					board.setValue(row, column, this.parseValue(board, tokens[column], row, column));
+				}
+				row++;
+			}
+			
+			if (board == null || row < board.getSize()) {
+				throw new SudokuFileFormatException(String.format(
+						"File %s is formatted incorrectly.  Too few lines.",
+						this.file.getName()));
+			}
+			
+			return board;
+		}
+	}
+	
+	/**
+	 * Convenience function to load the passed in file and return the
+	 * corresponding board.
+	 * 
+	 * @param file the file containing the board description
+	 * @return GeneralSudokuBoard the board described by the file
+	 * @throws IOException
+	 * @throws SudokuFileFormatException
+	 */
+	public static GeneralSudokuBoard loadFromFile(File file) throws IOException, SudokuFileFormatException {
+		GeneralSudokuBoardFileLoader loader = new GeneralSudokuBoardFileLoader(file);
+		
+		return loader.load();
+	}
+	
+	/**
+	 * Creates a blank board as wide as the first line of the file
+	 * 
+	 * @param columns the number of values on the first line
+	 * @return
+	 * @throws SudokuFileFormatException if that is not a supported size
+	 */
+	private GeneralSudokuBoard createBoard(int columns) throws SudokuFileFormatException {
+		int boxSize = (int) Math.round(Math.sqrt(columns));
+		if (boxSize * boxSize != columns || boxSize < SudokuGeometry.MIN_BOX_SIZE || boxSize > SudokuGeometry.MAX_BOX_SIZE) {
+			throw new SudokuFileFormatException(String.format(
+					"File %s is formatted incorrectly on line 1.  %d values is not a supported board size.",
+					this.file.getName(), columns));
+		}
+		
+		return new GeneralSudokuBoard(boxSize);
+	}
+	
+	/**
+	 * Reads a single location's value
+	 * 
+	 * @param board
+	 * @param token
+	 * @param row
+	 * @param column
+	 * @return the value, 0 for a blank
+	 * @throws SudokuFileFormatException if it is not a value of the board
+	 */
+	private int parseValue(GeneralSudokuBoard board, String token, int row, int column) throws SudokuFileFormatException {
+		if (token.equals("X") || token.equals(".")) {
+			return GeneralSudokuBoard.BLANK;
+		}
+		
+		try {
+			int value = Integer.parseInt(token);
+			if (board.isValidEntry(value)) {
+				return value;
+			}
+		} catch (NumberFormatException e) {
+			// fall through to the error below
+		}
+		
+		throw new SudokuFileFormatException(String.format(
+				"File %s is formatted incorrectly on line %d. Column %d is invalid value %s",
+				this.file.getName(), row + 1, column, token));
+	}
+}
@@ -4,7 +4,12 @@ import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.StandardOpenOption;
 
+import ian.phillip.norton.sudoku.board.PackedSudokuBoard;
 import ian.phillip.norton.sudoku.board.StandardSudokuBoard;
 import ian.phillip.norton.sudoku.exceptions.SudokuFileFormatException;
 
@@ -14,11 +19,24 @@ import ian.phillip.norton.sudoku.exceptions.SudokuFileFormatException;
  * Files should be formatted with 9 characters per line wit 9 lines in total
  * Valid characters are the numbers 1-9 representing filled locations with
  * the corresponding number or X to represent a unfilled locations.
+ * Whitespace at the end of a line and CRLF line endings are ignored.
+ * 
+ * The file is read as bytes through a buffer reused by each thread and
+ * mapped straight to values, so nothing is allocated for a well formed
+ * file beyond the board and the channel.  Line numbers in error messages
+ * start at 0.
  * 
  * @author Ian Norton
  *
  */
 public class StandardSudokuBoardFileLoader implements SudokuBoardLoader {
+	private static final int BUFFER_SIZE = 8 * 1024;
+	/**
+	 * Marks that no problem has been found on the current line
+	 */
+	private static final int NO_PROBLEM = -1;
+	private static final ThreadLocal<ByteBuffer> BUFFERS = ThreadLocal.withInitial(
+			() -> ByteBuffer.allocate(BUFFER_SIZE));
 	
 	private File file;
 	
@@ -39,36 +57,190 @@ public class StandardSudokuBoardFileLoader implements SudokuBoardLoader {
 	 */
 	@Override
 	public StandardSudokuBoard load() throws IOException, SudokuFileFormatException {
-		StandardSudokuBoard board = new StandardSudokuBoard();
+		return this.loadPacked().toStandardBoard();
+	}
+	
+	/**
+	 * Create a packed board matching the description given in the file set
+	 * to this loader
+	 * 
+	 * @return PackedSudokuBoard the board described by the file
+	 * @throws IOException
+	 * @throws SudokuFileFormatException
+	 */
+	public PackedSudokuBoard loadPacked() throws IOException, SudokuFileFormatException {
+		PackedSudokuBoard board = new PackedSudokuBoard();
 		
-		BufferedReader reader = null;
-		try {
-			reader = new BufferedReader(new FileReader(this.file));
+		boolean ascii;
+		try (FileChannel channel = FileChannel.open(this.file.toPath(), StandardOpenOption.READ)) {
+			ascii = this.parse(channel, board);
+		}
 			
+		return ascii ? board : this.loadWithReader();
+	}
+	
+	/**
+	 * Parses the bytes of the file straight into the board.  Lines end at
+	 * LF, CR, or CRLF as with BufferedReader.readLine.  Spaces and tabs at
+	 * the end of a line are ignored, anywhere else they are invalid values.
+	 * 
+	 * Lines are checked in the same order as they would be read as text, so
+	 * a line which is too long is reported ahead of any invalid value on it.
+	 * Until the end of the line is reached only the first problem is noted.
+	 * 
+	 * @param channel
+	 * @param board
+	 * @return false if a byte which is not ASCII was found, in which case the
+	 * board is incomplete and the file must be read as text
+	 * @throws IOException
+	 * @throws SudokuFileFormatException
+	 */
+	private boolean parse(ReadableByteChannel channel, PackedSudokuBoard board)
+			throws IOException, SudokuFileFormatException {
+		int size = board.getSize();
+		ByteBuffer buffer = BUFFERS.get();
+		int row = 0;
+		// characters on the line so far, less any whitespace not yet known
+		// to be followed by anything else
+		int column = 0;
+		int whitespace = 0;
+		int firstWhitespace = 0;
+		boolean lineStarted = false;
+		boolean afterCarriageReturn = false;
+		int problemColumn = NO_PROBLEM;
+		int problem = 0;
+		
+		buffer.clear();
+		while (channel.read(buffer) >= 0) {
+			buffer.flip();
+			while (buffer.hasRemaining()) {
+				int character = buffer.get();
+				if (character == '\n' && afterCarriageReturn) {
+					afterCarriageReturn = false;
+					continue;
+				}
+				afterCarriageReturn = character == '\r';
+				
+				if (character == '\n' || character == '\r') {
+					this.checkLine(row, problemColumn, problem);
+					row++;
+					column = 0;
+					whitespace = 0;
+					lineStarted = false;
+					problemColumn = NO_PROBLEM;
+					continue;
+				} else if (character < 0) {
+					return false;
+				}
+				
+				lineStarted = true;
+				if (character == ' ' || character == '\t') {
+					if (whitespace++ == 0) {
+						firstWhitespace = character;
+					}
+					continue;
+				}
+				
+				int position = column + whitespace;
+				if (position >= size) {
+					throw new SudokuFileFormatException(String.format(
+							"File %s is formatted incorrectly on line %d.  Line has more than %d characters.",
+							this.file.getName(), row, size));
+				}
+				if (whitespace > 0 && problemColumn == NO_PROBLEM) {
+					// the whitespace was not trailing after all
+					problemColumn = column;
+					problem = firstWhitespace;
+				}
+				column = position + 1;
+				whitespace = 0;
+				
+				if (character == 'X') {
+					continue;
+				} else if (character >= '1' && character <= '9') {
+					if (row < size) {
+						board.setCell(PackedSudokuBoard.getCellIndex(row, position), character - '0');
+						continue;
+					}
+				}
+				if (problemColumn == NO_PROBLEM) {
+					problemColumn = position;
+					problem = character;
+				}
+			}
+			buffer.clear();
+		}
+		
+		if (lineStarted) {
+			this.checkLine(row, problemColumn, problem);
+			row++;
+		}
+		if (row < size) {
+			throw new SudokuFileFormatException(String.format(
+					"File %s is formatted incorrectly.  Too few lines.",
+					this.file.getName()));
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Throws for the first problem found on a line, if there was one
+	 * 
+	 * @param row
+	 * @param problemColumn the column of the problem or NO_PROBLEM
+	 * @param problem the character at that column
+	 * @throws SudokuFileFormatException
+	 */
+	private void checkLine(int row, int problemColumn, int problem) throws SudokuFileFormatException {
+		if (problemColumn == NO_PROBLEM) {
+			return;
+		} else if (problem >= '1' && problem <= '9') {
+			// a value on a line past the end of the board
+			throw this.tooManyLines(row);
+		}
+		
+		throw new SudokuFileFormatException(String.format(
+				"File %s is formatted incorrectly on line %d. Column %d is invalid value %s",
+				this.file.getName(), row, problemColumn, (char) problem));
+	}
+	
+	/**
+	 * Loads the board by reading the file as text in the platform encoding,
+	 * for files which are not plain ASCII so any invalid character is
+	 * reported as it appears in the file
+	 * 
+	 * @return PackedSudokuBoard the board described by the file
+	 * @throws IOException
+	 * @throws SudokuFileFormatException
+	 */
+	private PackedSudokuBoard loadWithReader() throws IOException, SudokuFileFormatException {
+		PackedSudokuBoard board = new PackedSudokuBoard();
+		
+		try (BufferedReader reader = new BufferedReader(new FileReader(this.file))) {
 			String line = null;
-			Integer row = 0;
+			int row = 0;
 			
 			while((line = reader.readLine()) != null) {
-				if (line.length() > board.getSize()) {
+				int length = line.length();
+				while (length > 0 && (line.charAt(length - 1) == ' ' || line.charAt(length - 1) == '\t')) {
+					length--;
+				}
+				
+				if (length > board.getSize()) {
 					throw new SudokuFileFormatException(String.format(
 							"File %s is formatted incorrectly on line %d.  Line has more than %d characters.",
 							this.file.getName(), row, board.getSize()));
 				}
-				for (int column = 0; column < line.length(); column++) {
-					Character character = line.charAt(column);
-					Integer entry = null;
-					if (character.equals('X')) {
-						entry = null;
-					} else {
-						try {
-							entry = Integer.parseInt(character.toString());
-						} catch (NumberFormatException numberFormatException) {
-							throw new SudokuFileFormatException(String.format(
-									"File %s is formatted incorrectly on line %d. Column %d is invalid value %s",
-									this.file.getName(), row, column, character));
-						}
+				for (int column = 0; column < length; column++) {
+					char character = line.charAt(column);
+					if (character != 'X') {
+						int entry = Character.digit(character, 10);
 						
-						if (board.isValidEntry(entry)) {
+						if (entry != PackedSudokuBoard.BLANK && PackedSudokuBoard.isValidEntry(entry)) {
+							if (row >= board.getSize()) {
+								throw this.tooManyLines(row);
+							}
 							board.setValue(row, column, entry);
 						} else {
 							throw new SudokuFileFormatException(String.format(
@@ -85,14 +257,6 @@ public class StandardSudokuBoardFileLoader implements SudokuBoardLoader {
 						"File %s is formatted incorrectly.  Too few lines.",
 						this.file.getName()));
 			}
-		} finally {
-			if (reader != null) {
-				try {
-					reader.close();
-				} catch (IOException ioException) {
-					throw ioException;
-				}
-			}
 		}
 		
 		return board;
@@ -128,4 +292,17 @@ public class StandardSudokuBoardFileLoader implements SudokuBoardLoader {
 		
 		return loader.load();
 	}
+	
+	/**
+	 * Describes a value on a line past the end of the board.  Lines past the
+	 * end which are blank or hold only X are allowed.
+	 * 
+	 * @param row
+	 * @return
+	 */
+	private SudokuFileFormatException tooManyLines(int row) {
+		return new SudokuFileFormatException(String.format(
+				"File %s is formatted incorrectly on line %d.  Too many lines.",
+				this.file.getName(), row));
+	}
 }
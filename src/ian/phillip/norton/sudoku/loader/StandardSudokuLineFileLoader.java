@@ -0,0 +1,204 @@
+package ian.phillip.norton.sudoku.loader;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+
+import ian.phillip.norton.sudoku.board.PackedSudokuBoard;
+import ian.phillip.norton.sudoku.exceptions.SudokuFileFormatException;
+
+/**
+ * Class to load standard sudoku boards from files holding one board per line.
+ * 
+ * Each line holds the 81 locations of a board in row major order.  Valid
+ * characters are the numbers 1-9 for filled locations and '.', '0', or 'X'
+ * for unfilled locations.  Trailing whitespace, including the carriage
+ * return of a CRLF line ending, is ignored.  An invalid character is
+ * reported as it reads in the platform encoding, as the grid file loader
+ * reports it.
+ * 
+ * Boards are read one at a time through a fixed size buffer so files of any
+ * size are loaded in constant memory.  Line numbers in error messages start
+ * at 1.
+ * 
+ * @author Ian Norton
+ * 
+ */
+public class StandardSudokuLineFileLoader implements SudokuBoardLoader, Closeable {
+	private static final int BUFFER_SIZE = 64 * 1024;
+	private static final int END_OF_INPUT = -1;
+	/**
+	 * Most bytes one character takes in any supported encoding
+	 */
+	private static final int MAX_CHARACTER_BYTES = 4;
+	
+	private final ReadableByteChannel channel;
+	private final String name;
+	private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+	/**
+	 * The bytes of the first invalid character on the line
+	 */
+	private final byte[] invalid = new byte[MAX_CHARACTER_BYTES];
+	private int lineNumber = 0;
+	
+	/**
+	 * Constructs a loader reading the given file
+	 * 
+	 * @param file the file with the board descriptions
+	 * @throws IOException if the file cannot be opened
+	 */
+	public StandardSudokuLineFileLoader(File file) throws IOException {
+		this(FileChannel.open(file.toPath(), StandardOpenOption.READ), file.getName());
+	}
+	
+	/**
+	 * Constructs a loader reading from the given channel
+	 * 
+	 * @param channel the channel with the board descriptions
+	 * @param name the name to use for the input in error messages
+	 */
+	public StandardSudokuLineFileLoader(ReadableByteChannel channel, String name) {
+		this.channel = channel;
+		this.name = name;
+		this.buffer.flip();
+	}
+	
+	/**
+	 * Loads the board on the next line
+	 * 
+	 * @return PackedSudokuBoard the next board or null at the end of the file
+	 */
+	@Override
+	public PackedSudokuBoard load() throws IOException, SudokuFileFormatException {
+		PackedSudokuBoard board = new PackedSudokuBoard();
+		
+		return this.loadInto(board) ? board : null;
+	}
+	
+	/**
+	 * Reads the board on the next line into the given board.  If the line is
+	 * formatted incorrectly the rest of it is skipped, so loading may continue
+	 * with the following line, and the contents of the board are undefined.
+	 * 
+	 * @param board the board to overwrite
+	 * @return false if there are no more lines
+	 * @throws IOException
+	 * @throws SudokuFileFormatException if the line is formatted incorrectly
+	 */
+	public boolean loadInto(PackedSudokuBoard board) throws IOException, SudokuFileFormatException {
+		int character = this.nextByte();
+		if (character == END_OF_INPUT) {
+			return false;
+		}
+		
+		this.lineNumber++;
+		int column = 0;
+		boolean trailing = false;
+		String error = null;
+		int invalidColumn = -1;
+		int invalidLength = 0;
+		boolean inInvalid = false;
+		for (; character != END_OF_INPUT && character != '\n'; character = this.nextByte()) {
+			if (error != null || invalidColumn >= 0) {
+				// keep the rest of a non-ASCII invalid character to decode it
+				if (inInvalid && character > 0x7F && invalidLength < MAX_CHARACTER_BYTES) {
+					this.invalid[invalidLength++] = (byte) character;
+				} else {
+					inInvalid = false;
+				}
+				continue;
+			}
+			
+			if (character == ' ' || character == '\t' || character == '\r') {
+				trailing = true;
+			} else if (column >= PackedSudokuBoard.CELL_COUNT) {
+				error = String.format(
+						"File %s is formatted incorrectly on line %d.  Line has more than %d characters.",
+						this.name, this.lineNumber, PackedSudokuBoard.CELL_COUNT);
+			} else if (!trailing && (character == '.' || character == '0' || character == 'X')) {
+				board.setCell(column++, PackedSudokuBoard.BLANK);
+			} else if (!trailing && character >= '1' && character <= '9') {
+				board.setCell(column++, character - '0');
+			} else {
+				invalidColumn = column;
+				this.invalid[0] = (byte) character;
+				invalidLength = 1;
+				inInvalid = character > 0x7F;
+			}
+		}
+		
+		if (invalidColumn >= 0) {
+			error = String.format("File %s is formatted incorrectly on line %d. Column %d is invalid value %s",
+					this.name, this.lineNumber, invalidColumn,
+					StandardSudokuLineFileLoader.decodeCharacter(this.invalid, 0, invalidLength));
+		}
+		if (error == null && column < PackedSudokuBoard.CELL_COUNT) {
+			error = String.format(
+					"File %s is formatted incorrectly on line %d.  Line has fewer than %d characters.",
+					this.name, this.lineNumber, PackedSudokuBoard.CELL_COUNT);
+		}
+		if (error != null) {
+			throw new SudokuFileFormatException(error);
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Gets the number of the line most recently read, starting at 1
+	 * 
+	 * @return
+	 */
+	public int getLineNumber() {
+		return this.lineNumber;
+	}
+	
+	@Override
+	public void close() throws IOException {
+		this.channel.close();
+	}
+	
+	/**
+	 * Decodes the first character of the given bytes in the platform
+	 * encoding, so an invalid character is reported as it appears in the
+	 * input.  Bytes which do not decode give the replacement character.
+	 * 
+	 * @param bytes
+	 * @param offset the first byte of the character
+	 * @param length the number of bytes from offset which may belong to it
+	 * @return the character, as a string in case it needs two chars
+	 */
+	static String decodeCharacter(byte[] bytes, int offset, int length) {
+		String decoded = new String(bytes, offset, Math.min(length, MAX_CHARACTER_BYTES), Charset.defaultCharset());
+		
+		return decoded.isEmpty() ? decoded : decoded.substring(0, decoded.offsetByCodePoints(0, 1));
+	}
+	
+	/**
+	 * Gets the next byte of input, refilling the buffer when it runs out
+	 * 
+	 * @return the byte or END_OF_INPUT
+	 * @throws IOException
+	 */
+	private int nextByte() throws IOException {
+		if (!this.buffer.hasRemaining()) {
+			this.buffer.clear();
+			int read;
+			do {
+				read = this.channel.read(this.buffer);
+			} while (read == 0);
+			this.buffer.flip();
+			
+			if (read < 0) {
+				return END_OF_INPUT;
+			}
+		}
+		
+		return this.buffer.get() & 0xFF;
+	}
+}
@@ -0,0 +1,232 @@
+package ian.phillip.norton.sudoku.loader;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+import ian.phillip.norton.sudoku.board.PackedSudokuBoard;
+import ian.phillip.norton.sudoku.exceptions.SudokuFileFormatException;
+
+/**
+ * Class to load standard sudoku boards from a stream such as standard input,
+ * where boards may be given either way the file loaders accept them.
+ * 
+ * A line of 81 characters is a board in row major order, as in line files.
+ * A line of 9 characters starts a board given as 9 lines of 9 characters, as
+ * in grid files.  Valid characters are the numbers 1-9 for filled locations
+ * and '.', '0', or 'X' for unfilled locations.  Blank lines between boards
+ * and trailing whitespace, including the carriage return of a CRLF line
+ * ending, are ignored.  An invalid character is reported as it reads in the
+ * platform encoding.
+ * 
+ * Input is read through a fixed size buffer as it arrives, so a board is
+ * returned as soon as its last line has been read.  Line numbers in error
+ * messages start at 1.
+ * 
+ * @author Ian Norton
+ * 
+ */
+public class StandardSudokuStreamLoader implements SudokuBoardLoader, Closeable {
+	private static final int BUFFER_SIZE = 64 * 1024;
+	private static final int END_OF_INPUT = -1;
+	/**
+	 * Longest line kept; the rest of a longer line is only counted
+	 */
+	private static final int MAX_LINE_LENGTH = PackedSudokuBoard.CELL_COUNT + 1;
+	
+	private final ReadableByteChannel channel;
+	private final String name;
+	private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+	private final byte[] line = new byte[MAX_LINE_LENGTH];
+	/**
+	 * Number of characters on the line most recently read, not counting
+	 * trailing whitespace
+	 */
+	private int lineLength;
+	private int lineNumber = 0;
+	
+	/**
+	 * Constructs a loader reading from the given channel
+	 * 
+	 * @param channel the channel with the board descriptions
+	 * @param name the name to use for the input in error messages
+	 */
+	public StandardSudokuStreamLoader(ReadableByteChannel channel, String name) {
+		this.channel = channel;
+		this.name = name;
+		this.buffer.flip();
+	}
+	
+	/**
+	 * Loads the next board
+	 * 
+	 * @return PackedSudokuBoard the next board or null at the end of the input
+	 */
+	@Override
+	public PackedSudokuBoard load() throws IOException, SudokuFileFormatException {
+		PackedSudokuBoard board = new PackedSudokuBoard();
+		
+		return this.loadInto(board) ? board : null;
+	}
+	
+	/**
+	 * Reads the next board into the given board.  If the board is formatted
+	 * incorrectly all of its lines are still read, so loading may continue
+	 * with the following board, and the contents of the board are undefined.
+	 * 
+	 * @param board the board to overwrite
+	 * @return false if there are no more boards
+	 * @throws IOException
+	 * @throws SudokuFileFormatException if the board is formatted incorrectly
+	 */
+	public boolean loadInto(PackedSudokuBoard board) throws IOException, SudokuFileFormatException {
+		do {
+			if (!this.readLine()) {
+				return false;
+			}
+		} while (this.lineLength == 0);
+		
+		if (this.lineLength == PackedSudokuBoard.CELL_COUNT) {
+			this.parseLine(board, 0);
+			return true;
+		} else if (this.lineLength != PackedSudokuBoard.BOARD_SIZE) {
+			throw this.formatException(String.format("Line has %s characters, not %d or %d.",
+					this.lineLength < MAX_LINE_LENGTH ? Integer.toString(this.lineLength) : "too many",
+					PackedSudokuBoard.BOARD_SIZE, PackedSudokuBoard.CELL_COUNT));
+		}
+		
+		// read every row before checking them so a bad row does not leave the
+		// rest of its board to be read as another
+		SudokuFileFormatException error = this.parseRow(board, 0);
+		for (int row = 1; row < PackedSudokuBoard.BOARD_SIZE; row++) {
+			if (!this.readLine() || this.lineLength == 0) {
+				throw this.formatException(String.format("Board has only %d of %d lines.", row,
+						PackedSudokuBoard.BOARD_SIZE));
+			}
+			if (error == null) {
+				error = this.parseRow(board, row);
+			}
+		}
+		if (error != null) {
+			throw error;
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Gets the number of the line most recently read, starting at 1
+	 * 
+	 * @return
+	 */
+	public int getLineNumber() {
+		return this.lineNumber;
+	}
+	
+	@Override
+	public void close() throws IOException {
+		this.channel.close();
+	}
+	
+	/**
+	 * Reads the line most recently read as one row of a board
+	 * 
+	 * @param board
+	 * @param row
+	 * @return the problem with the row, or null if there is none
+	 */
+	private SudokuFileFormatException parseRow(PackedSudokuBoard board, int row) {
+		if (this.lineLength != PackedSudokuBoard.BOARD_SIZE) {
+			return this.formatException(String.format("Line has %s characters, not %d.",
+					this.lineLength < MAX_LINE_LENGTH ? Integer.toString(this.lineLength) : "too many",
+					PackedSudokuBoard.BOARD_SIZE));
+		}
+		
+		try {
+			this.parseLine(board, row * PackedSudokuBoard.BOARD_SIZE);
+		} catch (SudokuFileFormatException e) {
+			return e;
+		}
+		
+		return null;
+	}
+	
+	/**
+	 * Sets consecutive locations from the line most recently read
+	 * 
+	 * @param board
+	 * @param start the index of the location of the first character
+	 * @throws SudokuFileFormatException if a character is not valid
+	 */
+	private void parseLine(PackedSudokuBoard board, int start) throws SudokuFileFormatException {
+		for (int column = 0; column < this.lineLength; column++) {
+			int character = this.line[column];
+			if (character == '.' || character == '0' || character == 'X') {
+				board.setCell(start + column, PackedSudokuBoard.BLANK);
+			} else if (character >= '1' && character <= '9') {
+				board.setCell(start + column, character - '0');
+			} else {
+				throw this.formatException(String.format("Column %d is invalid value %s", column,
+						StandardSudokuLineFileLoader.decodeCharacter(this.line, column, this.lineLength - column)));
+			}
+		}
+	}
+	
+	/**
+	 * Reads the next line, dropping trailing whitespace
+	 * 
+	 * @return false if there are no more lines
+	 * @throws IOException
+	 */
+	private boolean readLine() throws IOException {
+		int character = this.nextByte();
+		if (character == END_OF_INPUT) {
+			return false;
+		}
+		
+		this.lineNumber++;
+		int length = 0;
+		int significant = 0;
+		for (; character != END_OF_INPUT && character != '\n'; character = this.nextByte()) {
+			if (length < MAX_LINE_LENGTH) {
+				this.line[length] = (byte) character;
+			}
+			length++;
+			if (character != ' ' && character != '\t' && character != '\r') {
+				significant = length;
+			}
+		}
+		this.lineLength = Math.min(significant, MAX_LINE_LENGTH);
+		
+		return true;
+	}
+	
+	private SudokuFileFormatException formatException(String problem) {
+		return new SudokuFileFormatException(String.format("Input %s is formatted incorrectly on line %d.  %s",
+				this.name, this.lineNumber, problem));
+	}
+	
+	/**
+	 * Gets the next byte of input, refilling the buffer when it runs out
+	 * 
+	 * @return the byte or END_OF_INPUT
+	 * @throws IOException
+	 */
+	private int nextByte() throws IOException {
+		if (!this.buffer.hasRemaining()) {
+			this.buffer.clear();
+			int read;
+			do {
+				read = this.channel.read(this.buffer);
+			} while (read == 0);
+			this.buffer.flip();
+			
+			if (read < 0) {
+				return END_OF_INPUT;
+			}
+		}
+		
+		return this.buffer.get() & 0xFF;
+	}
+}
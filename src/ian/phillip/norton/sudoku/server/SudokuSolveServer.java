@@ -0,0 +1,351 @@
+package ian.phillip.norton.sudoku.server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import ian.phillip.norton.sudoku.board.PackedSudokuBoard;
+import ian.phillip.norton.sudoku.exceptions.SolveBudgetExceededException;
+import ian.phillip.norton.sudoku.exceptions.SudokuFileFormatException;
+import ian.phillip.norton.sudoku.loader.StandardSudokuLineFileLoader;
+import ian.phillip.norton.sudoku.solver.PropagationPipeline;
+import ian.phillip.norton.sudoku.solver.SolveBudget;
+import ian.phillip.norton.sudoku.solver.StandardSudokuSolver;
+import ian.phillip.norton.sudoku.writer.StandardSudokuLineFileWriter;
+
+/**
+ * A long running HTTP server solving standard puzzles, so other processes can
+ * have puzzles solved without starting a JVM each time.
+ * 
+ * Puzzles are POSTed to /solve in the format read by
+ * StandardSudokuLineFileLoader, one puzzle per line, so a single puzzle is
+ * just a batch of one.  The response holds a line for each puzzle in the
+ * format written by StandardSudokuLineFileWriter: the solution, "No
+ * Solution", or why the puzzle could not be solved.  The headers
+ * X-Queue-Micros and X-Solve-Micros give how long the batch waited for a
+ * solving thread and how long its solves took.
+ * 
+ * Each batch is solved on one of a fixed number of solving threads, each
+ * with its own solver.  Only a limited number of batches may wait for a
+ * thread; once that many are waiting further requests are turned away at
+ * once with 503 Service Unavailable rather than queueing without bound.
+ * Batches with too many puzzles are refused with 413 Request Entity Too
+ * Large.  A request whose declared length is more than MAX_LINE_BYTES for
+ * each puzzle of the largest batch is refused the same way before any of
+ * it is read.  That leaves each line room for far more trailing whitespace
+ * than the loader will meet in practice, so batches which fit are not
+ * refused for their length.  Requests without a declared length are only
+ * limited by their number of puzzles as they are read.
+ * 
+ * Requests are read on a fixed number of connection threads: one for each
+ * batch that may be solving or waiting, and SPARE_EXCHANGE_THREADS more to
+ * read further requests and turn them away.  Connections beyond that wait
+ * unread, so a burst of slow or large uploads cannot start unlimited threads
+ * or buffer unlimited puzzles.
+ * 
+ * @author Ian Norton
+ * 
+ */
+public class SudokuSolveServer implements Closeable {
+	public static final String SOLVE_PATH = "/solve";
+	/**
+	 * Most bytes a request may declare for each puzzle it may hold: the
+	 * puzzle, a CRLF, and room for trailing whitespace
+	 */
+	public static final int MAX_LINE_BYTES = 256;
+	private static final int OK = 200;
+	private static final int METHOD_NOT_ALLOWED = 405;
+	private static final int TOO_LARGE = 413;
+	private static final int UNAVAILABLE = 503;
+	/**
+	 * Seconds a client turned away is asked to wait before trying again
+	 */
+	private static final String RETRY_AFTER = "1";
+	/**
+	 * Connection threads beyond those that may be holding a batch
+	 */
+	private static final int SPARE_EXCHANGE_THREADS = 4;
+	
+	private final HttpServer server;
+	/**
+	 * Threads handling connections, which wait on the solving threads
+	 */
+	private final ExecutorService exchanges;
+	private final ThreadPoolExecutor solvers;
+	private final ThreadLocal<StandardSudokuSolver> solver;
+	/**
+	 * Limits on each solve, null for none
+	 */
+	private final SolveBudget budget;
+	private final int maxBatch;
+	private final AtomicLong rejected = new AtomicLong();
+	
+	/**
+	 * Creates a server listening on the given address.  It does not accept
+	 * requests until started.
+	 * 
+	 * @param address
+	 * @param threads number of solving threads
+	 * @param queueLength number of batches that may wait for a solving thread
+	 * @param maxBatch most puzzles accepted in one request
+	 * @param propagation the stages each solver runs before guessing
+	 * @param budget limits on each solve, null for none
+	 * @throws IOException if the address cannot be bound
+	 */
+	public SudokuSolveServer(InetSocketAddress address, int threads, int queueLength, int maxBatch,
+			PropagationPipeline propagation, SolveBudget budget) throws IOException {
+		if (threads < 1 || queueLength < 1 || maxBatch < 1) {
+			throw new IllegalArgumentException("Threads, queue length, and batch size must all be at least 1");
+		}
+		
+		this.solvers = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<Runnable>(queueLength));
+		this.exchanges = Executors.newFixedThreadPool(threads + queueLength + SPARE_EXCHANGE_THREADS);
+		this.solver = ThreadLocal.withInitial(() -> new StandardSudokuSolver(propagation));
+		this.budget = budget;
+		this.maxBatch = maxBatch;
+		this.server = HttpServer.create(address, 0);
+		this.server.setExecutor(this.exchanges);
+		this.server.createContext(SOLVE_PATH, this::handle);
+	}
+	
+	public void start() {
+		this.server.start();
+	}
+	
+	/**
+	 * Gets the port the server is listening on, which is chosen by the system
+	 * if the address given had port 0
+	 * 
+	 * @return
+	 */
+	public int getPort() {
+		return this.server.getAddress().getPort();
+	}
+	
+	/**
+	 * Gets the number of requests turned away because too many batches were
+	 * waiting
+	 * 
+	 * @return
+	 */
+	public long getRejected() {
+		return this.rejected.get();
+	}
+	
+	/**
+	 * Stops accepting requests and stops the threads once the batches being
+	 * solved are finished
+	 */
+	@Override
+	public void close() {
+		this.server.stop(0);
+		this.solvers.shutdown();
+		this.exchanges.shutdown();
+	}
+	
+	/**
+	 * Reads a batch from a request, solves it, and sends back the solutions
+	 * 
+	 * @param exchange
+	 * @throws IOException
+	 */
+	private void handle(HttpExchange exchange) throws IOException {
+		try {
+			if (!"POST".equals(exchange.getRequestMethod())) {
+				exchange.getResponseHeaders().set("Allow", "POST");
+				SudokuSolveServer.sendText(exchange, METHOD_NOT_ALLOWED, "Puzzles must be POSTed");
+				return;
+			}
+			
+			Batch batch = this.isTooLong(exchange) ? null : this.readBatch(exchange.getRequestBody());
+			if (batch == null) {
+				SudokuSolveServer.sendText(exchange, TOO_LARGE,
+						"A request may hold at most " + this.maxBatch + " puzzles");
+				return;
+			}
+			
+			Future<?> solved;
+			try {
+				batch.submitted = System.nanoTime();
+				solved = this.solvers.submit(() -> batch.solve(this.solver.get(), this.budget));
+			} catch (RejectedExecutionException e) {
+				this.rejected.incrementAndGet();
+				exchange.getResponseHeaders().set("Retry-After", RETRY_AFTER);
+				SudokuSolveServer.sendText(exchange, UNAVAILABLE, "Too many batches waiting, try again later");
+				return;
+			}
+			
+			try {
+				solved.get();
+			} catch (InterruptedException e) {
+				solved.cancel(true);
+				Thread.currentThread().interrupt();
+				throw new IOException("Interrupted waiting for the solve", e);
+			} catch (ExecutionException e) {
+				throw new IOException("Solve failed", e.getCause());
+			}
+			
+			exchange.getResponseHeaders().set("X-Queue-Micros",
+					Long.toString(TimeUnit.NANOSECONDS.toMicros(batch.queueNanos)));
+			exchange.getResponseHeaders().set("X-Solve-Micros",
+					Long.toString(TimeUnit.NANOSECONDS.toMicros(batch.solveNanos)));
+			SudokuSolveServer.send(exchange, OK, batch.toBytes());
+		} finally {
+			exchange.close();
+		}
+	}
+	
+	/**
+	 * Checks whether a request declares a body of more than MAX_LINE_BYTES
+	 * for each puzzle of the largest batch.  Requests without a length are
+	 * limited as they are read.
+	 * 
+	 * @param exchange
+	 * @return
+	 */
+	private boolean isTooLong(HttpExchange exchange) {
+		String length = exchange.getRequestHeaders().getFirst("Content-Length");
+		if (length == null) {
+			return false;
+		}
+		
+		try {
+			return Long.parseLong(length.trim()) > (long) this.maxBatch * MAX_LINE_BYTES;
+		} catch (NumberFormatException e) {
+			return true;
+		}
+	}
+	
+	/**
+	 * Reads the puzzles of a request.  Lines which are formatted incorrectly
+	 * keep their place in the batch with the problem as their result.
+	 * 
+	 * @param body
+	 * @return the batch or null if it has too many puzzles
+	 * @throws IOException
+	 */
+	private Batch readBatch(InputStream body) throws IOException {
+		Batch batch = new Batch();
+		StandardSudokuLineFileLoader loader = new StandardSudokuLineFileLoader(Channels.newChannel(body), "request");
+		while (true) {
+			PackedSudokuBoard board = new PackedSudokuBoard();
+			String message = null;
+			try {
+				if (!loader.loadInto(board)) {
+					return batch;
+				}
+			} catch (SudokuFileFormatException e) {
+				board = null;
+				message = e.getMessage();
+			}
+			
+			if (batch.boards.size() >= this.maxBatch) {
+				return null;
+			}
+			batch.boards.add(board);
+			batch.messages.add(message);
+		}
+	}
+	
+	private static void sendText(HttpExchange exchange, int status, String text) throws IOException {
+		SudokuSolveServer.send(exchange, status, (text + System.lineSeparator()).getBytes("US-ASCII"));
+	}
+	
+	private static void send(HttpExchange exchange, int status, byte[] body) throws IOException {
+		// messages about invalid characters hold them in the platform encoding
+		exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=" + Charset.defaultCharset().name());
+		exchange.sendResponseHeaders(status, body.length);
+		try (OutputStream output = exchange.getResponseBody()) {
+			output.write(body);
+		}
+	}
+	
+	/**
+	 * The puzzles of one request and, once solved, their results
+	 */
+	private static class Batch {
+		/**
+		 * The boards to solve, replaced by their solutions.  Null where
+		 * there is a message instead.
+		 */
+		private final List<PackedSudokuBoard> boards = new ArrayList<PackedSudokuBoard>();
+		/**
+		 * Why each board has no solution to write, null where it does
+		 */
+		private final List<String> messages = new ArrayList<String>();
+		private long submitted;
+		private long queueNanos;
+		private long solveNanos;
+		
+		/**
+		 * Solves every board which was read correctly
+		 * 
+		 * @param solver
+		 * @param budget limits on each solve, null for none
+		 */
+		private void solve(StandardSudokuSolver solver, SolveBudget budget) {
+			long start = System.nanoTime();
+			this.queueNanos = start - this.submitted;
+			for (int index = 0; index < this.boards.size(); index++) {
+				if (this.messages.get(index) != null) {
+					continue;
+				}
+				
+				PackedSudokuBoard board = this.boards.get(index);
+				try {
+					PackedSudokuBoard solved = budget == null ? solver.solve(board) : solver.solve(board, budget);
+					this.boards.set(index, solved);
+					if (solved == null) {
+						this.messages.set(index, "No Solution");
+					}
+				} catch (SolveBudgetExceededException | RuntimeException e) {
+					this.boards.set(index, null);
+					this.messages.set(index, e.getMessage() != null ? e.getMessage() : e.toString());
+				}
+			}
+			this.solveNanos = System.nanoTime() - start;
+		}
+		
+		/**
+		 * Writes the results one per line
+		 * 
+		 * @return
+		 * @throws IOException
+		 */
+		private byte[] toBytes() throws IOException {
+			ByteArrayOutputStream output = new ByteArrayOutputStream(
+					this.boards.size() * (PackedSudokuBoard.CELL_COUNT + 2));
+			try (StandardSudokuLineFileWriter writer = new StandardSudokuLineFileWriter(Channels.newChannel(output))) {
+				for (int index = 0; index < this.boards.size(); index++) {
+					if (this.messages.get(index) != null) {
+						writer.writeMessage(this.messages.get(index));
+					} else {
+						writer.write(this.boards.get(index));
+					}
+				}
+			}
+			
+			return output.toByteArray();
+		}
+	}
+}
@@ -0,0 +1,351 @@
+package ian.phillip.norton.sudoku.solver;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import ian.phillip.norton.sudoku.board.PackedSudokuBoard;
+import ian.phillip.norton.sudoku.board.StandardSudokuBoard;
+import ian.phillip.norton.sudoku.board.SudokuBoard;
+import ian.phillip.norton.sudoku.board.SudokuGeometry;
+import ian.phillip.norton.sudoku.exceptions.InvalidBoardTypeException;
+
+/**
+ * Solves many standard boards at once by propagating them in lockstep
+ * 
+ * The candidates of up to 64 boards are held bit sliced: for each location
+ * and value there is one long with a bit set for each board, or lane, on
+ * which the value is still possible there.  Naked and hidden singles are
+ * then found and placed on every lane together with a handful of bitwise
+ * operations per location or unit, rather than a pass per board.
+ * 
+ * Propagation runs until no lane changes.  Boards it solves are read
+ * straight out of the lanes, boards it shows have no solution are null, and
+ * the rest, which need guessing, are handed with the singles found so far to
+ * a StandardSudokuSolver.  Batches of mostly easy puzzles are solved about
+ * twice as fast as one at a time; batches of hard ones gain nothing.
+ * 
+ * A solver keeps its lanes between batches so it is not safe to share
+ * between threads.
+ * 
+ * @author Ian Norton
+ * 
+ */
+public class BitSlicedSudokuSolver implements SudokuSolver {
+	/**
+	 * Number of boards propagated together
+	 */
+	public static final int LANES = Long.SIZE;
+	private static final int SIZE = PackedSudokuBoard.BOARD_SIZE;
+	private static final int CELL_COUNT = PackedSudokuBoard.CELL_COUNT;
+	/**
+	 * Index into the candidates of the first value of each peer of each
+	 * location
+	 */
+	private static final int[][] PEER_BASES = new int[CELL_COUNT][];
+	/**
+	 * Index into the candidates of the first value of each location of each
+	 * unit
+	 */
+	private static final int[][] UNIT_BASES;
+	/**
+	 * The row, column, and box units of each location
+	 */
+	private static final int[][] CELL_UNITS = new int[CELL_COUNT][];
+	
+	static {
+		SudokuGeometry geometry = SudokuGeometry.forBoxSize(PackedSudokuBoard.SUBGRID_SIZE);
+		for (int cell = 0; cell < CELL_COUNT; cell++) {
+			PEER_BASES[cell] = BitSlicedSudokuSolver.bases(geometry.getPeers(cell));
+			CELL_UNITS[cell] = new int[] { geometry.getRowUnit(cell), geometry.getColumnUnit(cell),
+					geometry.getBoxUnit(cell) };
+		}
+		UNIT_BASES = new int[geometry.getUnitCount()][];
+		for (int unit = 0; unit < UNIT_BASES.length; unit++) {
+			UNIT_BASES[unit] = BitSlicedSudokuSolver.bases(geometry.getUnitCells(unit));
+		}
+	}
+	
+	private final StandardSudokuSolver fallback;
+	/**
+	 * The lanes on which each value is possible at each location, indexed by
+	 * location * SIZE + value - 1
+	 */
+	private final long[] candidates = new long[CELL_COUNT * SIZE];
+	/**
+	 * The lanes on which each location's value has been removed from its
+	 * peers
+	 */
+	private final long[] placed = new long[CELL_COUNT];
+	/**
+	 * The lanes on which each value has been placed in each unit, indexed by
+	 * unit * SIZE + value - 1
+	 */
+	private final long[] unitPlaced;
+	private long propagated;
+	private long fellBack;
+	
+	/**
+	 * Creates a solver falling back to a StandardSudokuSolver without
+	 * propagation
+	 */
+	public BitSlicedSudokuSolver() {
+		this(new StandardSudokuSolver());
+	}
+	
+	/**
+	 * Creates a solver falling back to the given solver for boards which need
+	 * guessing
+	 * 
+	 * @param fallback
+	 */
+	public BitSlicedSudokuSolver(StandardSudokuSolver fallback) {
+		this.fallback = fallback;
+		this.unitPlaced = new long[UNIT_BASES.length * SIZE];
+	}
+	
+	/**
+	 * Attempts to solve the board as a batch of one.  Will throw an exception
+	 * if the board is not a type this solver handles
+	 * 
+	 * @return the solved sudoku board or null if no solution exists
+	 */
+	@Override
+	public SudokuBoard solve(SudokuBoard board) throws InvalidBoardTypeException {
+		if (board instanceof StandardSudokuBoard) {
+			PackedSudokuBoard solved = this.solve(new PackedSudokuBoard((StandardSudokuBoard) board));
+			return solved == null ? null : solved.toStandardBoard();
+		} else if (board instanceof PackedSudokuBoard) {
+			return this.solve((PackedSudokuBoard) board);
+		} else {
+			throw new InvalidBoardTypeException("Solver only handles standard boards");
+		}
+	}
+	
+	/**
+	 * Attempts to solve the given packed board as a batch of one
+	 * 
+	 * @param board
+	 * @return the solved board or null if no solution exists
+	 */
+	public PackedSudokuBoard solve(PackedSudokuBoard board) {
+		return this.solveAll(Collections.singletonList(board)).get(0);
+	}
+	
+	/**
+	 * Attempts to solve every board, LANES at a time
+	 * 
+	 * @param boards
+	 * @return the solution of each board in the same order, null for those
+	 * with no solution
+	 */
+	public List<PackedSudokuBoard> solveAll(List<PackedSudokuBoard> boards) {
+		List<PackedSudokuBoard> solutions = new ArrayList<PackedSudokuBoard>(boards.size());
+		for (int start = 0; start < boards.size(); start += LANES) {
+			this.solveLanes(boards.subList(start, Math.min(start + LANES, boards.size())), solutions);
+		}
+		
+		return solutions;
+	}
+	
+	/**
+	 * Gets the number of boards solved or found to have no solution by
+	 * propagation alone
+	 * 
+	 * @return
+	 */
+	public long getPropagated() {
+		return this.propagated;
+	}
+	
+	/**
+	 * Gets the number of boards handed to the fallback solver
+	 * 
+	 * @return
+	 */
+	public long getFellBack() {
+		return this.fellBack;
+	}
+	
+	/**
+	 * Solves up to LANES boards together
+	 * 
+	 * @param boards
+	 * @param solutions the list to add the solutions to
+	 */
+	private void solveLanes(List<PackedSudokuBoard> boards, List<PackedSudokuBoard> solutions) {
+		long used = boards.size() == LANES ? -1L : (1L << boards.size()) - 1;
+		Arrays.fill(this.candidates, 0);
+		Arrays.fill(this.placed, 0);
+		Arrays.fill(this.unitPlaced, 0);
+		for (int lane = 0; lane < boards.size(); lane++) {
+			PackedSudokuBoard board = boards.get(lane);
+			long bit = 1L << lane;
+			for (int cell = 0, base = 0; cell < CELL_COUNT; cell++, base += SIZE) {
+				int value = board.getCell(cell);
+				if (value == PackedSudokuBoard.BLANK) {
+					for (int index = base; index < base + SIZE; index++) {
+						this.candidates[index] |= bit;
+					}
+				} else {
+					this.candidates[base + value - 1] |= bit;
+				}
+			}
+		}
+		
+		long dead = this.propagate(used);
+		
+		// read every lane's board in one sweep, leaving blank any location
+		// with more than one candidate
+		PackedSudokuBoard[] laneBoards = new PackedSudokuBoard[boards.size()];
+		for (int lane = 0; lane < laneBoards.length; lane++) {
+			laneBoards[lane] = new PackedSudokuBoard();
+		}
+		long unsolved = 0;
+		for (int cell = 0, base = 0; cell < CELL_COUNT; cell++, base += SIZE) {
+			long ones = 0;
+			long twos = 0;
+			for (int index = base; index < base + SIZE; index++) {
+				twos |= ones & this.candidates[index];
+				ones |= this.candidates[index];
+			}
+			dead |= used & ~ones;
+			unsolved |= twos;
+			
+			for (int value = 0; value < SIZE; value++) {
+				long lanes = this.candidates[base + value] & ~twos & used;
+				while (lanes != 0) {
+					laneBoards[Long.numberOfTrailingZeros(lanes)].setCell(cell, value + 1);
+					lanes &= lanes - 1;
+				}
+			}
+		}
+		
+		for (int lane = 0; lane < laneBoards.length; lane++) {
+			long bit = 1L << lane;
+			if ((dead & bit) != 0) {
+				this.propagated++;
+				solutions.add(null);
+			} else if ((unsolved & bit) == 0) {
+				this.propagated++;
+				solutions.add(laneBoards[lane]);
+			} else {
+				this.fellBack++;
+				solutions.add(this.fallback.solve(laneBoards[lane]));
+			}
+		}
+	}
+	
+	/**
+	 * Places naked and hidden singles on every lane until none can be found
+	 * 
+	 * @param used the lanes holding boards
+	 * @return the lanes left with a location or a unit's value without
+	 * candidates, whose boards have no solution
+	 */
+	private long propagate(long used) {
+		long[] candidates = this.candidates;
+		long dead = 0;
+		boolean changed = true;
+		while (changed && dead != used) {
+			changed = false;
+			
+			// naked singles: remove the value of each location with a single
+			// candidate from its peers
+			for (int cell = 0, base = 0; cell < CELL_COUNT; cell++, base += SIZE) {
+				if ((used & ~dead & ~this.placed[cell]) == 0) {
+					// a location emptied later is caught when the lanes are read
+					continue;
+				}
+				
+				long ones = 0;
+				long twos = 0;
+				for (int index = base; index < base + SIZE; index++) {
+					twos |= ones & candidates[index];
+					ones |= candidates[index];
+				}
+				dead |= used & ~ones;
+				
+				long singles = ones & ~twos & ~this.placed[cell];
+				if (singles == 0) {
+					continue;
+				}
+				
+				this.placed[cell] |= singles;
+				changed = true;
+				for (int value = 0; value < SIZE; value++) {
+					long placing = singles & candidates[base + value];
+					if (placing == 0) {
+						continue;
+					}
+					
+					for (int peer : PEER_BASES[cell]) {
+						candidates[peer + value] &= ~placing;
+					}
+					for (int unit : CELL_UNITS[cell]) {
+						this.unitPlaced[unit * SIZE + value] |= placing;
+					}
+				}
+			}
+			
+			// hidden singles: a value with one possible location in a unit
+			// goes there
+			for (int unit = 0; unit < UNIT_BASES.length; unit++) {
+				for (int value = 0; value < SIZE; value++) {
+					if ((used & ~dead & ~this.unitPlaced[unit * SIZE + value]) == 0) {
+						continue;
+					}
+					
+					long ones = 0;
+					long twos = 0;
+					for (int base : UNIT_BASES[unit]) {
+						twos |= ones & candidates[base + value];
+						ones |= candidates[base + value];
+					}
+					dead |= used & ~ones;
+					
+					long hidden = ones & ~twos;
+					if (hidden == 0) {
+						continue;
+					}
+					
+					for (int base : UNIT_BASES[unit]) {
+						// lanes where the location already holds the value
+						// have nothing left to remove
+						long only = hidden & candidates[base + value] & ~this.placed[base / SIZE];
+						if (only == 0) {
+							continue;
+						}
+						
+						long removed = 0;
+						for (int other = 0; other < SIZE; other++) {
+							if (other != value) {
+								removed |= candidates[base + other] & only;
+								candidates[base + other] &= ~only;
+							}
+						}
+						changed |= removed != 0;
+					}
+				}
+			}
+		}
+		
+		return dead;
+	}
+	
+	/**
+	 * Gets the index into the candidates of the first value of each location
+	 * 
+	 * @param cells
+	 * @return
+	 */
+	private static int[] bases(int[] cells) {
+		int[] bases = new int[cells.length];
+		for (int index = 0; index < cells.length; index++) {
+			bases[index] = cells[index] * SIZE;
+		}
+		
+		return bases;
+	}
+}
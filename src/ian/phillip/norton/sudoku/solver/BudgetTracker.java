@@ -0,0 +1,76 @@
+package ian.phillip.norton.sudoku.solver;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tracks the work done by one solve against its SolveBudget.  Searches count
+ * nodes themselves and only report them every checkInterval nodes, so the
+ * clock and the shared counter are rarely touched.  Branches of a parallel
+ * search share one tracker, and once any finds the budget exceeded they all
+ * stop at their next report.
+ * 
+ * @author Ian Norton
+ * 
+ */
+class BudgetTracker {
+	/**
+	 * Most nodes a search visits between reports
+	 */
+	private static final int CHECK_INTERVAL = 64;
+	
+	/**
+	 * System.nanoTime to stop at, 0 for no time limit
+	 */
+	private final long deadline;
+	private final long maxNodes;
+	private final CancellationToken cancellation;
+	private final int checkInterval;
+	private final AtomicLong nodes = new AtomicLong();
+	/**
+	 * Why the budget was exceeded, null while it has not been
+	 */
+	private volatile String exceeded;
+	
+	BudgetTracker(long deadline, long maxNodes, CancellationToken cancellation) {
+		this.deadline = deadline;
+		this.maxNodes = maxNodes;
+		this.cancellation = cancellation;
+		this.checkInterval = maxNodes == 0 ? CHECK_INTERVAL : (int) Math.min(CHECK_INTERVAL, maxNodes);
+	}
+	
+	int getCheckInterval() {
+		return this.checkInterval;
+	}
+	
+	/**
+	 * Adds nodes visited by a search and checks every limit
+	 * 
+	 * @param visited nodes visited since the search last reported
+	 * @return true if the budget has been exceeded
+	 */
+	boolean report(int visited) {
+		if (this.exceeded != null) {
+			return true;
+		}
+		
+		long total = this.nodes.addAndGet(visited);
+		if (this.maxNodes != 0 && total > this.maxNodes) {
+			this.exceeded = "node limit of " + this.maxNodes + " reached";
+		} else if (this.deadline != 0 && System.nanoTime() - this.deadline > 0) {
+			this.exceeded = "time limit reached";
+		} else if (this.cancellation != null && this.cancellation.isCancelled()) {
+			this.exceeded = "cancelled";
+		}
+		
+		return this.exceeded != null;
+	}
+	
+	/**
+	 * Gets why the budget was exceeded
+	 * 
+	 * @return the reason or null if it has not been
+	 */
+	String getExceeded() {
+		return this.exceeded;
+	}
+}
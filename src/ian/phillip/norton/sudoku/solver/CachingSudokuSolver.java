@@ -0,0 +1,94 @@
+package ian.phillip.norton.sudoku.solver;
+
+import ian.phillip.norton.sudoku.board.CanonicalForm;
+import ian.phillip.norton.sudoku.board.PackedSudokuBoard;
+import ian.phillip.norton.sudoku.board.StandardSudokuBoard;
+import ian.phillip.norton.sudoku.board.SudokuBoard;
+import ian.phillip.norton.sudoku.exceptions.InvalidBoardTypeException;
+
+/**
+ * Solves standard boards through a SolutionCache in front of another solver.
+ * Each board is put in its canonical form and looked up.  On a hit the
+ * cached solution is transformed back to the arrangement of the board, on a
+ * miss the other solver is used and its solution stored in canonical
+ * arrangement.
+ * 
+ * Boards of other types are passed straight to the other solver.  The cache
+ * may be shared between solvers, but the other solver is used as it is so
+ * it must be safe to call from however many threads use this one.
+ * 
+ * @author Ian Norton
+ * 
+ */
+public class CachingSudokuSolver implements SudokuSolver {
+	private final SudokuSolver solver;
+	private final SolutionCache cache;
+	
+	/**
+	 * Creates a solver looking up solutions in cache before falling back to
+	 * solver
+	 * 
+	 * @param solver
+	 * @param cache
+	 */
+	public CachingSudokuSolver(SudokuSolver solver, SolutionCache cache) {
+		this.solver = solver;
+		this.cache = cache;
+	}
+	
+	/**
+	 * Attempts to solve the board.  Will throw an exception if the board
+	 * is not a type the other solver handles
+	 * 
+	 * @return the solved sudoku board or null if no solution exists
+	 */
+	@Override
+	public SudokuBoard solve(SudokuBoard board) throws InvalidBoardTypeException {
+		if (board instanceof StandardSudokuBoard) {
+			return this.solve((StandardSudokuBoard) board);
+		} else if (board instanceof PackedSudokuBoard) {
+			return this.solve((PackedSudokuBoard) board);
+		} else {
+			return this.solver.solve(board);
+		}
+	}
+	
+	/**
+	 * Attempts to solve the given standard sudoku board.
+	 * 
+	 * @param board the board to solve
+	 * @return the solved sudoku board or null if no solution exists
+	 * @throws InvalidBoardTypeException if the other solver does not handle
+	 * standard boards
+	 */
+	public StandardSudokuBoard solve(StandardSudokuBoard board) throws InvalidBoardTypeException {
+		PackedSudokuBoard solved = this.solve(new PackedSudokuBoard(board));
+		return solved == null ? null : solved.toStandardBoard();
+	}
+	
+	/**
+	 * Attempts to solve the given packed sudoku board.
+	 * 
+	 * @param board the board to solve
+	 * @return the solved sudoku board or null if no solution exists
+	 * @throws InvalidBoardTypeException if the other solver does not handle
+	 * packed boards
+	 */
+	public PackedSudokuBoard solve(PackedSudokuBoard board) throws InvalidBoardTypeException {
+		CanonicalForm form = CanonicalForm.of(board);
+		String key = form.getKey();
+		PackedSudokuBoard cached = this.cache.get(key);
+		if (cached != null) {
+			return cached == SolutionCache.NO_SOLUTION ? null : form.fromCanonical(cached);
+		}
+		
+		PackedSudokuBoard solved = (PackedSudokuBoard) this.solver.solve(board);
+		this.cache.put(key, solved == null ? null : form.toCanonical(solved));
+		
+		return solved;
+	}
+	
+	public SolutionCache getCache() {
+		return this.cache;
+	}
+}
@@ -0,0 +1,21 @@
+package ian.phillip.norton.sudoku.solver;
+
+/**
+ * Lets one thread ask solves running on others to give up.  Searches check
+ * it every few nodes, so a cancelled solve stops soon after rather than at
+ * once.  One token may be shared by any number of solves.
+ * 
+ * @author Ian Norton
+ * 
+ */
+public class CancellationToken {
+	private volatile boolean cancelled;
+	
+	public void cancel() {
+		this.cancelled = true;
+	}
+	
+	public boolean isCancelled() {
+		return this.cancelled;
+	}
+}
@@ -0,0 +1,47 @@
+package ian.phillip.norton.sudoku.solver;
+
+import ian.phillip.norton.sudoku.board.SudokuGeometry;
+
+/**
+ * The state of a search as seen by propagation stages: the candidate values
+ * of each location and the means to remove candidates or place values.  All
+ * changes go through the search so they are undone when it backtracks.
+ * 
+ * Candidates are masks with bit (value - 1) set for each possible value.
+ * 
+ * @author Ian Norton
+ * 
+ */
+interface CandidateGrid {
+	SudokuGeometry getGeometry();
+	
+	boolean isBlank(int cell);
+	
+	/**
+	 * Gets the candidates of a location.  A filled location has only the bit
+	 * of its value set.
+	 * 
+	 * @param cell
+	 * @return
+	 */
+	long getCandidates(int cell);
+	
+	/**
+	 * Removes candidates from a blank location
+	 * 
+	 * @param cell
+	 * @param valueMask the candidates to remove
+	 * @return false if the location was left without candidates
+	 */
+	boolean eliminate(int cell, long valueMask);
+	
+	/**
+	 * Places a value at a blank location
+	 * 
+	 * @param cell
+	 * @param valueMask the mask bit of the value to place
+	 * @return false if the placement was found to leave a location without
+	 * candidates
+	 */
+	boolean place(int cell, long valueMask);
+}
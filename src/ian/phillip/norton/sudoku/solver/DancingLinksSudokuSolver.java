@@ -0,0 +1,323 @@
+package ian.phillip.norton.sudoku.solver;
+
+import ian.phillip.norton.sudoku.board.PackedSudokuBoard;
+import ian.phillip.norton.sudoku.board.StandardSudokuBoard;
+import ian.phillip.norton.sudoku.board.SudokuBoard;
+import ian.phillip.norton.sudoku.exceptions.InvalidBoardTypeException;
+
+/**
+ * Solves standard 9x9 sudoku boards as an exact cover problem using Knuth's
+ * Dancing Links implementation of Algorithm X.
+ * 
+ * The matrix has 324 columns, one for each constraint (every location is
+ * filled, and every row, column, and subgrid holds each value) and 729 rows,
+ * one for each value that may be placed at each location.  Each row covers
+ * exactly four columns.
+ * 
+ * All nodes live in preallocated arrays which are relinked at the start of
+ * every solve so a single solver can be reused across many puzzles without
+ * allocating.  A solver instance is not safe to share between threads.
+ * 
+ * @author Ian Norton
+ * 
+ */
+public class DancingLinksSudokuSolver implements SudokuSolver, SolutionCounter {
+	private static final int BOARD_SIZE = PackedSudokuBoard.BOARD_SIZE;
+	private static final int CELL_COUNT = PackedSudokuBoard.CELL_COUNT;
+	private static final int CONSTRAINTS_PER_ROW = 4;
+	private static final int COLUMN_COUNT = CONSTRAINTS_PER_ROW * CELL_COUNT;
+	private static final int ROW_COUNT = CELL_COUNT * BOARD_SIZE;
+	
+	/**
+	 * Node 0 is the root, nodes 1-324 are the column headers and the rest are
+	 * the matrix entries, four per row
+	 */
+	private static final int ROOT = 0;
+	private static final int FIRST_ROW_NODE = COLUMN_COUNT + 1;
+	private static final int NODE_COUNT = FIRST_ROW_NODE + CONSTRAINTS_PER_ROW * ROW_COUNT;
+	
+	private final int[] left = new int[NODE_COUNT];
+	private final int[] right = new int[NODE_COUNT];
+	private final int[] up = new int[NODE_COUNT];
+	private final int[] down = new int[NODE_COUNT];
+	private final int[] columnOf = new int[NODE_COUNT];
+	private final int[] rowOf = new int[NODE_COUNT];
+	private final int[] columnSize = new int[COLUMN_COUNT + 1];
+	
+	/**
+	 * The matrix rows chosen by the search so far
+	 */
+	private final int[] chosenRows = new int[CELL_COUNT];
+	private int solutionLimit;
+	private int solutionCount;
+	
+	/**
+	 * Attempts to solve the board.  Will throw an exception if the board
+	 * is not a type this solver handles
+	 * 
+	 * @return the solved sudoku board or null if no solution exists
+	 */
+	@Override
+	public SudokuBoard solve(SudokuBoard board) throws InvalidBoardTypeException {
+		if (board instanceof StandardSudokuBoard) {
+			return this.solve((StandardSudokuBoard) board);
+		} else if (board instanceof PackedSudokuBoard) {
+			return this.solve((PackedSudokuBoard) board);
+		} else {
+			throw new InvalidBoardTypeException("Solver only handles standard boards");
+		}
+	}
+	
+	/**
+	 * Attempts to solve the given standard sudoku board.
+	 * 
+	 * @param board the board to solve
+	 * @return the solved sudoku board or null if no solution exists
+	 */
+	public StandardSudokuBoard solve(StandardSudokuBoard board) {
+		PackedSudokuBoard solved = this.solve(new PackedSudokuBoard(board));
+		return solved == null ? null : solved.toStandardBoard();
+	}
+	
+	/**
+	 * Attempts to solve the given packed sudoku board.  The passed in board
+	 * is not modified.
+	 * 
+	 * @param board the board to solve
+	 * @return the solved sudoku board or null if no solution exists
+	 */
+	public PackedSudokuBoard solve(PackedSudokuBoard board) {
+		if (!board.isValid()) {
+			// no solution to an invalid board
+			return null;
+		}
+		
+		int givens = this.start(board, 1);
+		if (!this.search(givens)) {
+			return null;
+		}
+		
+		PackedSudokuBoard solved = new PackedSudokuBoard(board);
+		for (int index = givens; index < CELL_COUNT; index++) {
+			int row = this.chosenRows[index];
+			solved.setCell(row / BOARD_SIZE, row % BOARD_SIZE + 1);
+		}
+		
+		return solved;
+	}
+	
+	/**
+	 * Counts the solutions of the board, stopping once limit have been found.
+	 * Will throw an exception if the board is not a type this solver handles
+	 * 
+	 * @return the number of solutions found, at most limit
+	 */
+	@Override
+	public int countSolutions(SudokuBoard board, int limit) throws InvalidBoardTypeException {
+		if (board instanceof StandardSudokuBoard) {
+			return this.countSolutions(new PackedSudokuBoard((StandardSudokuBoard) board), limit);
+		} else if (board instanceof PackedSudokuBoard) {
+			return this.countSolutions((PackedSudokuBoard) board, limit);
+		} else {
+			throw new InvalidBoardTypeException("Solver only handles standard boards");
+		}
+	}
+	
+	/**
+	 * Counts the solutions of the given packed board, stopping once limit
+	 * have been found.
+	 * 
+	 * @param board the board to check
+	 * @param limit the number of solutions after which to stop, at least 1
+	 * @return the number of solutions found, at most limit
+	 */
+	public int countSolutions(PackedSudokuBoard board, int limit) {
+		if (limit < 1) {
+			throw new IllegalArgumentException("Solution limit must be at least 1");
+		}
+		if (!board.isValid()) {
+			return 0;
+		}
+		
+		this.search(this.start(board, limit));
+		
+		return this.solutionCount;
+	}
+	
+	/**
+	 * Resets the matrix and covers the givens of the board
+	 * 
+	 * @param board a valid board
+	 * @param limit the number of solutions after which to stop searching
+	 * @return the number of givens
+	 */
+	private int start(PackedSudokuBoard board, int limit) {
+		this.reset();
+		this.solutionLimit = limit;
+		this.solutionCount = 0;
+		
+		// the givens are already chosen so remove their columns up front
+		int givens = 0;
+		for (int cell = 0; cell < CELL_COUNT; cell++) {
+			int value = board.getCell(cell);
+			if (value != PackedSudokuBoard.BLANK) {
+				this.chooseRow(matrixRow(cell, value));
+				this.chosenRows[givens++] = matrixRow(cell, value);
+			}
+		}
+		
+		return givens;
+	}
+	
+	/**
+	 * Algorithm X.  Always branches on the column with the fewest remaining
+	 * rows.
+	 * 
+	 * @param depth number of rows chosen so far
+	 * @return true once the solution limit is reached, leaving the links
+	 * covered and the last solution in chosenRows
+	 */
+	private boolean search(int depth) {
+		if (this.right[ROOT] == ROOT) {
+			return ++this.solutionCount >= this.solutionLimit;
+		}
+		
+		int column = this.right[ROOT];
+		for (int candidate = this.right[column]; candidate != ROOT; candidate = this.right[candidate]) {
+			if (this.columnSize[candidate] < this.columnSize[column]) {
+				column = candidate;
+			}
+		}
+		if (this.columnSize[column] == 0) {
+			// some constraint can no longer be satisfied
+			return false;
+		}
+		
+		this.cover(column);
+		for (int node = this.down[column]; node != column; node = this.down[node]) {
+			this.chosenRows[depth] = this.rowOf[node];
+			for (int other = this.right[node]; other != node; other = this.right[other]) {
+				this.cover(this.columnOf[other]);
+			}
+			
+			if (this.search(depth + 1)) {
+				return true;
+			}
+			
+			for (int other = this.left[node]; other != node; other = this.left[other]) {
+				this.uncover(this.columnOf[other]);
+			}
+		}
+		this.uncover(column);
+		
+		return false;
+	}
+	
+	/**
+	 * Covers every column the given matrix row satisfies
+	 * 
+	 * @param row
+	 */
+	private void chooseRow(int row) {
+		int first = FIRST_ROW_NODE + CONSTRAINTS_PER_ROW * row;
+		for (int node = first; node < first + CONSTRAINTS_PER_ROW; node++) {
+			this.cover(this.columnOf[node]);
+		}
+	}
+	
+	/**
+	 * Removes a column from the header list and every row intersecting it
+	 * from the other columns
+	 * 
+	 * @param column
+	 */
+	private void cover(int column) {
+		this.right[this.left[column]] = this.right[column];
+		this.left[this.right[column]] = this.left[column];
+		for (int row = this.down[column]; row != column; row = this.down[row]) {
+			for (int node = this.right[row]; node != row; node = this.right[node]) {
+				this.down[this.up[node]] = this.down[node];
+				this.up[this.down[node]] = this.up[node];
+				this.columnSize[this.columnOf[node]]--;
+			}
+		}
+	}
+	
+	/**
+	 * Exactly reverses a cover of the column
+	 * 
+	 * @param column
+	 */
+	private void uncover(int column) {
+		for (int row = this.up[column]; row != column; row = this.up[row]) {
+			for (int node = this.left[row]; node != row; node = this.left[node]) {
+				this.columnSize[this.columnOf[node]]++;
+				this.down[this.up[node]] = node;
+				this.up[this.down[node]] = node;
+			}
+		}
+		this.right[this.left[column]] = column;
+		this.left[this.right[column]] = column;
+	}
+	
+	/**
+	 * Relinks the full matrix into the preallocated node arrays
+	 */
+	private void reset() {
+		for (int header = ROOT; header <= COLUMN_COUNT; header++) {
+			this.left[header] = header == ROOT ? COLUMN_COUNT : header - 1;
+			this.right[header] = header == COLUMN_COUNT ? ROOT : header + 1;
+			this.up[header] = header;
+			this.down[header] = header;
+			this.columnSize[header] = 0;
+		}
+		
+		for (int row = 0; row < ROW_COUNT; row++) {
+			int cell = row / BOARD_SIZE;
+			int value = row % BOARD_SIZE;
+			int boardRow = cell / BOARD_SIZE;
+			int boardColumn = cell % BOARD_SIZE;
+			int subgrid = PackedSudokuBoard.getSubgridIndex(boardRow, boardColumn);
+			int first = FIRST_ROW_NODE + CONSTRAINTS_PER_ROW * row;
+			
+			this.linkNode(first, row, 1 + cell);
+			this.linkNode(first + 1, row, 1 + CELL_COUNT + boardRow * BOARD_SIZE + value);
+			this.linkNode(first + 2, row, 1 + 2 * CELL_COUNT + boardColumn * BOARD_SIZE + value);
+			this.linkNode(first + 3, row, 1 + 3 * CELL_COUNT + subgrid * BOARD_SIZE + value);
+			
+			for (int offset = 0; offset < CONSTRAINTS_PER_ROW; offset++) {
+				int node = first + offset;
+				this.left[node] = first + (offset + CONSTRAINTS_PER_ROW - 1) % CONSTRAINTS_PER_ROW;
+				this.right[node] = first + (offset + 1) % CONSTRAINTS_PER_ROW;
+			}
+		}
+	}
+	
+	/**
+	 * Appends a node to the bottom of a column
+	 * 
+	 * @param node
+	 * @param row
+	 * @param column
+	 */
+	private void linkNode(int node, int row, int column) {
+		this.rowOf[node] = row;
+		this.columnOf[node] = column;
+		this.up[node] = this.up[column];
+		this.down[node] = column;
+		this.down[this.up[column]] = node;
+		this.up[column] = node;
+		this.columnSize[column]++;
+	}
+	
+	/**
+	 * Gets the matrix row placing value at the given row major cell index
+	 * 
+	 * @param cell
+	 * @param value a value 1-9
+	 * @return
+	 */
+	private static int matrixRow(int cell, int value) {
+		return cell * BOARD_SIZE + value - 1;
+	}
+}
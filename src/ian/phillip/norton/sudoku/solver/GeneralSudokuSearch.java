@@ -0,0 +1,261 @@
+package ian.phillip.norton.sudoku.solver;
+
+import ian.phillip.norton.sudoku.board.GeneralSudokuBoard;
+import ian.phillip.norton.sudoku.board.SudokuGeometry;
+
+/**
+ * Backtracking search over a single GeneralSudokuBoard which is changed in
+ * place.
+ * 
+ * Every blank location keeps a mask of its candidate values with bit
+ * (value - 1) set.  Placing a value clears its bit from the location's peers,
+ * taken from the geometry's peer table, so the work per placement depends
+ * only on how many peers a location has.  Each placement and each candidate
+ * removed is logged on a trail and backtracking unwinds the trail back to an
+ * earlier mark.
+ * 
+ * When no location has a single candidate the propagation pipeline is run
+ * before guessing.  By default it places hidden singles, values which have
+ * only one possible location left in a unit, since without them large boards
+ * can spend a very long time guessing wrongly.
+ * 
+ * A search is not safe to share between threads.
+ * 
+ * @author Ian Norton
+ * 
+ */
+class GeneralSudokuSearch implements CandidateGrid {
+	private final SudokuGeometry geometry;
+	private final GeneralSudokuBoard board;
+	private final long[] candidates;
+	/**
+	 * Locations changed in the order they were changed.  A placement is
+	 * logged as the complement of its location, a removed candidate as its
+	 * location with the removed bit in trailMasks.
+	 */
+	private final int[] trailCells;
+	private final long[] trailMasks;
+	private int trailSize;
+	
+	private int solutionLimit;
+	private int solutionCount;
+	private GeneralSudokuBoard firstSolution;
+	
+	private final PropagationPipeline propagation;
+	
+	/**
+	 * Creates a search over a copy of the given board
+	 * 
+	 * @param board
+	 * @param propagation the stages to run before each guess
+	 */
+	GeneralSudokuSearch(GeneralSudokuBoard board, PropagationPipeline propagation) {
+		this.propagation = propagation;
+		this.geometry = board.getGeometry();
+		this.board = new GeneralSudokuBoard(board);
+		
+		int cellCount = this.geometry.getCellCount();
+		this.candidates = new long[cellCount];
+		// each candidate of each location can only be removed once on a path
+		// through the search, plus one entry per placement
+		this.trailCells = new int[cellCount * (this.geometry.getSize() + 1)];
+		this.trailMasks = new long[this.trailCells.length];
+		
+		for (int cell = 0; cell < cellCount; cell++) {
+			if (this.board.getCell(cell) == GeneralSudokuBoard.BLANK) {
+				this.candidates[cell] = this.geometry.getAllValues() &
+						~(this.board.getUnitMask(this.geometry.getRowUnit(cell)) |
+								this.board.getUnitMask(this.geometry.getColumnUnit(cell)) |
+								this.board.getUnitMask(this.geometry.getBoxUnit(cell)));
+			}
+		}
+	}
+	
+	/**
+	 * Searches for the first solution
+	 * 
+	 * @return the solution or null if there is none
+	 */
+	GeneralSudokuBoard solve() {
+		this.countSolutions(1);
+		
+		return this.firstSolution;
+	}
+	
+	/**
+	 * Searches for solutions until the limit is reached or there are no more
+	 * 
+	 * @param limit the number of solutions after which to stop
+	 * @return the number of solutions found, at most limit
+	 */
+	int countSolutions(int limit) {
+		this.solutionLimit = limit;
+		this.solutionCount = 0;
+		this.firstSolution = null;
+		
+		if (this.board.isValid()) {
+			this.search();
+		}
+		
+		return this.solutionCount;
+	}
+	
+	/**
+	 * Fills the location with the fewest candidates if it has only one, or
+	 * whatever the propagation pipeline can deduce.  When neither places
+	 * anything tries each candidate of the location with the fewest, lowest
+	 * first.
+	 * The board is left as it was found unless the search stops.
+	 * 
+	 * @return true once the solution limit has been reached
+	 */
+	private boolean search() {
+		int mark = this.trailSize;
+		while (true) {
+			if (this.board.getFilledCount() == this.geometry.getCellCount()) {
+				return this.recordSolution(mark);
+			}
+			
+			int branchCell = -1;
+			int branchCount = Integer.MAX_VALUE;
+			for (int cell = 0; cell < this.geometry.getCellCount(); cell++) {
+				if (this.board.getCell(cell) == GeneralSudokuBoard.BLANK) {
+					int count = Long.bitCount(this.candidates[cell]);
+					if (count < branchCount) {
+						branchCell = cell;
+						branchCount = count;
+						if (count <= 1) {
+							// nothing can beat a single or a dead end
+							break;
+						}
+					}
+				}
+			}
+			
+			if (branchCount == 0) {
+				// with no valid values this branch is unsolvable
+				this.undo(mark);
+				return false;
+			} else if (branchCount == 1) {
+				// with only one valid value we must use this one
+				if (!this.place(branchCell, this.candidates[branchCell])) {
+					this.undo(mark);
+					return false;
+				}
+			} else {
+				int deductions = this.propagation.propagate(this);
+				if (deductions == PropagationStage.DEAD_END) {
+					this.undo(mark);
+					return false;
+				} else if (deductions > 0) {
+					// look for naked singles again before guessing
+					continue;
+				}
+				
+				// check each branch, lowest value first
+				for (long remaining = this.candidates[branchCell]; remaining != 0; remaining &= remaining - 1) {
+					int branchMark = this.trailSize;
+					if (this.place(branchCell, remaining & -remaining) && this.search()) {
+						return true;
+					}
+					this.undo(branchMark);
+				}
+				
+				this.undo(mark);
+				return false;
+			}
+		}
+	}
+	
+	/**
+	 * Counts the filled board as a solution, keeping a copy if it is the
+	 * first
+	 * 
+	 * @param mark the trail mark to unwind to if the search continues
+	 * @return true once the solution limit has been reached
+	 */
+	private boolean recordSolution(int mark) {
+		if (this.solutionCount++ == 0) {
+			this.firstSolution = new GeneralSudokuBoard(this.board);
+		}
+		if (this.solutionCount >= this.solutionLimit) {
+			return true;
+		}
+		
+		this.undo(mark);
+		return false;
+	}
+	
+	@Override
+	public SudokuGeometry getGeometry() {
+		return this.geometry;
+	}
+	
+	@Override
+	public boolean isBlank(int cell) {
+		return this.board.getCell(cell) == GeneralSudokuBoard.BLANK;
+	}
+	
+	@Override
+	public long getCandidates(int cell) {
+		int value = this.board.getCell(cell);
+		
+		return value == GeneralSudokuBoard.BLANK ? this.candidates[cell] : 1L << (value - 1);
+	}
+	
+	@Override
+	public boolean eliminate(int cell, long valueMask) {
+		long removed = this.candidates[cell] & valueMask;
+		if (removed != 0) {
+			this.candidates[cell] &= ~removed;
+			this.trailCells[this.trailSize] = cell;
+			this.trailMasks[this.trailSize++] = removed;
+		}
+		
+		return this.candidates[cell] != 0;
+	}
+	
+	/**
+	 * Places a value and removes it from the candidates of every blank peer,
+	 * logging all of it on the trail
+	 * 
+	 * @param cell
+	 * @param valueMask the mask bit of the value to place
+	 * @return false if a peer was left without candidates
+	 */
+	@Override
+	public boolean place(int cell, long valueMask) {
+		this.board.setCell(cell, Long.numberOfTrailingZeros(valueMask) + 1);
+		this.trailCells[this.trailSize++] = ~cell;
+		
+		boolean consistent = true;
+		for (int peer : this.geometry.getPeers(cell)) {
+			if ((this.candidates[peer] & valueMask) != 0 && this.board.getCell(peer) == GeneralSudokuBoard.BLANK) {
+				this.candidates[peer] &= ~valueMask;
+				this.trailCells[this.trailSize] = peer;
+				this.trailMasks[this.trailSize++] = valueMask;
+				if (this.candidates[peer] == 0) {
+					consistent = false;
+				}
+			}
+		}
+		
+		return consistent;
+	}
+	
+	/**
+	 * Undoes every placement and candidate removal since the trail mark
+	 * 
+	 * @param mark
+	 */
+	private void undo(int mark) {
+		while (this.trailSize > mark) {
+			int cell = this.trailCells[--this.trailSize];
+			if (cell < 0) {
+				this.board.setCell(~cell, GeneralSudokuBoard.BLANK);
+			} else {
+				this.candidates[cell] |= this.trailMasks[this.trailSize];
+			}
+		}
+	}
+}
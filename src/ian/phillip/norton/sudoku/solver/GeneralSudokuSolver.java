@@ -0,0 +1,100 @@
+package ian.phillip.norton.sudoku.solver;
+
+import ian.phillip.norton.sudoku.board.GeneralSudokuBoard;
+import ian.phillip.norton.sudoku.board.SudokuBoard;
+import ian.phillip.norton.sudoku.exceptions.InvalidBoardTypeException;
+
+/**
+ * Solves GeneralSudokuBoards of any box size
+ * 
+ * The search is done by a GeneralSudokuSearch which keeps a candidate mask
+ * per location, updated through the peer tables of the board's geometry, and
+ * backtracks in place.  Before each guess it runs a propagation pipeline,
+ * which places hidden singles unless another is given.
+ * 
+ * @author Ian Norton
+ * 
+ */
+public class GeneralSudokuSolver implements SudokuSolver, SolutionCounter {
+	private final PropagationPipeline propagation;
+	
+	public GeneralSudokuSolver() {
+		this(new PropagationPipeline(PropagationStage.HIDDEN_SINGLES));
+	}
+	
+	/**
+	 * Creates a solver running the given propagation stages before each guess
+	 * 
+	 * @param propagation
+	 */
+	public GeneralSudokuSolver(PropagationPipeline propagation) {
+		this.propagation = propagation;
+	}
+	
+	/**
+	 * Attempts to solve the board.  Will throw an exception if the board
+	 * is not a type this solver handles
+	 * 
+	 * @return the solved sudoku board or null if no solution exists
+	 */
+	@Override
+	public SudokuBoard solve(SudokuBoard board) throws InvalidBoardTypeException {
+		if (board instanceof GeneralSudokuBoard) {
+			return this.solve((GeneralSudokuBoard) board);
+		} else {
+			throw new InvalidBoardTypeException("Solver only handles general boards");
+		}
+	}
+	
+	/**
+	 * Attempts to solve the given board.  The passed in board is not
+	 * modified.
+	 * 
+	 * @param board the board to solve
+	 * @return the solved sudoku board or null if no solution exists
+	 */
+	public GeneralSudokuBoard solve(GeneralSudokuBoard board) {
+		return new GeneralSudokuSearch(board, this.propagation).solve();
+	}
+	
+	/**
+	 * Counts the solutions of the board, stopping once limit have been found.
+	 * Will throw an exception if the board is not a type this solver handles
+	 * 
+	 * @return the number of solutions found, at most limit
+	 */
+	@Override
+	public int countSolutions(SudokuBoard board, int limit) throws InvalidBoardTypeException {
+		if (board instanceof GeneralSudokuBoard) {
+			return this.countSolutions((GeneralSudokuBoard) board, limit);
+		} else {
+			throw new InvalidBoardTypeException("Solver only handles general boards");
+		}
+	}
+	
+	/**
+	 * Counts the solutions of the given board, stopping once limit have been
+	 * found.  The passed in board is not modified.
+	 * 
+	 * @param board the board to check
+	 * @param limit the number of solutions after which to stop, at least 1
+	 * @return the number of solutions found, at most limit
+	 */
+	public int countSolutions(GeneralSudokuBoard board, int limit) {
+		if (limit < 1) {
+			throw new IllegalArgumentException("Solution limit must be at least 1");
+		}
+		
+		return new GeneralSudokuSearch(board, this.propagation).countSolutions(limit);
+	}
+	
+	/**
+	 * Gets the propagation stages run before each guess, along with their
+	 * hit counters
+	 * 
+	 * @return
+	 */
+	public PropagationPipeline getPropagation() {
+		return this.propagation;
+	}
+}
@@ -0,0 +1,118 @@
+package ian.phillip.norton.sudoku.solver;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * An ordered list of PropagationStages which a search runs each time it runs
+ * out of naked singles, before it guesses.  Stages are run in order and
+ * whenever one makes a deduction the pipeline starts again from the first,
+ * so cheap stages are always exhausted before expensive ones.  It stops when
+ * a full pass deduces nothing or a contradiction is found.
+ * 
+ * The number of deductions made by each stage is counted.  The counters may
+ * be updated by many searches at once, so one pipeline may be shared between
+ * solvers on different threads.
+ * 
+ * @author Ian Norton
+ * 
+ */
+public class PropagationPipeline {
+	/**
+	 * Pipeline with no stages, making searches guess as soon as there are no
+	 * naked singles
+	 */
+	public static final PropagationPipeline NONE = new PropagationPipeline();
+	
+	private final PropagationStage[] stages;
+	private final LongAdder[] hits;
+	
+	/**
+	 * Creates a pipeline running the given stages in order
+	 * 
+	 * @param stages
+	 */
+	public PropagationPipeline(PropagationStage... stages) {
+		this.stages = stages.clone();
+		this.hits = new LongAdder[PropagationStage.values().length];
+		for (int index = 0; index < this.hits.length; index++) {
+			this.hits[index] = new LongAdder();
+		}
+	}
+	
+	/**
+	 * Creates a pipeline running the given stages in order
+	 * 
+	 * @param stages
+	 */
+	public PropagationPipeline(List<PropagationStage> stages) {
+		this(stages.toArray(new PropagationStage[stages.size()]));
+	}
+	
+	/**
+	 * Creates a pipeline running every stage, cheapest first
+	 * 
+	 * @return
+	 */
+	public static PropagationPipeline all() {
+		return new PropagationPipeline(PropagationStage.values());
+	}
+	
+	/**
+	 * Runs the stages until none can make any more deductions
+	 * 
+	 * @param grid
+	 * @return the number of deductions made or PropagationStage.DEAD_END if
+	 * a contradiction was found
+	 */
+	int propagate(CandidateGrid grid) {
+		int total = 0;
+		int index = 0;
+		while (index < this.stages.length) {
+			int deductions = this.stages[index].propagate(grid);
+			if (deductions == PropagationStage.DEAD_END) {
+				return PropagationStage.DEAD_END;
+			} else if (deductions > 0) {
+				this.hits[this.stages[index].ordinal()].add(deductions);
+				total += deductions;
+				index = 0;
+			} else {
+				index++;
+			}
+		}
+		
+		return total;
+	}
+	
+	public boolean isEmpty() {
+		return this.stages.length == 0;
+	}
+	
+	/**
+	 * Gets the stages in the order they are run
+	 * 
+	 * @return
+	 */
+	public List<PropagationStage> getStages() {
+		return Collections.unmodifiableList(Arrays.asList(this.stages));
+	}
+	
+	/**
+	 * Gets the number of deductions the stage has made since the counters
+	 * were last reset
+	 * 
+	 * @param stage
+	 * @return
+	 */
+	public long getHits(PropagationStage stage) {
+		return this.hits[stage.ordinal()].sum();
+	}
+	
+	public void resetHits() {
+		for (LongAdder counter : this.hits) {
+			counter.reset();
+		}
+	}
+}
@@ -0,0 +1,416 @@
+package ian.phillip.norton.sudoku.solver;
+
+import ian.phillip.norton.sudoku.board.SudokuGeometry;
+
+/**
+ * Logical deductions a search may make before guessing, run by a
+ * PropagationPipeline.  Each stage makes the deductions it can find and
+ * reports how many it made so the pipeline knows when nothing more can be
+ * learned.
+ * 
+ * Naked singles, locations with only one candidate, are always placed by the
+ * searches themselves so are not a stage.
+ * 
+ * @author Ian Norton
+ * 
+ */
+public enum PropagationStage {
+	/**
+	 * Places values which have only one possible location in a unit
+	 */
+	HIDDEN_SINGLES {
+		@Override
+		int propagate(CandidateGrid grid) {
+			SudokuGeometry geometry = grid.getGeometry();
+			int placed = 0;
+			for (int unit = 0; unit < geometry.getUnitCount(); unit++) {
+				int[] cells = geometry.getUnitCells(unit);
+				long once = 0;
+				long twice = 0;
+				for (int cell : cells) {
+					long candidates = grid.getCandidates(cell);
+					twice |= once & candidates;
+					once |= candidates;
+				}
+				
+				if (once != geometry.getAllValues()) {
+					// some value has nowhere left to go in this unit
+					return DEAD_END;
+				}
+				
+				long singles = once & ~twice;
+				for (int cell : cells) {
+					if (grid.isBlank(cell) && (grid.getCandidates(cell) & singles) != 0) {
+						// only place one per unit per pass as the placement
+						// changes what the rest of the unit can hold
+						placed++;
+						if (!grid.place(cell, Long.lowestOneBit(grid.getCandidates(cell) & singles))) {
+							return DEAD_END;
+						}
+						break;
+					}
+				}
+			}
+			
+			return placed;
+		}
+	},
+	/**
+	 * Removes the values of two locations with the same two candidates from
+	 * the rest of their unit
+	 */
+	NAKED_PAIRS {
+		@Override
+		int propagate(CandidateGrid grid) {
+			return PropagationStage.eliminateNakedSubsets(grid, 2);
+		}
+	},
+	/**
+	 * Removes the other candidates from two locations which are the only
+	 * places in a unit for two values
+	 */
+	HIDDEN_PAIRS {
+		@Override
+		int propagate(CandidateGrid grid) {
+			return PropagationStage.eliminateHiddenSubsets(grid, 2);
+		}
+	},
+	/**
+	 * Removes the values of three locations holding only the same three
+	 * candidates between them from the rest of their unit
+	 */
+	NAKED_TRIPLES {
+		@Override
+		int propagate(CandidateGrid grid) {
+			return PropagationStage.eliminateNakedSubsets(grid, 3);
+		}
+	},
+	/**
+	 * Removes the other candidates from three locations which are the only
+	 * places in a unit for three values
+	 */
+	HIDDEN_TRIPLES {
+		@Override
+		int propagate(CandidateGrid grid) {
+			return PropagationStage.eliminateHiddenSubsets(grid, 3);
+		}
+	},
+	/**
+	 * When a value can only go in one row or column of a box, removes it from
+	 * the rest of that row or column
+	 */
+	POINTING {
+		@Override
+		int propagate(CandidateGrid grid) {
+			SudokuGeometry geometry = grid.getGeometry();
+			int changed = 0;
+			for (int box = 2 * geometry.getSize(); box < geometry.getUnitCount(); box++) {
+				int result = PropagationStage.eliminateIntersections(grid, box, true);
+				if (result == DEAD_END) {
+					return DEAD_END;
+				}
+				changed += result;
+			}
+			
+			return changed;
+		}
+	},
+	/**
+	 * When a value can only go in one box of a row or column, removes it from
+	 * the rest of that box
+	 */
+	CLAIMING {
+		@Override
+		int propagate(CandidateGrid grid) {
+			SudokuGeometry geometry = grid.getGeometry();
+			int changed = 0;
+			for (int line = 0; line < 2 * geometry.getSize(); line++) {
+				int result = PropagationStage.eliminateIntersections(grid, line, false);
+				if (result == DEAD_END) {
+					return DEAD_END;
+				}
+				changed += result;
+			}
+			
+			return changed;
+		}
+	};
+	
+	/**
+	 * Returned by propagate when a contradiction is found
+	 */
+	static final int DEAD_END = -1;
+	
+	/**
+	 * Makes every deduction of this kind found in one pass over the grid
+	 * 
+	 * @param grid
+	 * @return the number of values placed or locations changed, or DEAD_END
+	 */
+	abstract int propagate(CandidateGrid grid);
+	
+	/**
+	 * Gets the name of the stage as given on the command line, such as
+	 * hidden-singles
+	 * 
+	 * @return
+	 */
+	public String getOptionName() {
+		return this.name().toLowerCase().replace('_', '-');
+	}
+	
+	/**
+	 * Gets the stage with the given command line name
+	 * 
+	 * @param optionName
+	 * @return
+	 */
+	public static PropagationStage forOptionName(String optionName) {
+		for (PropagationStage stage : PropagationStage.values()) {
+			if (stage.getOptionName().equals(optionName)) {
+				return stage;
+			}
+		}
+		
+		throw new IllegalArgumentException("Unknown propagation stage " + optionName);
+	}
+	
+	/**
+	 * Finds groups of size locations in a unit whose candidates together are
+	 * only size values and removes those values from the rest of the unit
+	 * 
+	 * @param grid
+	 * @param size
+	 * @return the number of locations changed or DEAD_END
+	 */
+	private static int eliminateNakedSubsets(CandidateGrid grid, int size) {
+		SudokuGeometry geometry = grid.getGeometry();
+		int changed = 0;
+		int[] members = new int[geometry.getSize()];
+		for (int unit = 0; unit < geometry.getUnitCount(); unit++) {
+			int[] cells = geometry.getUnitCells(unit);
+			int memberCount = 0;
+			for (int cell : cells) {
+				int candidateCount = Long.bitCount(grid.getCandidates(cell));
+				if (grid.isBlank(cell) && candidateCount >= 2 && candidateCount <= size) {
+					members[memberCount++] = cell;
+				}
+			}
+			
+			int result = PropagationStage.findNakedSubset(grid, cells, members, memberCount, size, 0, 0, 0L);
+			if (result == DEAD_END) {
+				return DEAD_END;
+			}
+			changed += result;
+		}
+		
+		return changed;
+	}
+	
+	/**
+	 * Tries every combination of the remaining members, stopping at the first
+	 * which removes anything
+	 * 
+	 * @param grid
+	 * @param cells the unit
+	 * @param members locations of the unit which could be part of a subset
+	 * @param memberCount
+	 * @param size
+	 * @param start first member still to consider
+	 * @param chosen number of members chosen so far
+	 * @param values candidates of the chosen members together
+	 * @return the number of locations changed or DEAD_END
+	 */
+	private static int findNakedSubset(CandidateGrid grid, int[] cells, int[] members, int memberCount, int size,
+			int start, int chosen, long values) {
+		if (Long.bitCount(values) > size) {
+			return 0;
+		} else if (chosen == size) {
+			// the subset's values cannot go anywhere else in the unit
+			int changed = 0;
+			for (int cell : cells) {
+				if (grid.isBlank(cell) && (grid.getCandidates(cell) & ~values) != 0 &&
+						(grid.getCandidates(cell) & values) != 0) {
+					changed++;
+					if (!grid.eliminate(cell, values)) {
+						return DEAD_END;
+					}
+				}
+			}
+			
+			return changed;
+		}
+		
+		for (int member = start; member < memberCount; member++) {
+			int result = PropagationStage.findNakedSubset(grid, cells, members, memberCount, size,
+					member + 1, chosen + 1, values | grid.getCandidates(members[member]));
+			if (result != 0) {
+				return result;
+			}
+		}
+		
+		return 0;
+	}
+	
+	/**
+	 * Finds groups of size values in a unit which can only go in the same
+	 * size locations and removes every other candidate from those locations
+	 * 
+	 * @param grid
+	 * @param size
+	 * @return the number of locations changed or DEAD_END
+	 */
+	private static int eliminateHiddenSubsets(CandidateGrid grid, int size) {
+		SudokuGeometry geometry = grid.getGeometry();
+		int changed = 0;
+		// bit i of a value's places is set if the value may go in the i-th
+		// location of the unit
+		long[] places = new long[geometry.getSize()];
+		int[] members = new int[geometry.getSize()];
+		for (int unit = 0; unit < geometry.getUnitCount(); unit++) {
+			int[] cells = geometry.getUnitCells(unit);
+			for (int value = 0; value < places.length; value++) {
+				places[value] = 0;
+			}
+			for (int index = 0; index < cells.length; index++) {
+				if (grid.isBlank(cells[index])) {
+					for (long remaining = grid.getCandidates(cells[index]); remaining != 0; remaining &= remaining - 1) {
+						places[Long.numberOfTrailingZeros(remaining)] |= 1L << index;
+					}
+				}
+			}
+			
+			int memberCount = 0;
+			for (int value = 0; value < places.length; value++) {
+				int placeCount = Long.bitCount(places[value]);
+				if (placeCount >= 2 && placeCount <= size) {
+					members[memberCount++] = value;
+				}
+			}
+			
+			int result = PropagationStage.findHiddenSubset(grid, cells, places, members, memberCount, size, 0, 0, 0L, 0L);
+			if (result == DEAD_END) {
+				return DEAD_END;
+			}
+			changed += result;
+		}
+		
+		return changed;
+	}
+	
+	/**
+	 * Tries every combination of the remaining member values, stopping at the
+	 * first which removes anything
+	 * 
+	 * @param grid
+	 * @param cells the unit
+	 * @param places where each value may go in the unit
+	 * @param members values which could be part of a subset
+	 * @param memberCount
+	 * @param size
+	 * @param start first member still to consider
+	 * @param chosen number of members chosen so far
+	 * @param values mask of the chosen values
+	 * @param locations places of the chosen values together
+	 * @return the number of locations changed or DEAD_END
+	 */
+	private static int findHiddenSubset(CandidateGrid grid, int[] cells, long[] places, int[] members, int memberCount,
+			int size, int start, int chosen, long values, long locations) {
+		if (Long.bitCount(locations) > size) {
+			return 0;
+		} else if (chosen == size) {
+			if (Long.bitCount(locations) < size) {
+				// more values than places to put them
+				return DEAD_END;
+			}
+			
+			// these locations must hold the subset's values and nothing else
+			int changed = 0;
+			for (long remaining = locations; remaining != 0; remaining &= remaining - 1) {
+				int cell = cells[Long.numberOfTrailingZeros(remaining)];
+				if ((grid.getCandidates(cell) & ~values) != 0) {
+					changed++;
+					if (!grid.eliminate(cell, ~values)) {
+						return DEAD_END;
+					}
+				}
+			}
+			
+			return changed;
+		}
+		
+		for (int member = start; member < memberCount; member++) {
+			int value = members[member];
+			int result = PropagationStage.findHiddenSubset(grid, cells, places, members, memberCount, size,
+					member + 1, chosen + 1, values | 1L << value, locations | places[value]);
+			if (result != 0) {
+				return result;
+			}
+		}
+		
+		return 0;
+	}
+	
+	/**
+	 * For each value whose places in the unit all lie in one other unit,
+	 * removes it from the rest of that other unit.  Boxes are checked against
+	 * rows and columns or rows and columns against boxes.
+	 * 
+	 * @param grid
+	 * @param unit
+	 * @param isBox whether the unit is a box
+	 * @return the number of locations changed or DEAD_END
+	 */
+	private static int eliminateIntersections(CandidateGrid grid, int unit, boolean isBox) {
+		SudokuGeometry geometry = grid.getGeometry();
+		int[] cells = geometry.getUnitCells(unit);
+		int changed = 0;
+		for (int value = 0; value < geometry.getSize(); value++) {
+			long valueMask = 1L << value;
+			int first = -1;
+			boolean sameRow = true;
+			boolean sameColumn = true;
+			boolean sameBox = true;
+			for (int cell : cells) {
+				if (grid.isBlank(cell) && (grid.getCandidates(cell) & valueMask) != 0) {
+					if (first < 0) {
+						first = cell;
+					} else {
+						sameRow &= geometry.getRow(cell) == geometry.getRow(first);
+						sameColumn &= geometry.getColumn(cell) == geometry.getColumn(first);
+						sameBox &= geometry.getBox(cell) == geometry.getBox(first);
+					}
+				}
+			}
+			if (first < 0) {
+				continue;
+			}
+			
+			int target = -1;
+			if (isBox && sameRow) {
+				target = geometry.getRowUnit(first);
+			} else if (isBox && sameColumn) {
+				target = geometry.getColumnUnit(first);
+			} else if (!isBox && sameBox) {
+				target = geometry.getBoxUnit(first);
+			}
+			if (target < 0) {
+				continue;
+			}
+			
+			for (int cell : geometry.getUnitCells(target)) {
+				boolean inUnit = isBox ? geometry.getBox(cell) == geometry.getBox(first) :
+						(unit < geometry.getSize() ? geometry.getRow(cell) == geometry.getRow(first) :
+								geometry.getColumn(cell) == geometry.getColumn(first));
+				if (!inUnit && grid.isBlank(cell) && (grid.getCandidates(cell) & valueMask) != 0) {
+					changed++;
+					if (!grid.eliminate(cell, valueMask)) {
+						return DEAD_END;
+					}
+				}
+			}
+		}
+		
+		return changed;
+	}
+}
@@ -0,0 +1,118 @@
+package ian.phillip.norton.sudoku.solver;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import ian.phillip.norton.sudoku.board.PackedSudokuBoard;
+
+/**
+ * A bounded cache of solutions keyed on canonical forms, so a puzzle solved
+ * once is recognised again however it is relabelled, reordered, or
+ * transposed.  Solutions are stored in the canonical arrangement of their
+ * puzzle.  Puzzles with no solution are remembered too.
+ * 
+ * Once full the least recently used entry is evicted.  Hits, misses, and
+ * evictions are counted.  All methods are synchronized so one cache may be
+ * shared between solvers on different threads.
+ * 
+ * @author Ian Norton
+ * 
+ */
+public class SolutionCache {
+	/**
+	 * Stored for puzzles found to have no solution
+	 */
+	static final PackedSudokuBoard NO_SOLUTION = new PackedSudokuBoard();
+	
+	private final int capacity;
+	private final Map<String, PackedSudokuBoard> entries;
+	private long hits;
+	private long misses;
+	private long evictions;
+	
+	/**
+	 * Creates a cache holding up to capacity solutions
+	 * 
+	 * @param capacity
+	 */
+	public SolutionCache(int capacity) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("Capacity must be at least 1, not " + capacity);
+		}
+		
+		this.capacity = capacity;
+		this.entries = new LinkedHashMap<String, PackedSudokuBoard>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+			
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, PackedSudokuBoard> eldest) {
+				if (this.size() > SolutionCache.this.capacity) {
+					SolutionCache.this.evictions++;
+					return true;
+				}
+				
+				return false;
+			}
+		};
+	}
+	
+	/**
+	 * Gets the cached solution of a puzzle, counting a hit or a miss and
+	 * marking the entry as recently used
+	 * 
+	 * @param key the canonical form of the puzzle
+	 * @return the solution in canonical arrangement, NO_SOLUTION if the
+	 * puzzle has none, or null if the puzzle is not cached
+	 */
+	synchronized PackedSudokuBoard get(String key) {
+		PackedSudokuBoard solution = this.entries.get(key);
+		if (solution == null) {
+			this.misses++;
+		} else {
+			this.hits++;
+		}
+		
+		return solution;
+	}
+	
+	/**
+	 * Stores the solution of a puzzle
+	 * 
+	 * @param key the canonical form of the puzzle
+	 * @param solution the solution in canonical arrangement, or null if the
+	 * puzzle has no solution
+	 */
+	synchronized void put(String key, PackedSudokuBoard solution) {
+		this.entries.put(key, solution == null ? NO_SOLUTION : solution);
+	}
+	
+	public int getCapacity() {
+		return this.capacity;
+	}
+	
+	public synchronized int size() {
+		return this.entries.size();
+	}
+	
+	public synchronized long getHits() {
+		return this.hits;
+	}
+	
+	public synchronized long getMisses() {
+		return this.misses;
+	}
+	
+	public synchronized long getEvictions() {
+		return this.evictions;
+	}
+	
+	/**
+	 * Removes every entry and resets the counters
+	 */
+	public synchronized void clear() {
+		this.entries.clear();
+		this.hits = 0;
+		this.misses = 0;
+		this.evictions = 0;
+	}
+}
@@ -0,0 +1,16 @@
+package ian.phillip.norton.sudoku.solver;
+
+import ian.phillip.norton.sudoku.board.SudokuBoard;
+import ian.phillip.norton.sudoku.exceptions.InvalidBoardTypeException;
+
+/**
+ * Counts how many solutions a board has.  Searching stops as soon as the
+ * limit is reached so asking whether a board has a unique solution only
+ * needs a limit of 2.
+ * 
+ * @author Ian Norton
+ * 
+ */
+public interface SolutionCounter {
+	public int countSolutions(SudokuBoard board, int limit) throws InvalidBoardTypeException;
+}
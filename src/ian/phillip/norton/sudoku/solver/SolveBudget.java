@@ -0,0 +1,85 @@
+package ian.phillip.norton.sudoku.solver;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits on how much work a single solve may do: a time limit, a maximum
+ * number of search nodes, and a token to cancel it.  A solve going over
+ * budget stops and throws a SolveBudgetExceededException rather than
+ * returning a board or null.
+ * 
+ * The time limit runs from the start of each solve so one budget can be
+ * used for many.  Limits are checked every few nodes, so a solve may run a
+ * little over them.
+ * 
+ * @author Ian Norton
+ * 
+ */
+public class SolveBudget {
+	/**
+	 * Budget without any limits
+	 */
+	public static final SolveBudget UNLIMITED = new SolveBudget(0, 0, null);
+	
+	private final long timeLimitNanos;
+	private final long maxNodes;
+	private final CancellationToken cancellation;
+	
+	/**
+	 * Creates a budget
+	 * 
+	 * @param timeLimitMillis how long each solve may take, 0 for no limit
+	 * @param maxNodes how many search nodes each solve may visit, 0 for no
+	 * limit
+	 * @param cancellation token to cancel solves with, or null
+	 */
+	public SolveBudget(long timeLimitMillis, long maxNodes, CancellationToken cancellation) {
+		if (timeLimitMillis < 0 || maxNodes < 0) {
+			throw new IllegalArgumentException("Budget limits may not be negative");
+		}
+		
+		this.timeLimitNanos = TimeUnit.MILLISECONDS.toNanos(timeLimitMillis);
+		this.maxNodes = maxNodes;
+		this.cancellation = cancellation;
+	}
+	
+	/**
+	 * Gets the time each solve may take
+	 * 
+	 * @return the limit in milliseconds, 0 if there is none
+	 */
+	public long getTimeLimitMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(this.timeLimitNanos);
+	}
+	
+	/**
+	 * Gets how many search nodes each solve may visit
+	 * 
+	 * @return the limit, 0 if there is none
+	 */
+	public long getMaxNodes() {
+		return this.maxNodes;
+	}
+	
+	public CancellationToken getCancellation() {
+		return this.cancellation;
+	}
+	
+	public boolean isUnlimited() {
+		return this.timeLimitNanos == 0 && this.maxNodes == 0 && this.cancellation == null;
+	}
+	
+	/**
+	 * Starts tracking the budget of one solve
+	 * 
+	 * @return the tracker or null if there are no limits to track
+	 */
+	BudgetTracker start() {
+		if (this.isUnlimited()) {
+			return null;
+		}
+		
+		return new BudgetTracker(this.timeLimitNanos == 0 ? 0 : System.nanoTime() + this.timeLimitNanos, this.maxNodes,
+				this.cancellation);
+	}
+}
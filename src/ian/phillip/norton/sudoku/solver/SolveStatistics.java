@@ -0,0 +1,138 @@
+package ian.phillip.norton.sudoku.solver;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Counts of the work done by one solve, for finding out why a puzzle was
+ * slow.  Only created when a SolveStatisticsListener is set on the solver,
+ * otherwise the search keeps no counts at all.
+ * 
+ * The counts of a parallel search are the totals over all of its branches.
+ * CPU time is only that of the thread which started the solve, and is -1 if
+ * the JVM cannot measure it.
+ * 
+ * @author Ian Norton
+ * 
+ */
+public class SolveStatistics {
+	private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+	
+	long nodes;
+	long guesses;
+	long backtracks;
+	int maxDepth;
+	long singlesPlaced;
+	long validityChecks;
+	private long startNanos;
+	private long startCpuNanos;
+	private long wallNanos;
+	private long cpuNanos = -1;
+	
+	/**
+	 * Records the time the solve started
+	 */
+	void start() {
+		this.startCpuNanos = SolveStatistics.currentThreadCpuTime();
+		this.startNanos = System.nanoTime();
+	}
+	
+	/**
+	 * Records the time taken since start was called
+	 */
+	void stop() {
+		this.wallNanos = System.nanoTime() - this.startNanos;
+		long cpuTime = SolveStatistics.currentThreadCpuTime();
+		this.cpuNanos = cpuTime < 0 || this.startCpuNanos < 0 ? -1 : cpuTime - this.startCpuNanos;
+	}
+	
+	/**
+	 * Adds the counts of a branch of a parallel search
+	 * 
+	 * @param branch
+	 */
+	void add(SolveStatistics branch) {
+		this.nodes += branch.nodes;
+		this.guesses += branch.guesses;
+		this.backtracks += branch.backtracks;
+		this.maxDepth = Math.max(this.maxDepth, branch.maxDepth);
+		this.singlesPlaced += branch.singlesPlaced;
+		this.validityChecks += branch.validityChecks;
+	}
+	
+	private static long currentThreadCpuTime() {
+		return THREADS.isCurrentThreadCpuTimeSupported() ? THREADS.getCurrentThreadCpuTime() : -1;
+	}
+	
+	/**
+	 * Gets the number of search nodes visited, one for the start and one for
+	 * every guess
+	 * 
+	 * @return
+	 */
+	public long getNodes() {
+		return this.nodes;
+	}
+	
+	/**
+	 * Gets the number of values guessed at locations with more than one
+	 * candidate
+	 * 
+	 * @return
+	 */
+	public long getGuesses() {
+		return this.guesses;
+	}
+	
+	/**
+	 * Gets the number of guesses which led to a dead end and were undone
+	 * 
+	 * @return
+	 */
+	public long getBacktracks() {
+		return this.backtracks;
+	}
+	
+	/**
+	 * Gets the most guesses in force at once
+	 * 
+	 * @return
+	 */
+	public int getMaxDepth() {
+		return this.maxDepth;
+	}
+	
+	/**
+	 * Gets the number of values placed at locations with only one candidate
+	 * 
+	 * @return
+	 */
+	public long getSinglesPlaced() {
+		return this.singlesPlaced;
+	}
+	
+	/**
+	 * Gets the number of times the candidates of a blank location were
+	 * checked
+	 * 
+	 * @return
+	 */
+	public long getValidityChecks() {
+		return this.validityChecks;
+	}
+	
+	public long getWallNanos() {
+		return this.wallNanos;
+	}
+	
+	public long getCpuNanos() {
+		return this.cpuNanos;
+	}
+	
+	@Override
+	public String toString() {
+		return "nodes " + this.nodes + ", guesses " + this.guesses + ", backtracks " + this.backtracks +
+				", max depth " + this.maxDepth + ", singles " + this.singlesPlaced + ", checks " + this.validityChecks +
+				", wall " + this.wallNanos / 1000 + "us, cpu " + (this.cpuNanos < 0 ? "n/a" : this.cpuNanos / 1000 + "us");
+	}
+}
@@ -0,0 +1,14 @@
+package ian.phillip.norton.sudoku.solver;
+
+import ian.phillip.norton.sudoku.board.SudokuBoard;
+
+/**
+ * Receives the statistics of every solve made by a solver it is set on.
+ * Called on the thread which made the solve, once the search has finished.
+ * 
+ * @author Ian Norton
+ * 
+ */
+public interface SolveStatisticsListener {
+	public void solved(SudokuBoard board, SolveStatistics statistics);
+}
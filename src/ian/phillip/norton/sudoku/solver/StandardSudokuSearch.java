@@ -0,0 +1,520 @@
+package ian.phillip.norton.sudoku.solver;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import ian.phillip.norton.sudoku.board.PackedSudokuBoard;
+import ian.phillip.norton.sudoku.board.SudokuGeometry;
+
+/**
+ * Backtracking search over a single standard board which is changed in
+ * place.  Every value placed is logged on a trail so backtracking is just
+ * unwinding the trail back to an earlier mark, and no board or candidate
+ * state is copied per branch.
+ * 
+ * The values still needed by each row, column, and subgrid are kept as 9 bit
+ * masks where bit (value - 1) is set if the value is still needed.  The
+ * candidates for a location are then the AND of its three masks, less any
+ * values propagation has ruled out for that location.
+ * 
+ * When no location has a single candidate the propagation pipeline is run
+ * before guessing.  Its placements and eliminations go on the trail too.
+ * 
+ * When given a parallel depth the branches near the top of the search are
+ * explored as fork/join tasks, each on its own copy of the search made at the
+ * fork.  Such a search must be run inside a ForkJoinPool.  Below the fork
+ * points nothing is copied.
+ * 
+ * When given SolveStatistics the work done is counted in them.  Without,
+ * nothing is counted beyond a null check at each node.  Likewise a
+ * BudgetTracker is only consulted when given, and then only every few nodes.
+ * A search over budget unwinds as if every branch failed.
+ * 
+ * A search is not safe to share between threads.
+ * 
+ * @author Ian Norton
+ * 
+ */
+class StandardSudokuSearch implements CandidateGrid {
+	private static final SudokuGeometry GEOMETRY = SudokuGeometry.forBoxSize(PackedSudokuBoard.SUBGRID_SIZE);
+	private static final int BOARD_SIZE = PackedSudokuBoard.BOARD_SIZE;
+	private static final int CELL_COUNT = PackedSudokuBoard.CELL_COUNT;
+	/**
+	 * Mask with a bit set for each of the values 1-9
+	 */
+	private static final int ALL_VALUES = (1 << BOARD_SIZE) - 1;
+	/**
+	 * Branches with fewer blank locations than this are always searched
+	 * sequentially since they finish faster than a task can be scheduled
+	 */
+	private static final int PARALLEL_MIN_BLANKS = 30;
+	
+	/**
+	 * Row, column, and subgrid of each row major cell index
+	 */
+	private static final int[] ROW_OF = new int[CELL_COUNT];
+	private static final int[] COLUMN_OF = new int[CELL_COUNT];
+	private static final int[] SUBGRID_OF = new int[CELL_COUNT];
+	
+	static {
+		for (int cell = 0; cell < CELL_COUNT; cell++) {
+			ROW_OF[cell] = cell / BOARD_SIZE;
+			COLUMN_OF[cell] = cell % BOARD_SIZE;
+			SUBGRID_OF[cell] = PackedSudokuBoard.getSubgridIndex(ROW_OF[cell], COLUMN_OF[cell]);
+		}
+	}
+	
+	private final PackedSudokuBoard board;
+	private final int[] rowsNeed = new int[BOARD_SIZE];
+	private final int[] columnsNeed = new int[BOARD_SIZE];
+	private final int[] subgridsNeed = new int[BOARD_SIZE];
+	/**
+	 * Values ruled out for each location by propagation
+	 */
+	private final int[] eliminated = new int[CELL_COUNT];
+	/**
+	 * Cell indexes in the order they were changed.  Placements are logged
+	 * with a mask of 0, eliminations with the values eliminated.  Each value
+	 * of each location can only be eliminated once on a path through the
+	 * search, plus one entry per placement.
+	 */
+	private final int[] trail = new int[CELL_COUNT * (BOARD_SIZE + 1)];
+	private final int[] trailMasks = new int[CELL_COUNT * (BOARD_SIZE + 1)];
+	private int trailSize;
+	
+	private final PropagationPipeline propagation;
+	private final int parallelDepth;
+	/**
+	 * Set once any parallel branch finds a solution, null when searching
+	 * sequentially
+	 */
+	private final AtomicBoolean solutionFound;
+	/**
+	 * Where the work done is counted, null to not count it
+	 */
+	private final SolveStatistics statistics;
+	/**
+	 * The budget to report nodes to, null when there are no limits
+	 */
+	private final BudgetTracker budget;
+	private int unreportedNodes;
+	private boolean overBudget;
+	
+	private int solutionLimit;
+	private int solutionCount;
+	private PackedSudokuBoard firstSolution;
+	
+	/**
+	 * Creates a sequential search over a copy of the given board
+	 * 
+	 * @param board
+	 */
+	StandardSudokuSearch(PackedSudokuBoard board) {
+		this(board, PropagationPipeline.NONE, 0, null, null);
+	}
+	
+	/**
+	 * Creates a search over a copy of the given board which forks branches
+	 * until the given number of guesses deep
+	 * 
+	 * @param board
+	 * @param propagation the stages to run before each guess
+	 * @param parallelDepth how many levels of guesses are split into tasks, 0
+	 * to search sequentially
+	 * @param statistics where to count the work done, null to not count it
+	 * @param budget the budget to stop at, null for none
+	 */
+	StandardSudokuSearch(PackedSudokuBoard board, PropagationPipeline propagation, int parallelDepth,
+			SolveStatistics statistics, BudgetTracker budget) {
+		this.board = new PackedSudokuBoard(board);
+		this.propagation = propagation;
+		this.parallelDepth = parallelDepth;
+		this.solutionFound = parallelDepth > 0 ? new AtomicBoolean() : null;
+		this.statistics = statistics;
+		this.budget = budget;
+		for (int index = 0; index < BOARD_SIZE; index++) {
+			this.rowsNeed[index] = ALL_VALUES;
+			this.columnsNeed[index] = ALL_VALUES;
+			this.subgridsNeed[index] = ALL_VALUES;
+		}
+		for (int cell = 0; cell < CELL_COUNT; cell++) {
+			int valueMask = ~StandardSudokuSearch.valueMask(this.board.getCell(cell));
+			this.rowsNeed[ROW_OF[cell]] &= valueMask;
+			this.columnsNeed[COLUMN_OF[cell]] &= valueMask;
+			this.subgridsNeed[SUBGRID_OF[cell]] &= valueMask;
+		}
+	}
+	
+	/**
+	 * Creates a copy of a parallel search at a fork point to explore one
+	 * branch.  The copy counts its work separately so branches do not
+	 * contend, to be added to the parent's counts once it finishes.
+	 * 
+	 * @param parent
+	 */
+	private StandardSudokuSearch(StandardSudokuSearch parent) {
+		this.board = new PackedSudokuBoard(parent.board);
+		System.arraycopy(parent.rowsNeed, 0, this.rowsNeed, 0, BOARD_SIZE);
+		System.arraycopy(parent.columnsNeed, 0, this.columnsNeed, 0, BOARD_SIZE);
+		System.arraycopy(parent.subgridsNeed, 0, this.subgridsNeed, 0, BOARD_SIZE);
+		System.arraycopy(parent.eliminated, 0, this.eliminated, 0, CELL_COUNT);
+		this.propagation = parent.propagation;
+		this.parallelDepth = parent.parallelDepth;
+		this.solutionFound = parent.solutionFound;
+		this.solutionLimit = parent.solutionLimit;
+		this.statistics = parent.statistics == null ? null : new SolveStatistics();
+		this.budget = parent.budget;
+	}
+	
+	/**
+	 * Searches for the first solution
+	 * 
+	 * @return the solution or null if there is none
+	 */
+	PackedSudokuBoard solve() {
+		this.countSolutions(1);
+		
+		return this.firstSolution;
+	}
+	
+	/**
+	 * Searches for solutions until the limit is reached or there are no more.
+	 * A parallel search stops at the first solution whatever the limit.
+	 * 
+	 * @param limit the number of solutions after which to stop
+	 * @return the number of solutions found, at most limit
+	 */
+	int countSolutions(int limit) {
+		this.solutionLimit = this.solutionFound != null ? 1 : limit;
+		this.solutionCount = 0;
+		this.firstSolution = null;
+		
+		if (this.board.isValid()) {
+			this.search(0);
+		}
+		
+		return this.solutionCount;
+	}
+	
+	/**
+	 * Gets the first solution found by the last search
+	 * 
+	 * @return the solution or null if none was found
+	 */
+	PackedSudokuBoard getFirstSolution() {
+		return this.firstSolution;
+	}
+	
+	/**
+	 * Fills every location with only one candidate, repeating until there are
+	 * none, then branches on the location with the fewest candidates trying
+	 * each value lowest first.  The board is left as it was found unless the
+	 * search stops.
+	 * 
+	 * @param depth the number of guesses made so far
+	 * @return true once the solution limit has been reached
+	 */
+	private boolean search(int depth) {
+		if (this.budget != null && this.isOverBudget()) {
+			return false;
+		}
+		if (this.statistics != null) {
+			this.statistics.nodes++;
+			this.statistics.maxDepth = Math.max(this.statistics.maxDepth, depth);
+		}
+		
+		int mark = this.trailSize;
+		while (true) {
+			if (this.solutionFound != null && this.solutionFound.get()) {
+				// another branch already solved it
+				this.undo(mark);
+				return false;
+			} else if (this.board.getFilledCount() == CELL_COUNT) {
+				return this.recordSolution(mark);
+			}
+			
+			boolean branch = true;
+			int branchValues = 0;
+			int branchCell = 0;
+			// counted locally so the loop does not touch the statistics
+			int checks = 0;
+			int singles = 0;
+			
+			for (int cell = 0; cell < CELL_COUNT; cell++) {
+				if (this.board.getCell(cell) == PackedSudokuBoard.BLANK) {
+					int validValues = this.candidates(cell);
+					int validCount = Integer.bitCount(validValues);
+					checks++;
+					
+					if (validCount == 0) {
+						// with no valid values this branch is unsolvable
+						this.countPass(checks, singles);
+						this.undo(mark);
+						return false;
+					} else if (validCount == 1) {
+						// with only one valid value we must use this one
+						this.place(cell, validValues);
+						singles++;
+						
+						// we only want to branch when a pass could not
+						// set anything by single value possibilities
+						branch = false;
+					} else if (branch && (branchValues == 0 || validCount < Integer.bitCount(branchValues))) {
+						// prefer the branch with the smallest possibility space
+						branchValues = validValues;
+						branchCell = cell;
+					}
+				}
+			}
+			this.countPass(checks, singles);
+			
+			if (branch && !this.propagation.isEmpty()) {
+				int deductions = this.propagation.propagate(this);
+				if (deductions == PropagationStage.DEAD_END) {
+					this.undo(mark);
+					return false;
+				} else if (deductions > 0) {
+					// look for naked singles again before guessing
+					continue;
+				}
+			}
+			
+			if (branch && depth < this.parallelDepth && CELL_COUNT - this.board.getFilledCount() >= PARALLEL_MIN_BLANKS) {
+				PackedSudokuBoard solved = this.searchBranchesInParallel(branchCell, branchValues, depth);
+				this.undo(mark);
+				if (solved == null) {
+					return false;
+				}
+				
+				this.solutionCount++;
+				this.firstSolution = solved;
+				return true;
+			} else if (branch) {
+				// check each branch, lowest value first
+				for (int remaining = branchValues; remaining != 0; remaining &= remaining - 1) {
+					int branchMark = this.trailSize;
+					this.place(branchCell, remaining & -remaining);
+					if (this.statistics != null) {
+						this.statistics.guesses++;
+					}
+					if (this.search(depth + 1)) {
+						return true;
+					}
+					if (this.statistics != null) {
+						this.statistics.backtracks++;
+					}
+					this.undo(branchMark);
+				}
+				
+				this.undo(mark);
+				return false;
+			}
+		}
+	}
+	
+	/**
+	 * Forks a task for each branch value, each searching its own copy of this
+	 * search, and waits for them all.  The first task to find a solution flags
+	 * it so the rest give up early.
+	 * 
+	 * @param cell the location to branch on
+	 * @param branchValues mask of the values to try
+	 * @param depth
+	 * @return the solution from the lowest branch value which found one or
+	 * null if none did
+	 */
+	private PackedSudokuBoard searchBranchesInParallel(int cell, int branchValues, int depth) {
+		List<RecursiveTask<PackedSudokuBoard>> tasks = new ArrayList<RecursiveTask<PackedSudokuBoard>>();
+		List<StandardSudokuSearch> branchSearches = new ArrayList<StandardSudokuSearch>();
+		for (int remaining = branchValues; remaining != 0; remaining &= remaining - 1) {
+			StandardSudokuSearch branchSearch = new StandardSudokuSearch(this);
+			branchSearch.place(cell, remaining & -remaining);
+			branchSearches.add(branchSearch);
+			
+			RecursiveTask<PackedSudokuBoard> task = new RecursiveTask<PackedSudokuBoard>() {
+				private static final long serialVersionUID = 1L;
+				
+				@Override
+				protected PackedSudokuBoard compute() {
+					if (!branchSearch.search(depth + 1)) {
+						return null;
+					}
+					
+					branchSearch.solutionFound.set(true);
+					return branchSearch.firstSolution;
+				}
+			};
+			tasks.add(task);
+		}
+		
+		// run the first branch on this thread and leave the rest to be stolen
+		for (int index = tasks.size() - 1; index > 0; index--) {
+			tasks.get(index).fork();
+		}
+		PackedSudokuBoard solved = tasks.get(0).invoke();
+		for (int index = 1; index < tasks.size(); index++) {
+			PackedSudokuBoard branchSolved = tasks.get(index).join();
+			if (solved == null) {
+				solved = branchSolved;
+			}
+		}
+		
+		if (this.statistics != null) {
+			for (int index = 0; index < tasks.size(); index++) {
+				this.statistics.add(branchSearches.get(index).statistics);
+				this.statistics.guesses++;
+				if (tasks.get(index).getRawResult() == null) {
+					this.statistics.backtracks++;
+				}
+			}
+		}
+		
+		return solved;
+	}
+	
+	/**
+	 * Counts a node against the budget, reporting to the tracker once every
+	 * check interval
+	 * 
+	 * @return true if the budget has been exceeded
+	 */
+	private boolean isOverBudget() {
+		if (!this.overBudget && ++this.unreportedNodes >= this.budget.getCheckInterval()) {
+			this.overBudget = this.budget.report(this.unreportedNodes);
+			this.unreportedNodes = 0;
+		}
+		
+		return this.overBudget;
+	}
+	
+	/**
+	 * Adds the counts from one pass over the board to the statistics, if
+	 * they are being kept
+	 * 
+	 * @param checks locations whose candidates were checked
+	 * @param singles locations filled as naked singles
+	 */
+	private void countPass(int checks, int singles) {
+		if (this.statistics != null) {
+			this.statistics.validityChecks += checks;
+			this.statistics.singlesPlaced += singles;
+		}
+	}
+	
+	/**
+	 * Counts the filled board as a solution, keeping a copy if it is the
+	 * first
+	 * 
+	 * @param mark the trail mark to unwind to if the search continues
+	 * @return true once the solution limit has been reached
+	 */
+	private boolean recordSolution(int mark) {
+		if (this.solutionCount++ == 0) {
+			this.firstSolution = new PackedSudokuBoard(this.board);
+		}
+		if (this.solutionCount >= this.solutionLimit) {
+			return true;
+		}
+		
+		this.undo(mark);
+		return false;
+	}
+	
+	/**
+	 * Gets the mask of values which may be placed at a blank location
+	 * 
+	 * @param cell
+	 * @return
+	 */
+	private int candidates(int cell) {
+		return this.rowsNeed[ROW_OF[cell]] & this.columnsNeed[COLUMN_OF[cell]] & this.subgridsNeed[SUBGRID_OF[cell]] &
+				~this.eliminated[cell];
+	}
+	
+	@Override
+	public SudokuGeometry getGeometry() {
+		return GEOMETRY;
+	}
+	
+	@Override
+	public boolean isBlank(int cell) {
+		return this.board.getCell(cell) == PackedSudokuBoard.BLANK;
+	}
+	
+	@Override
+	public long getCandidates(int cell) {
+		int value = this.board.getCell(cell);
+		
+		return value == PackedSudokuBoard.BLANK ? this.candidates(cell) : StandardSudokuSearch.valueMask(value);
+	}
+	
+	@Override
+	public boolean eliminate(int cell, long valueMask) {
+		int removed = this.candidates(cell) & (int) valueMask;
+		if (removed != 0) {
+			this.eliminated[cell] |= removed;
+			this.trail[this.trailSize] = cell;
+			this.trailMasks[this.trailSize++] = removed;
+		}
+		
+		return this.candidates(cell) != 0;
+	}
+	
+	@Override
+	public boolean place(int cell, long valueMask) {
+		// a location left without candidates is found by the next pass
+		this.place(cell, (int) valueMask);
+		
+		return true;
+	}
+	
+	/**
+	 * Places a value, updating the needed values and logging it on the trail
+	 * 
+	 * @param cell
+	 * @param valueMask the mask bit of the value to place
+	 */
+	private void place(int cell, int valueMask) {
+		this.rowsNeed[ROW_OF[cell]] &= ~valueMask;
+		this.columnsNeed[COLUMN_OF[cell]] &= ~valueMask;
+		this.subgridsNeed[SUBGRID_OF[cell]] &= ~valueMask;
+		this.board.setCell(cell, Integer.numberOfTrailingZeros(valueMask) + 1);
+		this.trail[this.trailSize] = cell;
+		this.trailMasks[this.trailSize++] = 0;
+	}
+	
+	/**
+	 * Blanks every location placed since the trail mark, restoring the
+	 * values they took back to the needed values, and restores every value
+	 * eliminated since the mark
+	 * 
+	 * @param mark
+	 */
+	private void undo(int mark) {
+		while (this.trailSize > mark) {
+			int cell = this.trail[--this.trailSize];
+			if (this.trailMasks[this.trailSize] != 0) {
+				this.eliminated[cell] &= ~this.trailMasks[this.trailSize];
+				continue;
+			}
+			
+			int valueMask = StandardSudokuSearch.valueMask(this.board.getCell(cell));
+			this.rowsNeed[ROW_OF[cell]] |= valueMask;
+			this.columnsNeed[COLUMN_OF[cell]] |= valueMask;
+			this.subgridsNeed[SUBGRID_OF[cell]] |= valueMask;
+			this.board.setCell(cell, PackedSudokuBoard.BLANK);
+		}
+	}
+	
+	/**
+	 * Gets the mask bit representing the given value
+	 * 
+	 * @param value a value 1-9 or 0 for a blank which has no bit
+	 * @return
+	 */
+	private static int valueMask(int value) {
+		return (1 << value) >>> 1;
+	}
+}
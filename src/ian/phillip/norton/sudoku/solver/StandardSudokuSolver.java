@@ -1,30 +1,84 @@
 package ian.phillip.norton.sudoku.solver;
 
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.HashSet;
-import java.util.List;
-import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 
+import ian.phillip.norton.sudoku.board.PackedSudokuBoard;
 import ian.phillip.norton.sudoku.board.StandardSudokuBoard;
 import ian.phillip.norton.sudoku.board.SudokuBoard;
 import ian.phillip.norton.sudoku.exceptions.InvalidBoardTypeException;
+import ian.phillip.norton.sudoku.exceptions.SolveBudgetExceededException;
 
 /**
  * Solves standard 9x9 sudoku boards
  * 
+ * The search is done by a StandardSudokuSearch on PackedSudokuBoards.  It
+ * fills in every location with a single candidate, then guesses at the
+ * location with the fewest, backtracking in place rather than copying the
+ * board for each guess.
+ * 
+ * A propagation pipeline may be given to make logical deductions before
+ * each guess.  By default there is none, so only naked singles are placed.
+ * 
+ * When given a ForkJoinPool the branches near the top of the search, where
+ * the subtrees are largest, are explored as parallel tasks.  As soon as one
+ * branch finds a solution the others stop.
+ * 
+ * Solves and counts may be given a SolveBudget limiting their time and
+ * search nodes or letting them be cancelled.  One which goes over budget
+ * throws a SolveBudgetExceededException.
+ * 
+ * With a SolveStatisticsListener set the work done by each solve or count is
+ * measured and passed to the listener.
+ * 
  * @author Ian Norton
- *
+ * 
  */
-public class StandardSudokuSolver implements SudokuSolver {
-	private Set<Integer> possibleValues;
+public class StandardSudokuSolver implements SudokuSolver, SolutionCounter {
+	private final ForkJoinPool pool;
+	private final int parallelDepth;
+	private final PropagationPipeline propagation;
+	private SolveStatisticsListener statisticsListener;
 	
 	public StandardSudokuSolver() {
-		Integer[] valueList = {1,2,3,4,5,6,7,8,9};
-		possibleValues = new HashSet<Integer>();
-		possibleValues.addAll(Arrays.asList(valueList));
+		this(null, 0);
+	}
+	
+	/**
+	 * Creates a sequential solver running the given propagation stages
+	 * before each guess
+	 * 
+	 * @param propagation
+	 */
+	public StandardSudokuSolver(PropagationPipeline propagation) {
+		this(null, 0, propagation);
+	}
+	
+	/**
+	 * Creates a solver which searches branches in parallel on the given pool
+	 * until the given number of guesses deep
+	 * 
+	 * @param pool the pool to run branches on or null to search sequentially
+	 * @param parallelDepth how many levels of guesses are split into tasks
+	 */
+	public StandardSudokuSolver(ForkJoinPool pool, int parallelDepth) {
+		this(pool, parallelDepth, PropagationPipeline.NONE);
 	}
 	
+	/**
+	 * Creates a solver which searches branches in parallel on the given pool
+	 * until the given number of guesses deep, running the given propagation
+	 * stages before each guess
+	 * 
+	 * @param pool the pool to run branches on or null to search sequentially
+	 * @param parallelDepth how many levels of guesses are split into tasks
+	 * @param propagation
+	 */
+	public StandardSudokuSolver(ForkJoinPool pool, int parallelDepth, PropagationPipeline propagation) {
+		this.pool = pool;
+		this.parallelDepth = pool == null ? 0 : parallelDepth;
+		this.propagation = propagation;
+	}
+
 	/**
 	 * Attempts to solve the board.  Will throw an exception if the board
 	 * is not a type this solver handles
@@ -35,6 +89,8 @@ public class StandardSudokuSolver implements SudokuSolver {
 	public SudokuBoard solve(SudokuBoard board) throws InvalidBoardTypeException {
 		if (board instanceof StandardSudokuBoard) {
 			return this.solve((StandardSudokuBoard) board);
+		} else if (board instanceof PackedSudokuBoard) {
+			return this.solve((PackedSudokuBoard) board);
 		} else {
 			throw new InvalidBoardTypeException("Solver only handles standard boards");
 		}
@@ -47,181 +103,248 @@ public class StandardSudokuSolver implements SudokuSolver {
 	 * @return the solved sudoku board or null if no solution exists
 	 */
 	public StandardSudokuBoard solve(StandardSudokuBoard board) {
-		return this.solveRecursive(board, this.getRowsNeed(board), this.getColumnsNeed(board), this.getSubgridsNeed(board));
+		PackedSudokuBoard solved = this.solve(new PackedSudokuBoard(board));
+		return solved == null ? null : solved.toStandardBoard();
+	}
+	
+	/**
+	 * Attempts to solve the given packed sudoku board.
+	 * 
+	 * @param board the board to solve
+	 * @return the solved sudoku board or null if no solution exists
+	 */
+	public PackedSudokuBoard solve(PackedSudokuBoard board) {
+		return this.solve(board, (BudgetTracker) null);
+	}
+	
+	/**
+	 * Attempts to solve the board within a budget.  Will throw an exception
+	 * if the board is not a type this solver handles
+	 * 
+	 * @param board the board to solve
+	 * @param budget
+	 * @return the solved sudoku board or null if no solution exists
+	 * @throws SolveBudgetExceededException if the budget ran out before a
+	 * solution was found or the search was finished
+	 */
+	public SudokuBoard solve(SudokuBoard board, SolveBudget budget)
+			throws InvalidBoardTypeException, SolveBudgetExceededException {
+		if (board instanceof StandardSudokuBoard) {
+			PackedSudokuBoard solved = this.solve(new PackedSudokuBoard((StandardSudokuBoard) board), budget);
+			return solved == null ? null : solved.toStandardBoard();
+		} else if (board instanceof PackedSudokuBoard) {
+			return this.solve((PackedSudokuBoard) board, budget);
+		} else {
+			throw new InvalidBoardTypeException("Solver only handles standard boards");
+		}
 	}
 	
-	private List<Set<Integer>> deepCopyListofSets(List<Set<Integer>> list) {
-		List<Set<Integer>> copy = new ArrayList<Set<Integer>>(list.size());
-		for (int index = 0; index < list.size(); index++) {
-			copy.add(new HashSet<Integer>(list.get(index)));
+	/**
+	 * Attempts to solve the given packed sudoku board within a budget.
+	 * 
+	 * @param board the board to solve
+	 * @param budget
+	 * @return the solved sudoku board or null if no solution exists
+	 * @throws SolveBudgetExceededException if the budget ran out before a
+	 * solution was found or the search was finished
+	 */
+	public PackedSudokuBoard solve(PackedSudokuBoard board, SolveBudget budget) throws SolveBudgetExceededException {
+		BudgetTracker tracker = budget.start();
+		PackedSudokuBoard solved = this.solve(board, tracker);
+		if (solved == null) {
+			StandardSudokuSolver.checkBudget(tracker);
 		}
 		
-		return copy;
+		return solved;
 	}
 	
 	/**
-	 * Solves the board through a recursive algorithm.  All work is done on
-	 * deep copies of the underlying parameters to avoid unwanted size effects
+	 * Solves a board, giving up if the budget runs out
 	 * 
 	 * @param board
-	 * @param rowsNeed
-	 * @param columnsNeed
-	 * @param subgridsNeed
-	 * @return
+	 * @param tracker the budget or null for none
+	 * @return the solved board or null if there is no solution or the budget
+	 * ran out
 	 */
-	private StandardSudokuBoard solveRecursive(StandardSudokuBoard board, List<Set<Integer>> rowsNeed, List<Set<Integer>> columnsNeed, List<Set<Integer>> subgridsNeed) {
-		StandardSudokuBoard solved = null;
-		// We do not want to mutate the passed in board
-		board = new StandardSudokuBoard(board);
-		while (solved == null) {
-			if (!board.isValid()) {
-				// no solution to an invalid board
-				return null;
-			} else if (board.isComplete()) {
-				solved = board;
-			} else {
-				boolean branch = true;
-				Set<Integer> branchValues = null;
-				Integer branchRow = null;
-				Integer branchColumn = null;
-				Integer branchSubgrid = null;
-				
-				for (int row = 0; row < StandardSudokuBoard.BOARD_SIZE; row++) {
-					for (int column = 0; column < StandardSudokuBoard.BOARD_SIZE; column++) {
-						if (board.getValue(row, column) == null) {
-							int subgrid = StandardSudokuBoard.getSubgridIndex(row, column);
-							// Start with all values possible
-							Set<Integer> validValues = new HashSet<Integer>(this.possibleValues);
-							// Remove values already set in any row, column, or
-							// subgrid this point lies in
-							validValues.retainAll(rowsNeed.get(row));
-							validValues.retainAll(columnsNeed.get(column));
-							validValues.retainAll(subgridsNeed.get(subgrid));
-							
-							if (validValues.size() == 0) {
-								// with no valid values the puzzle is unsolvable
-								return null;
-							} else if (validValues.size() == 1) {
-								// with only one valid value we must use this one
-								this.setValue(board, row, column, subgrid,
-										validValues.iterator().next(), rowsNeed,
-										columnsNeed, subgridsNeed);
-								
-								// we only want to branch when a pass could not
-								// set anything by single value possibilities
-								branch = false;
-							} else if (branch) {
-								// only evaluate this if we might still branch
-								if (branchValues == null || validValues.size() < branchValues.size()) {
-									// if this branch will give a smaller possibility space
-									// than previous branch candidates prefer it
-									branchValues = validValues;
-									branchRow = row;
-									branchColumn = column;
-									branchSubgrid = subgrid;
-								}
-							}
-						}
-					}
-				}
-				
-				if (branch) {
-					// check each branch 
-					for (Integer branchValue : branchValues) {
-						List<Set<Integer>> branchRowsNeed = this.deepCopyListofSets(rowsNeed);
-						List<Set<Integer>> branchColumnsNeed = this.deepCopyListofSets(columnsNeed);
-						List<Set<Integer>> branchSubgridsNeed = this.deepCopyListofSets(subgridsNeed);
-						this.setValue(board, branchRow, branchColumn, branchSubgrid, branchValue,
-								branchRowsNeed, branchColumnsNeed, branchSubgridsNeed);
-						solved = this.solveRecursive(board, branchRowsNeed,
-								branchColumnsNeed,
-								branchSubgridsNeed);
-						if (solved != null) {
-							// no need to continue checking values if we
-							// found a solution
-							break;
-						}
-					}
-					
-					if (solved == null) {
-						return null;
-					}
-				}
-			}
+	private PackedSudokuBoard solve(PackedSudokuBoard board, BudgetTracker tracker) {
+		SolveStatistics statistics = this.startStatistics();
+		StandardSudokuSearch search = new StandardSudokuSearch(board, this.propagation, this.parallelDepth, statistics,
+				tracker);
+		PackedSudokuBoard solved;
+		if (this.parallelDepth > 0) {
+			// forked branches must run inside the pool
+			solved = this.pool.submit(search::solve).join();
+		} else {
+			solved = search.solve();
 		}
+		this.publishStatistics(board, statistics);
 		
 		return solved;
 	}
 	
 	/**
-	 * Sets the value and also updates what values are needed in the corrsponding
-	 * row, column, and subgrid
+	 * Counts the solutions of the board, stopping once limit have been found.
+	 * Will throw an exception if the board is not a type this solver handles
 	 * 
-	 * @param board
-	 * @param row
-	 * @param column
-	 * @param subgrid
-	 * @param value
-	 * @param rowsNeed
-	 * @param columnsNeed
-	 * @param subgridsNeed
+	 * @return the number of solutions found, at most limit
+	 */
+	@Override
+	public int countSolutions(SudokuBoard board, int limit) throws InvalidBoardTypeException {
+		if (board instanceof StandardSudokuBoard) {
+			return this.countSolutions(new PackedSudokuBoard((StandardSudokuBoard) board), limit);
+		} else if (board instanceof PackedSudokuBoard) {
+			return this.countSolutions((PackedSudokuBoard) board, limit);
+		} else {
+			throw new InvalidBoardTypeException("Solver only handles standard boards");
+		}
+	}
+	
+	/**
+	 * Counts the solutions of the given packed board, stopping once limit
+	 * have been found.  The passed in board is not modified.
+	 * 
+	 * @param board the board to check
+	 * @param limit the number of solutions after which to stop, at least 1
+	 * @return the number of solutions found, at most limit
 	 */
-	private void setValue(StandardSudokuBoard board, int row, int column, int subgrid, Integer value,
-			List<Set<Integer>> rowsNeed, List<Set<Integer>> columnsNeed, List<Set<Integer>> subgridsNeed) {
-		rowsNeed.get(row).remove(value);
-		columnsNeed.get(column).remove(value);
-		subgridsNeed.get(subgrid).remove(value);
-		board.setValue(row, column, value);
+	public int countSolutions(PackedSudokuBoard board, int limit) {
+		return this.countSolutions(board, limit, (BudgetTracker) null);
 	}
 	
 	/**
-	 * Returns sets of what values are missing for each column
-	 * @param board
-	 * @return
+	 * Counts the solutions of the board within a budget, stopping once limit
+	 * have been found.  Will throw an exception if the board is not a type
+	 * this solver handles
+	 * 
+	 * @param board the board to check
+	 * @param limit the number of solutions after which to stop, at least 1
+	 * @param budget
+	 * @return the number of solutions found, at most limit
+	 * @throws SolveBudgetExceededException if the budget ran out before the
+	 * count was finished
 	 */
-	private List<Set<Integer>> getColumnsNeed(StandardSudokuBoard board) {
-		List<Set<Integer>> need = new ArrayList<Set<Integer>>();
-		
-		for(int index = 0; index < StandardSudokuBoard.BOARD_SIZE; index++) {
-			Set<Integer> needSet = new HashSet<Integer>(this.possibleValues);
-			needSet.removeAll(board.getColumn(index));
-			need.add(needSet);
+	public int countSolutions(SudokuBoard board, int limit, SolveBudget budget)
+			throws InvalidBoardTypeException, SolveBudgetExceededException {
+		if (board instanceof StandardSudokuBoard) {
+			return this.countSolutions(new PackedSudokuBoard((StandardSudokuBoard) board), limit, budget);
+		} else if (board instanceof PackedSudokuBoard) {
+			return this.countSolutions((PackedSudokuBoard) board, limit, budget);
+		} else {
+			throw new InvalidBoardTypeException("Solver only handles standard boards");
 		}
+	}
+	
+	/**
+	 * Counts the solutions of the given packed board within a budget,
+	 * stopping once limit have been found.  The passed in board is not
+	 * modified.
+	 * 
+	 * @param board the board to check
+	 * @param limit the number of solutions after which to stop, at least 1
+	 * @param budget
+	 * @return the number of solutions found, at most limit
+	 * @throws SolveBudgetExceededException if the budget ran out before the
+	 * count was finished
+	 */
+	public int countSolutions(PackedSudokuBoard board, int limit, SolveBudget budget)
+			throws SolveBudgetExceededException {
+		BudgetTracker tracker = budget.start();
+		int count = this.countSolutions(board, limit, tracker);
+		StandardSudokuSolver.checkBudget(tracker);
 		
-		return need;
+		return count;
 	}
 	
 	/**
-	 * Returns sets of what values are missing for each row
+	 * Counts the solutions of a board, giving up if the budget runs out
+	 * 
 	 * @param board
-	 * @return
+	 * @param limit
+	 * @param tracker the budget or null for none
+	 * @return the number of solutions found before stopping
 	 */
-	private List<Set<Integer>> getRowsNeed(StandardSudokuBoard board) {
-		List<Set<Integer>> need = new ArrayList<Set<Integer>>();
-		
-		for(int index = 0; index < StandardSudokuBoard.BOARD_SIZE; index++) {
-			Set<Integer> needSet = new HashSet<Integer>(this.possibleValues);
-			needSet.removeAll(board.getRow(index));
-			need.add(needSet);
+	private int countSolutions(PackedSudokuBoard board, int limit, BudgetTracker tracker) {
+		if (limit < 1) {
+			throw new IllegalArgumentException("Solution limit must be at least 1");
 		}
 		
-		return need;
+		SolveStatistics statistics = this.startStatistics();
+		int count = new StandardSudokuSearch(board, this.propagation, 0, statistics, tracker).countSolutions(limit);
+		this.publishStatistics(board, statistics);
+		
+		return count;
+	}
+	
+	/**
+	 * Throws if a budget was exceeded
+	 * 
+	 * @param tracker the budget or null for none
+	 * @throws SolveBudgetExceededException
+	 */
+	private static void checkBudget(BudgetTracker tracker) throws SolveBudgetExceededException {
+		if (tracker != null && tracker.getExceeded() != null) {
+			throw new SolveBudgetExceededException("Budget Exceeded: " + tracker.getExceeded());
+		}
 	}
 	
 	/**
-	 * Returns sets of what values are missing for each subgrid
+	 * Checks if the board has exactly one solution.  Stops searching as soon
+	 * as a second solution is found.
+	 * 
 	 * @param board
 	 * @return
 	 */
-	private List<Set<Integer>> getSubgridsNeed(StandardSudokuBoard board) {
-		List<Set<Integer>> need = new ArrayList<Set<Integer>>();
-		
-		for(int index = 0; index < StandardSudokuBoard.BOARD_SIZE; index++) {
-			Set<Integer> needSet = new HashSet<Integer>(this.possibleValues);
-			needSet.removeAll(board.getSubgridValues(index));
-			need.add(needSet);
+	public boolean hasUniqueSolution(PackedSudokuBoard board) {
+		return this.countSolutions(board, 2) == 1;
+	}
+	
+	/**
+	 * Sets the listener to pass the statistics of every solve or count to.
+	 * Statistics are only kept while one is set.
+	 * 
+	 * @param statisticsListener the listener or null to stop keeping
+	 * statistics
+	 */
+	public void setStatisticsListener(SolveStatisticsListener statisticsListener) {
+		this.statisticsListener = statisticsListener;
+	}
+	
+	/**
+	 * Creates and starts the statistics for a solve if there is a listener
+	 * 
+	 * @return the statistics or null if none are being kept
+	 */
+	private SolveStatistics startStatistics() {
+		if (this.statisticsListener == null) {
+			return null;
 		}
 		
-		return need;
+		SolveStatistics statistics = new SolveStatistics();
+		statistics.start();
+		return statistics;
+	}
+	
+	/**
+	 * Stops the statistics of a solve and passes them to the listener
+	 * 
+	 * @param board the board solved
+	 * @param statistics the statistics or null if none were kept
+	 */
+	private void publishStatistics(PackedSudokuBoard board, SolveStatistics statistics) {
+		SolveStatisticsListener listener = this.statisticsListener;
+		if (statistics != null && listener != null) {
+			statistics.stop();
+			listener.solved(board, statistics);
+		}
+	}
+	
+	/**
+	 * Gets the propagation stages run before each guess, along with their
+	 * hit counters
+	 * 
+	 * @return
+	 */
+	public PropagationPipeline getPropagation() {
+		return this.propagation;
 	}
 }
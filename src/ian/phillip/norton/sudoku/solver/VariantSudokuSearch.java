@@ -0,0 +1,353 @@
+package ian.phillip.norton.sudoku.solver;
+
+import ian.phillip.norton.sudoku.board.ConstraintModel;
+import ian.phillip.norton.sudoku.board.GeneralSudokuBoard;
+
+/**
+ * Backtracking search over a single GeneralSudokuBoard under the rules of a
+ * ConstraintModel, changed in place.
+ * 
+ * This works as GeneralSudokuSearch does, keeping a candidate mask per blank
+ * location and a trail to backtrack along, but takes every rule from the
+ * model's flat tables.  Placing a value clears it from the location's peers,
+ * whichever rules make them peers, and checks that the location's cage can
+ * still reach its sum.  Before guessing, values with only one possible
+ * location left in a unit which must hold every value are placed.
+ * 
+ * A search is not safe to share between threads.
+ * 
+ * @author Ian Norton
+ * 
+ */
+class VariantSudokuSearch {
+	private final ConstraintModel model;
+	private final int cellCount;
+	private final int[] peerCells;
+	private final int[] unitCells;
+	private final GeneralSudokuBoard board;
+	private final long[] candidates;
+	/**
+	 * Locations changed in the order they were changed.  A placement is
+	 * logged as the complement of its location, a removed candidate as its
+	 * location with the removed bit in trailMasks.
+	 */
+	private final int[] trailCells;
+	private final long[] trailMasks;
+	private int trailSize;
+	
+	private int solutionLimit;
+	private int solutionCount;
+	private GeneralSudokuBoard firstSolution;
+	
+	/**
+	 * Creates a search over a copy of the given board
+	 * 
+	 * @param model the rules to solve under, for the board's box size
+	 * @param board
+	 */
+	VariantSudokuSearch(ConstraintModel model, GeneralSudokuBoard board) {
+		this.model = model;
+		this.cellCount = model.getGeometry().getCellCount();
+		this.peerCells = model.getPeerCells();
+		this.unitCells = model.getUnitCells();
+		this.board = new GeneralSudokuBoard(board);
+		
+		this.candidates = new long[this.cellCount];
+		// each candidate of each location can only be removed once on a path
+		// through the search, plus one entry per placement
+		this.trailCells = new int[this.cellCount * (model.getGeometry().getSize() + 1)];
+		this.trailMasks = new long[this.trailCells.length];
+		
+		for (int cell = 0; cell < this.cellCount; cell++) {
+			if (this.board.getCell(cell) == GeneralSudokuBoard.BLANK) {
+				long used = 0;
+				for (int index = model.getPeerOffset(cell); index < model.getPeerOffset(cell + 1); index++) {
+					int value = this.board.getCell(this.peerCells[index]);
+					if (value != GeneralSudokuBoard.BLANK) {
+						used |= 1L << (value - 1);
+					}
+				}
+				this.candidates[cell] = model.getGeometry().getAllValues() & ~used;
+			}
+		}
+	}
+	
+	/**
+	 * Searches for the first solution
+	 * 
+	 * @return the solution or null if there is none
+	 */
+	GeneralSudokuBoard solve() {
+		this.countSolutions(1);
+		
+		return this.firstSolution;
+	}
+	
+	/**
+	 * Searches for solutions until the limit is reached or there are no more
+	 * 
+	 * @param limit the number of solutions after which to stop
+	 * @return the number of solutions found, at most limit
+	 */
+	int countSolutions(int limit) {
+		this.solutionLimit = limit;
+		this.solutionCount = 0;
+		this.firstSolution = null;
+		
+		if (this.isConsistent()) {
+			this.search();
+		}
+		
+		return this.solutionCount;
+	}
+	
+	/**
+	 * Checks that no two givens break a rule and that every cage can still
+	 * reach its sum
+	 * 
+	 * @return
+	 */
+	private boolean isConsistent() {
+		for (int cell = 0; cell < this.cellCount; cell++) {
+			int value = this.board.getCell(cell);
+			if (value == GeneralSudokuBoard.BLANK) {
+				continue;
+			}
+			
+			for (int index = this.model.getPeerOffset(cell); index < this.model.getPeerOffset(cell + 1); index++) {
+				if (this.board.getCell(this.peerCells[index]) == value) {
+					return false;
+				}
+			}
+		}
+		for (int cage = 0; cage < this.model.getCages().size(); cage++) {
+			if (!this.canReachSum(cage)) {
+				return false;
+			}
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Fills the location with the fewest candidates if it has only one, or
+	 * any hidden singles.  When neither places anything tries each candidate
+	 * of the location with the fewest, lowest first.
+	 * The board is left as it was found unless the search stops.
+	 * 
+	 * @return true once the solution limit has been reached
+	 */
+	private boolean search() {
+		int mark = this.trailSize;
+		while (true) {
+			if (this.board.getFilledCount() == this.cellCount) {
+				return this.recordSolution(mark);
+			}
+			
+			int branchCell = -1;
+			int branchCount = Integer.MAX_VALUE;
+			for (int cell = 0; cell < this.cellCount; cell++) {
+				if (this.board.getCell(cell) == GeneralSudokuBoard.BLANK) {
+					int count = Long.bitCount(this.candidates[cell]);
+					if (count < branchCount) {
+						branchCell = cell;
+						branchCount = count;
+						if (count <= 1) {
+							// nothing can beat a single or a dead end
+							break;
+						}
+					}
+				}
+			}
+			
+			if (branchCount == 0) {
+				// with no valid values this branch is unsolvable
+				this.undo(mark);
+				return false;
+			} else if (branchCount == 1) {
+				// with only one valid value we must use this one
+				if (!this.place(branchCell, this.candidates[branchCell])) {
+					this.undo(mark);
+					return false;
+				}
+			} else {
+				int placed = this.placeHiddenSingles();
+				if (placed == PropagationStage.DEAD_END) {
+					this.undo(mark);
+					return false;
+				} else if (placed > 0) {
+					// look for naked singles again before guessing
+					continue;
+				}
+				
+				// check each branch, lowest value first
+				for (long remaining = this.candidates[branchCell]; remaining != 0; remaining &= remaining - 1) {
+					int branchMark = this.trailSize;
+					if (this.place(branchCell, remaining & -remaining) && this.search()) {
+						return true;
+					}
+					this.undo(branchMark);
+				}
+				
+				this.undo(mark);
+				return false;
+			}
+		}
+	}
+	
+	/**
+	 * Places every value with only one possible location left in a unit
+	 * which must hold every value
+	 * 
+	 * @return the number of values placed, or PropagationStage.DEAD_END if a
+	 * unit has a value with nowhere to go or a placement fails
+	 */
+	private int placeHiddenSingles() {
+		long allValues = this.model.getGeometry().getAllValues();
+		int placed = 0;
+		for (int unit = 0; unit < this.model.getFullUnitCount(); unit++) {
+			int start = this.model.getUnitOffset(unit);
+			int end = this.model.getUnitOffset(unit + 1);
+			long once = 0;
+			long twice = 0;
+			long filled = 0;
+			for (int index = start; index < end; index++) {
+				int cell = this.unitCells[index];
+				int value = this.board.getCell(cell);
+				if (value == GeneralSudokuBoard.BLANK) {
+					twice |= once & this.candidates[cell];
+					once |= this.candidates[cell];
+				} else {
+					filled |= 1L << (value - 1);
+				}
+			}
+			if ((once | filled) != allValues) {
+				return PropagationStage.DEAD_END;
+			}
+			
+			for (long hidden = once & ~twice & ~filled; hidden != 0; hidden &= hidden - 1) {
+				long valueMask = hidden & -hidden;
+				for (int index = start; index < end; index++) {
+					int cell = this.unitCells[index];
+					if ((this.candidates[cell] & valueMask) != 0 &&
+							this.board.getCell(cell) == GeneralSudokuBoard.BLANK) {
+						if (!this.place(cell, valueMask)) {
+							return PropagationStage.DEAD_END;
+						}
+						placed++;
+						break;
+					}
+				}
+			}
+		}
+		
+		return placed;
+	}
+	
+	/**
+	 * Counts the filled board as a solution, keeping a copy if it is the
+	 * first
+	 * 
+	 * @param mark the trail mark to unwind to if the search continues
+	 * @return true once the solution limit has been reached
+	 */
+	private boolean recordSolution(int mark) {
+		if (this.solutionCount++ == 0) {
+			this.firstSolution = new GeneralSudokuBoard(this.board);
+		}
+		if (this.solutionCount >= this.solutionLimit) {
+			return true;
+		}
+		
+		this.undo(mark);
+		return false;
+	}
+	
+	/**
+	 * Places a value and removes it from the candidates of every blank peer,
+	 * logging all of it on the trail
+	 * 
+	 * @param cell
+	 * @param valueMask the mask bit of the value to place
+	 * @return false if a peer was left without candidates or the location's
+	 * cage can no longer reach its sum
+	 */
+	private boolean place(int cell, long valueMask) {
+		this.board.setCell(cell, Long.numberOfTrailingZeros(valueMask) + 1);
+		this.trailCells[this.trailSize++] = ~cell;
+		
+		boolean consistent = true;
+		for (int index = this.model.getPeerOffset(cell); index < this.model.getPeerOffset(cell + 1); index++) {
+			int peer = this.peerCells[index];
+			if ((this.candidates[peer] & valueMask) != 0 && this.board.getCell(peer) == GeneralSudokuBoard.BLANK) {
+				this.candidates[peer] &= ~valueMask;
+				this.trailCells[this.trailSize] = peer;
+				this.trailMasks[this.trailSize++] = valueMask;
+				if (this.candidates[peer] == 0) {
+					consistent = false;
+				}
+			}
+		}
+		
+		int cage = this.model.getCageOf(cell);
+		
+		return consistent && (cage < 0 || this.canReachSum(cage));
+	}
+	
+	/**
+	 * Checks whether the blank locations of a cage can still make up what
+	 * is left of its sum.  With k blanks the rest of the sum must lie between
+	 * the k lowest and k highest values any of them could take.
+	 * 
+	 * @param cage
+	 * @return
+	 */
+	private boolean canReachSum(int cage) {
+		int unit = this.model.getCageUnit(cage);
+		int remaining = this.model.getCageSum(cage);
+		int blanks = 0;
+		long possible = 0;
+		for (int index = this.model.getUnitOffset(unit); index < this.model.getUnitOffset(unit + 1); index++) {
+			int cell = this.unitCells[index];
+			int value = this.board.getCell(cell);
+			if (value == GeneralSudokuBoard.BLANK) {
+				blanks++;
+				possible |= this.candidates[cell];
+			} else {
+				remaining -= value;
+			}
+		}
+		if (Long.bitCount(possible) < blanks) {
+			return false;
+		}
+		
+		int lowest = 0;
+		long low = possible;
+		for (int count = 0; count < blanks; count++, low &= low - 1) {
+			lowest += Long.numberOfTrailingZeros(low) + 1;
+		}
+		int highest = 0;
+		long high = possible;
+		for (int count = 0; count < blanks; count++, high &= ~Long.highestOneBit(high)) {
+			highest += Long.numberOfTrailingZeros(Long.highestOneBit(high)) + 1;
+		}
+		
+		return remaining >= lowest && remaining <= highest;
+	}
+	
+	/**
+	 * Undoes every placement and candidate removal since the trail mark
+	 * 
+	 * @param mark
+	 */
+	private void undo(int mark) {
+		while (this.trailSize > mark) {
+			int cell = this.trailCells[--this.trailSize];
+			if (cell < 0) {
+				this.board.setCell(~cell, GeneralSudokuBoard.BLANK);
+			} else {
+				this.candidates[cell] |= this.trailMasks[this.trailSize];
+			}
+		}
+	}
+}
@@ -0,0 +1,139 @@
+package ian.phillip.norton.sudoku.solver;
+
+import ian.phillip.norton.sudoku.board.ConstraintModel;
+import ian.phillip.norton.sudoku.board.GeneralSudokuBoard;
+import ian.phillip.norton.sudoku.board.PackedSudokuBoard;
+import ian.phillip.norton.sudoku.board.StandardSudokuBoard;
+import ian.phillip.norton.sudoku.board.SudokuBoard;
+import ian.phillip.norton.sudoku.exceptions.InvalidBoardTypeException;
+
+/**
+ * Solves boards under the rules of a ConstraintModel, such as Sudoku X,
+ * windoku, anti-knight, anti-king, or killer sudoku
+ * 
+ * The search is done by a VariantSudokuSearch which reads every rule from
+ * the model's precomputed unit and peer tables, so adding a variant to the
+ * model needs no change here.  Standard and packed boards are solved as
+ * general boards of box size 3.
+ * 
+ * @author Ian Norton
+ * 
+ */
+public class VariantSudokuSolver implements SudokuSolver, SolutionCounter {
+	private final ConstraintModel model;
+	
+	/**
+	 * Creates a solver for the given rules
+	 * 
+	 * @param model
+	 */
+	public VariantSudokuSolver(ConstraintModel model) {
+		this.model = model;
+	}
+	
+	/**
+	 * Attempts to solve the board.  Will throw an exception if the board
+	 * is not a type this solver handles
+	 * 
+	 * @return the solved sudoku board or null if no solution exists
+	 */
+	@Override
+	public SudokuBoard solve(SudokuBoard board) throws InvalidBoardTypeException {
+		if (board instanceof GeneralSudokuBoard) {
+			return this.solve((GeneralSudokuBoard) board);
+		} else if (board instanceof PackedSudokuBoard) {
+			GeneralSudokuBoard solved = this.solve(VariantSudokuSolver.toGeneralBoard((PackedSudokuBoard) board));
+			return solved == null ? null : VariantSudokuSolver.toPackedBoard(solved);
+		} else if (board instanceof StandardSudokuBoard) {
+			GeneralSudokuBoard solved = this.solve(
+					VariantSudokuSolver.toGeneralBoard(((StandardSudokuBoard) board).toPackedBoard()));
+			return solved == null ? null : VariantSudokuSolver.toPackedBoard(solved).toStandardBoard();
+		} else {
+			throw new InvalidBoardTypeException("Solver only handles general, standard, and packed boards");
+		}
+	}
+	
+	/**
+	 * Attempts to solve the given board.  The passed in board is not
+	 * modified.
+	 * 
+	 * @param board the board to solve, of the model's box size
+	 * @return the solved sudoku board or null if no solution exists
+	 */
+	public GeneralSudokuBoard solve(GeneralSudokuBoard board) {
+		return new VariantSudokuSearch(this.model, this.checkBoxSize(board)).solve();
+	}
+	
+	/**
+	 * Counts the solutions of the board, stopping once limit have been found.
+	 * Will throw an exception if the board is not a type this solver handles
+	 * 
+	 * @return the number of solutions found, at most limit
+	 */
+	@Override
+	public int countSolutions(SudokuBoard board, int limit) throws InvalidBoardTypeException {
+		if (board instanceof GeneralSudokuBoard) {
+			return this.countSolutions((GeneralSudokuBoard) board, limit);
+		} else if (board instanceof PackedSudokuBoard) {
+			return this.countSolutions(VariantSudokuSolver.toGeneralBoard((PackedSudokuBoard) board), limit);
+		} else if (board instanceof StandardSudokuBoard) {
+			return this.countSolutions(
+					VariantSudokuSolver.toGeneralBoard(((StandardSudokuBoard) board).toPackedBoard()), limit);
+		} else {
+			throw new InvalidBoardTypeException("Solver only handles general, standard, and packed boards");
+		}
+	}
+	
+	/**
+	 * Counts the solutions of the given board, stopping once limit have been
+	 * found.  The passed in board is not modified.
+	 * 
+	 * @param board the board to check, of the model's box size
+	 * @param limit the number of solutions after which to stop, at least 1
+	 * @return the number of solutions found, at most limit
+	 */
+	public int countSolutions(GeneralSudokuBoard board, int limit) {
+		if (limit < 1) {
+			throw new IllegalArgumentException("Solution limit must be at least 1");
+		}
+		
+		return new VariantSudokuSearch(this.model, this.checkBoxSize(board)).countSolutions(limit);
+	}
+	
+	public ConstraintModel getModel() {
+		return this.model;
+	}
+	
+	/**
+	 * Checks the board is the size the model's rules are for
+	 * 
+	 * @param board
+	 * @return the board
+	 */
+	private GeneralSudokuBoard checkBoxSize(GeneralSudokuBoard board) {
+		if (board.getBoxSize() != this.model.getGeometry().getBoxSize()) {
+			throw new IllegalArgumentException("Board has box size " + board.getBoxSize() + " but the rules are for " +
+					this.model.getGeometry().getBoxSize());
+		}
+		
+		return board;
+	}
+	
+	private static GeneralSudokuBoard toGeneralBoard(PackedSudokuBoard packed) {
+		GeneralSudokuBoard board = new GeneralSudokuBoard(PackedSudokuBoard.SUBGRID_SIZE);
+		for (int cell = 0; cell < PackedSudokuBoard.CELL_COUNT; cell++) {
+			board.setCell(cell, packed.getCell(cell));
+		}
+		
+		return board;
+	}
+	
+	private static PackedSudokuBoard toPackedBoard(GeneralSudokuBoard board) {
+		PackedSudokuBoard packed = new PackedSudokuBoard();
+		for (int cell = 0; cell < PackedSudokuBoard.CELL_COUNT; cell++) {
+			packed.setCell(cell, board.getCell(cell));
+		}
+		
+		return packed;
+	}
+}
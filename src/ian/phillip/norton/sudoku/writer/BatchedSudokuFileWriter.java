@@ -0,0 +1,293 @@
+package ian.phillip.norton.sudoku.writer;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.Flushable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import ian.phillip.norton.sudoku.board.PackedSudokuBoard;
+
+/**
+ * A long lived writer for the solutions of many standard puzzles, in the
+ * format written by StandardSudokuFileWriter.
+ * 
+ * By default each solution goes to its own file, written with a single
+ * channel write.  Given an aggregate file every solution is instead
+ * appended to that one file as a line naming the file it would have gone
+ * to, followed by the solution and a blank line, and output is collected in
+ * a large buffer so many solutions share each write.
+ * 
+ * Writes are grouped into batches.  At the end of each batch, and on flush
+ * or close, any buffered output is written and, if syncing, everything
+ * written in the batch is forced to the storage device together.  Until
+ * then a crash may lose the batch.
+ * 
+ * File names and messages are written in the platform encoding, as
+ * StandardSudokuFileWriter writes them, so an invalid character reported
+ * by a loader appears as it did in the puzzle file.
+ * 
+ * Unlike StandardSudokuFileWriter failures are thrown to the caller.  A
+ * writer is not safe to share between threads.
+ * 
+ * @author Ian Norton
+ * 
+ */
+public class BatchedSudokuFileWriter implements Closeable, Flushable {
+	/**
+	 * Number of solutions written between flushes unless another is given
+	 */
+	public static final int DEFAULT_BATCH_SIZE = 256;
+	private static final int BUFFER_SIZE = 64 * 1024;
+	private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(StandardCharsets.US_ASCII);
+	private static final Charset TEXT_CHARSET = Charset.defaultCharset();
+	
+	/**
+	 * The file every solution is appended to, null to write each to its own
+	 * file
+	 */
+	private final FileChannel aggregate;
+	private final int batchSize;
+	private final boolean sync;
+	private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+	/**
+	 * Where the buffer is drained to, the aggregate or the file being written
+	 */
+	private FileChannel target;
+	/**
+	 * Files written in this batch, held open until they are synced
+	 */
+	private final List<FileChannel> unsynced = new ArrayList<FileChannel>();
+	private int batched;
+	
+	/**
+	 * Constructs a writer putting each solution in its own file
+	 * 
+	 * @param batchSize number of solutions between flushes
+	 * @param sync whether to force each batch to the storage device
+	 */
+	public BatchedSudokuFileWriter(int batchSize, boolean sync) {
+		this((FileChannel) null, batchSize, sync);
+	}
+	
+	/**
+	 * Constructs a writer appending every solution to one file, replacing
+	 * its contents
+	 * 
+	 * @param aggregateFile
+	 * @param batchSize number of solutions between flushes
+	 * @param sync whether to force each batch to the storage device
+	 * @throws IOException if the file cannot be opened
+	 */
+	public BatchedSudokuFileWriter(File aggregateFile, int batchSize, boolean sync) throws IOException {
+		this(FileChannel.open(aggregateFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING), batchSize, sync);
+	}
+	
+	private BatchedSudokuFileWriter(FileChannel aggregate, int batchSize, boolean sync) {
+		if (batchSize < 1) {
+			throw new IllegalArgumentException("Batch size must be at least 1, not " + batchSize);
+		}
+		
+		this.aggregate = aggregate;
+		this.target = aggregate;
+		this.batchSize = batchSize;
+		this.sync = sync;
+	}
+	
+	/**
+	 * Writes a board as the solution for a file, or "No Solution" if it is
+	 * null
+	 * 
+	 * @param file the file the solution belongs in
+	 * @param board
+	 * @throws IOException
+	 */
+	public void write(File file, PackedSudokuBoard board) throws IOException {
+		if (board == null) {
+			this.writeMessage(file, "No Solution");
+			return;
+		}
+		
+		this.startRecord(file);
+		for (int row = 0; row < PackedSudokuBoard.BOARD_SIZE; row++) {
+			this.ensureSpace(PackedSudokuBoard.BOARD_SIZE + LINE_SEPARATOR.length);
+			for (int column = 0; column < PackedSudokuBoard.BOARD_SIZE; column++) {
+				int value = board.getValue(row, column);
+				this.buffer.put(value == PackedSudokuBoard.BLANK ? (byte) 'X' : (byte) ('0' + value));
+			}
+			this.buffer.put(LINE_SEPARATOR);
+		}
+		this.endRecord();
+	}
+	
+	/**
+	 * Writes a message in place of the solution for a file
+	 * 
+	 * @param file the file the message belongs in
+	 * @param message
+	 * @throws IOException
+	 */
+	public void writeMessage(File file, String message) throws IOException {
+		this.startRecord(file);
+		this.putText(message);
+		if (this.aggregate != null) {
+			// keep records on their own lines
+			this.ensureSpace(LINE_SEPARATOR.length);
+			this.buffer.put(LINE_SEPARATOR);
+		}
+		this.endRecord();
+	}
+	
+	/**
+	 * Writes everything buffered so far and ends the batch, syncing it if
+	 * asked to
+	 */
+	@Override
+	public void flush() throws IOException {
+		try {
+			if (this.aggregate != null) {
+				this.drain();
+				if (this.sync) {
+					this.aggregate.force(false);
+				}
+			} else if (this.sync) {
+				for (FileChannel channel : this.unsynced) {
+					channel.force(false);
+				}
+			}
+		} finally {
+			this.closeUnsynced();
+			this.batched = 0;
+		}
+	}
+	
+	@Override
+	public void close() throws IOException {
+		try {
+			this.flush();
+		} finally {
+			if (this.aggregate != null) {
+				this.aggregate.close();
+			}
+		}
+	}
+	
+	/**
+	 * Opens the file for a solution, or writes its name to the aggregate
+	 * 
+	 * @param file
+	 * @throws IOException
+	 */
+	private void startRecord(File file) throws IOException {
+		if (this.aggregate != null) {
+			this.putText(file.getName());
+			this.ensureSpace(LINE_SEPARATOR.length);
+			this.buffer.put(LINE_SEPARATOR);
+			return;
+		}
+		
+		this.target = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING);
+		if (this.sync) {
+			this.unsynced.add(this.target);
+		}
+	}
+	
+	/**
+	 * Finishes the current solution, writing it out if it has its own file
+	 * and ending the batch if it is full
+	 * 
+	 * @throws IOException
+	 */
+	private void endRecord() throws IOException {
+		if (this.aggregate != null) {
+			this.ensureSpace(LINE_SEPARATOR.length);
+			this.buffer.put(LINE_SEPARATOR);
+		} else {
+			try {
+				this.drain();
+			} finally {
+				if (!this.sync) {
+					this.target.close();
+				}
+				this.target = null;
+			}
+		}
+		
+		if (++this.batched >= this.batchSize) {
+			this.flush();
+		}
+	}
+	
+	/**
+	 * Puts a string into the buffer in the platform encoding, draining the
+	 * buffer as often as it fills
+	 * 
+	 * @param text
+	 * @throws IOException
+	 */
+	private void putText(String text) throws IOException {
+		byte[] bytes = text.getBytes(TEXT_CHARSET);
+		for (int offset = 0; offset < bytes.length;) {
+			if (!this.buffer.hasRemaining()) {
+				this.drain();
+			}
+			int length = Math.min(bytes.length - offset, this.buffer.remaining());
+			this.buffer.put(bytes, offset, length);
+			offset += length;
+		}
+	}
+	
+	private void ensureSpace(int bytes) throws IOException {
+		if (this.buffer.remaining() < bytes) {
+			this.drain();
+		}
+	}
+	
+	/**
+	 * Writes the buffer to the current target
+	 * 
+	 * @throws IOException
+	 */
+	private void drain() throws IOException {
+		this.buffer.flip();
+		try {
+			while (this.buffer.hasRemaining()) {
+				this.target.write(this.buffer);
+			}
+		} finally {
+			this.buffer.clear();
+		}
+	}
+	
+	/**
+	 * Closes every file held open for syncing, throwing the first failure
+	 * once all have been tried
+	 * 
+	 * @throws IOException
+	 */
+	private void closeUnsynced() throws IOException {
+		IOException failure = null;
+		for (FileChannel channel : this.unsynced) {
+			try {
+				channel.close();
+			} catch (IOException e) {
+				if (failure == null) {
+					failure = e;
+				}
+			}
+		}
+		this.unsynced.clear();
+		
+		if (failure != null) {
+			throw failure;
+		}
+	}
+}
@@ -0,0 +1,189 @@
+package ian.phillip.norton.sudoku.writer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.Flushable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import ian.phillip.norton.sudoku.board.PackedSudokuBoard;
+import ian.phillip.norton.sudoku.loader.BinarySudokuFileLoader;
+
+/**
+ * Class to write standard sudoku boards in the packed binary format, the
+ * counterpart of BinarySudokuFileLoader which describes the format.  Each
+ * board takes BinarySudokuFileLoader.RECORD_SIZE bytes.
+ * 
+ * If null is passed it is taken to mean no solution and a record saying so
+ * is written instead.  Records may be grouped into named sections, which
+ * are listed in the index.
+ * 
+ * Records are collected in a fixed size buffer and written to the file in
+ * large blocks, so files of any size are written in constant memory apart
+ * from the index.  The index and the header are only written when the writer
+ * is closed; until then the file cannot be loaded.  Failures are thrown to
+ * the caller.
+ * 
+ * @author Ian Norton
+ * 
+ */
+public class BinarySudokuFileWriter implements Closeable, Flushable {
+	private static final int BUFFER_SIZE = 64 * 1024;
+	private static final int RECORD_SIZE = BinarySudokuFileLoader.RECORD_SIZE;
+	
+	private final FileChannel channel;
+	private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+	private final List<String> sectionNames = new ArrayList<String>();
+	private final List<Long> sectionStarts = new ArrayList<Long>();
+	private long recordCount = 0;
+	
+	/**
+	 * Constructs a writer replacing the contents of the given file
+	 * 
+	 * @param file
+	 * @throws IOException if the file cannot be opened
+	 */
+	public BinarySudokuFileWriter(File file) throws IOException {
+		this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING);
+		this.channel.position(BinarySudokuFileLoader.HEADER_SIZE);
+	}
+	
+	/**
+	 * Starts a new section with the records written from now on, ending the
+	 * previous one
+	 * 
+	 * @param name
+	 */
+	public void startSection(String name) {
+		if (name.getBytes(StandardCharsets.UTF_8).length > 0xFFFF) {
+			throw new IllegalArgumentException("Section name is too long");
+		}
+		
+		this.sectionNames.add(name);
+		this.sectionStarts.add(this.recordCount);
+	}
+	
+	/**
+	 * Writes a record holding the board, or saying there is no solution if it
+	 * is null
+	 * 
+	 * @param board
+	 * @throws IOException
+	 */
+	public void write(PackedSudokuBoard board) throws IOException {
+		if (board == null) {
+			this.writeStatus(BinarySudokuFileLoader.STATUS_NO_SOLUTION);
+			return;
+		}
+		
+		this.ensureSpace(RECORD_SIZE);
+		for (int cell = 0; cell < PackedSudokuBoard.CELL_COUNT; cell += 2) {
+			// the status of a board is 0 so the last location is followed by
+			// nothing
+			int low = cell + 1 < PackedSudokuBoard.CELL_COUNT ? board.getCell(cell + 1) :
+					BinarySudokuFileLoader.STATUS_BOARD;
+			this.buffer.put((byte) (board.getCell(cell) << 4 | low));
+		}
+		this.recordCount++;
+	}
+	
+	/**
+	 * Writes a record for a puzzle which could not be solved.  The reason is
+	 * not kept.
+	 * 
+	 * @throws IOException
+	 */
+	public void writeFailed() throws IOException {
+		this.writeStatus(BinarySudokuFileLoader.STATUS_FAILED);
+	}
+	
+	public long getRecordCount() {
+		return this.recordCount;
+	}
+	
+	/**
+	 * Writes every record buffered so far to the file
+	 */
+	@Override
+	public void flush() throws IOException {
+		this.buffer.flip();
+		while (this.buffer.hasRemaining()) {
+			this.channel.write(this.buffer);
+		}
+		this.buffer.clear();
+	}
+	
+	/**
+	 * Writes the remaining records, the index, and the header
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			this.flush();
+			
+			long indexOffset = this.channel.position();
+			ByteArrayOutputStream indexBytes = new ByteArrayOutputStream();
+			DataOutputStream index = new DataOutputStream(indexBytes);
+			for (int section = 0; section < this.sectionNames.size(); section++) {
+				long start = this.sectionStarts.get(section);
+				long end = section + 1 < this.sectionStarts.size() ? this.sectionStarts.get(section + 1) :
+						this.recordCount;
+				byte[] name = this.sectionNames.get(section).getBytes(StandardCharsets.UTF_8);
+				index.writeShort(name.length);
+				index.write(name);
+				index.writeLong(start);
+				index.writeLong(end - start);
+			}
+			BinarySudokuFileWriter.writeFully(this.channel, ByteBuffer.wrap(indexBytes.toByteArray()));
+			
+			ByteBuffer header = ByteBuffer.allocate(BinarySudokuFileLoader.HEADER_SIZE);
+			header.put(BinarySudokuFileLoader.MAGIC);
+			header.putShort(BinarySudokuFileLoader.VERSION);
+			header.putShort((short) RECORD_SIZE);
+			header.putLong(this.recordCount);
+			header.putLong(indexOffset);
+			header.putInt(this.sectionNames.size());
+			header.putInt(0);
+			header.flip();
+			this.channel.position(0);
+			BinarySudokuFileWriter.writeFully(this.channel, header);
+		} finally {
+			this.channel.close();
+		}
+	}
+	
+	/**
+	 * Writes a record without a board
+	 * 
+	 * @param status
+	 * @throws IOException
+	 */
+	private void writeStatus(int status) throws IOException {
+		this.ensureSpace(RECORD_SIZE);
+		for (int index = 0; index < RECORD_SIZE - 1; index++) {
+			this.buffer.put((byte) 0);
+		}
+		this.buffer.put((byte) status);
+		this.recordCount++;
+	}
+	
+	private void ensureSpace(int bytes) throws IOException {
+		if (this.buffer.remaining() < bytes) {
+			this.flush();
+		}
+	}
+	
+	private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+	}
+}
@@ -0,0 +1,73 @@
+package ian.phillip.norton.sudoku.writer;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+
+import ian.phillip.norton.sudoku.board.GeneralSudokuBoard;
+
+/**
+ * 
+ * Class to write sudoku boards of any box size to files in the format read
+ * by GeneralSudokuBoardFileLoader.  Each row is written on its own line with
+ * the values separated by spaces and right aligned so the columns line up.
+ * Blank locations are written as X.
+ * 
+ * If null is passed it is taken to mean no solution so "No Solution" is
+ * written to the file instead.  Failures are thrown to the caller.
+ * 
+ * @author Ian Norton
+ * 
+ */
+public class GeneralSudokuFileWriter {
+	private File file;
+	
+	public GeneralSudokuFileWriter(File file) {
+		this.file = file;
+	}
+	
+	/**
+	 * Convenience method to write a board to a file with the given filename
+	 * @param filename
+	 * @param board
+	 * @throws IOException
+	 */
+	public static void writeToFile(String filename, GeneralSudokuBoard board) throws IOException {
+		GeneralSudokuFileWriter writer = new GeneralSudokuFileWriter(new File(filename));
+		writer.write(board);
+	}
+	
+	/**
+	 * Output a board representation to the set file
+	 * @param board
+	 * @throws IOException
+	 */
+	public void write(GeneralSudokuBoard board) throws IOException {
+		try (BufferedWriter writer = new BufferedWriter(new FileWriter(this.file))) {
+			if (board == null) {
+				writer.write("No Solution");
+				return;
+			}
+			
+			int width = Integer.toString(board.getSize()).length();
+			StringBuilder line = new StringBuilder();
+			for (int row = 0; row < board.getSize(); row++) {
+				line.setLength(0);
+				for (int column = 0; column < board.getSize(); column++) {
+					int value = board.getValue(row, column);
+					String token = value == GeneralSudokuBoard.BLANK ? "X" : Integer.toString(value);
+					if (column > 0) {
+						line.append(' ');
+					}
+					for (int padding = token.length(); padding < width; padding++) {
+						line.append(' ');
+					}
+					line.append(token);
+				}
+				writer.write(line.toString());
+				writer.write(System.lineSeparator());
+			}
+		}
+	}
+}
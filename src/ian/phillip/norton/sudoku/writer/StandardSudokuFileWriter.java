@@ -5,6 +5,7 @@ import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 
+import ian.phillip.norton.sudoku.board.PackedSudokuBoard;
 import ian.phillip.norton.sudoku.board.StandardSudokuBoard;
 
 /**
@@ -18,6 +19,9 @@ import ian.phillip.norton.sudoku.board.StandardSudokuBoard;
  * 
  * Also may write arbitrary strings to the set output file
  * 
+ * Failures are thrown to the caller.  To write many solutions use
+ * BatchedSudokuFileWriter, which avoids opening a writer for each.
+ * 
  * @author Ian Norton
  *
  */
@@ -36,8 +40,9 @@ public class StandardSudokuFileWriter {
 	 * Convenience method to write a board to a file with the given filename
 	 * @param filename
 	 * @param board
+	 * @throws IOException
 	 */
-	public static void writeToFile(String filename, StandardSudokuBoard board) {
+	public static void writeToFile(String filename, StandardSudokuBoard board) throws IOException {
 		StandardSudokuFileWriter writer = new StandardSudokuFileWriter(filename);
 		writer.write(board);
 	}
@@ -46,8 +51,32 @@ public class StandardSudokuFileWriter {
 	 * Convenience method to write a board to a file
 	 * @param filename
 	 * @param board
+	 * @throws IOException
 	 */
-	public static void writeToFile(File file, StandardSudokuBoard board) {
+	public static void writeToFile(File file, StandardSudokuBoard board) throws IOException {
+		StandardSudokuFileWriter writer = new StandardSudokuFileWriter(file);
+		writer.write(board);
+	}
+	
+	/**
+	 * Convenience method to write a packed board to a file with the given
+	 * filename
+	 * @param filename
+	 * @param board
+	 * @throws IOException
+	 */
+	public static void writeToFile(String filename, PackedSudokuBoard board) throws IOException {
+		StandardSudokuFileWriter writer = new StandardSudokuFileWriter(filename);
+		writer.write(board);
+	}
+	
+	/**
+	 * Convenience method to write a packed board to a file
+	 * @param file
+	 * @param board
+	 * @throws IOException
+	 */
+	public static void writeToFile(File file, PackedSudokuBoard board) throws IOException {
 		StandardSudokuFileWriter writer = new StandardSudokuFileWriter(file);
 		writer.write(board);
 	}
@@ -56,8 +85,9 @@ public class StandardSudokuFileWriter {
 	 * Convenience method to write a message to a file with the given filename
 	 * @param filename
 	 * @param message
+	 * @throws IOException
 	 */
-	public static void writeMessageToFile(String filename, String message) {
+	public static void writeMessageToFile(String filename, String message) throws IOException {
 		StandardSudokuFileWriter.writeMessageToFile(new File(filename), message);
 	}
 	
@@ -65,8 +95,9 @@ public class StandardSudokuFileWriter {
 	 * Convenience method to write a message to a file
 	 * @param filename
 	 * @param message
+	 * @throws IOException
 	 */
-	public static void writeMessageToFile(File file, String message) {
+	public static void writeMessageToFile(File file, String message) throws IOException {
 		StandardSudokuFileWriter writer = new StandardSudokuFileWriter(file);
 		writer.write(message);
 	}
@@ -74,21 +105,29 @@ public class StandardSudokuFileWriter {
 	/**
 	 * Output a board representation to the set file
 	 * @param board
+	 * @throws IOException
 	 */
-	public void write(StandardSudokuBoard board) {
+	public void write(StandardSudokuBoard board) throws IOException {
+		this.write(board == null ? (PackedSudokuBoard) null : board.toPackedBoard());
+	}
+	
+	/**
+	 * Output a packed board representation to the set file
+	 * @param board
+	 * @throws IOException
+	 */
+	public void write(PackedSudokuBoard board) throws IOException {
 		this.writeBoilerplate(writer -> {
 			if (board == null) {
 				writer.write("No Solution");
 			} else {
-				for (int row = 0; row < StandardSudokuBoard.BOARD_SIZE; row++) {
-					for (int column = 0; column < StandardSudokuBoard.BOARD_SIZE; column++) {
-						Integer value = board.getValue(row, column);
-						if (value == null) {
-							writer.write("X");
-						} else {
-							writer.write(value.toString());
-						}
+				char[] line = new char[PackedSudokuBoard.BOARD_SIZE];
+				for (int row = 0; row < PackedSudokuBoard.BOARD_SIZE; row++) {
+					for (int column = 0; column < PackedSudokuBoard.BOARD_SIZE; column++) {
+						int value = board.getValue(row, column);
+						line[column] = value == PackedSudokuBoard.BLANK ? 'X' : (char) ('0' + value);
 					}
+					writer.write(line);
 					writer.write(System.lineSeparator());
 				}
 			}
@@ -98,8 +137,9 @@ public class StandardSudokuFileWriter {
 	/**
 	 * Output a string to the set file
 	 * @param str
+	 * @throws IOException
 	 */
-	public void write(String str) {
+	public void write(String str) throws IOException {
 		this.writeBoilerplate(writer -> {
 			writer.write(str);
 		});
@@ -116,22 +156,11 @@ public class StandardSudokuFileWriter {
 	 * boilerplate needed
 	 * 
 	 * @param writeFn
+	 * @throws IOException if the file could not be written or closed
 	 */
-	private void writeBoilerplate(StandardSudokuFileWriter.BoilerplateWriter writeFn) {
-		BufferedWriter writer = null;
-		try {
-			writer = new BufferedWriter(new FileWriter(this.file));		
+	private void writeBoilerplate(StandardSudokuFileWriter.BoilerplateWriter writeFn) throws IOException {
+		try (BufferedWriter writer = new BufferedWriter(new FileWriter(this.file))) {
 			writeFn.writeStuff(writer);
-		} catch (IOException ioe) {
-			// do nothing
-		} finally {
-			if (writer != null) {
-				try {
-					writer.close();
-				} catch (IOException ioe) {
-					//do nothing
-				}
-			}
 		}
 	}
 	
@@ -0,0 +1,143 @@
+package ian.phillip.norton.sudoku.writer;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.Flushable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+import ian.phillip.norton.sudoku.board.PackedSudokuBoard;
+
+/**
+ * Class to write standard sudoku boards one per line, the counterpart of
+ * StandardSudokuLineFileLoader.  Each board is written as its 81 locations in
+ * row major order with 1-9 for filled locations and X for blanks.
+ * 
+ * If null is passed it is taken to mean no solution so "No Solution" is
+ * written on the line instead.  Messages may also be written in place of a
+ * board; any line breaks in them are replaced so every input line has
+ * exactly one output line.  Messages are written in the platform encoding,
+ * as BatchedSudokuFileWriter writes them.  A line may start with a tag, such as the number
+ * of the puzzle it is for, separated from the rest by a tab.
+ * 
+ * Output is collected in a fixed size buffer and written to the channel in
+ * large blocks.  Failures are thrown to the caller.
+ * 
+ * @author Ian Norton
+ * 
+ */
+public class StandardSudokuLineFileWriter implements Closeable, Flushable {
+	private static final int BUFFER_SIZE = 64 * 1024;
+	private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(StandardCharsets.US_ASCII);
+	private static final Charset TEXT_CHARSET = Charset.defaultCharset();
+	
+	private final WritableByteChannel channel;
+	private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+	
+	/**
+	 * Constructs a writer replacing the contents of the given file
+	 * 
+	 * @param file
+	 * @throws IOException if the file cannot be opened
+	 */
+	public StandardSudokuLineFileWriter(File file) throws IOException {
+		this(FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING));
+	}
+	
+	/**
+	 * Constructs a writer writing to the given channel
+	 * 
+	 * @param channel
+	 */
+	public StandardSudokuLineFileWriter(WritableByteChannel channel) {
+		this.channel = channel;
+	}
+	
+	/**
+	 * Writes a line holding the board, or "No Solution" if it is null
+	 * 
+	 * @param board
+	 * @throws IOException
+	 */
+	public void write(PackedSudokuBoard board) throws IOException {
+		if (board == null) {
+			this.writeMessage("No Solution");
+			return;
+		}
+		
+		this.ensureSpace(PackedSudokuBoard.CELL_COUNT + LINE_SEPARATOR.length);
+		for (int index = 0; index < PackedSudokuBoard.CELL_COUNT; index++) {
+			int value = board.getCell(index);
+			this.buffer.put(value == PackedSudokuBoard.BLANK ? (byte) 'X' : (byte) ('0' + value));
+		}
+		this.buffer.put(LINE_SEPARATOR);
+	}
+	
+	/**
+	 * Writes a line holding the message
+	 * 
+	 * @param message
+	 * @throws IOException
+	 */
+	public void writeMessage(String message) throws IOException {
+		byte[] bytes = message.replace('\n', ' ').replace('\r', ' ').getBytes(TEXT_CHARSET);
+		for (int offset = 0; offset < bytes.length;) {
+			if (!this.buffer.hasRemaining()) {
+				this.flush();
+			}
+			int length = Math.min(bytes.length - offset, this.buffer.remaining());
+			this.buffer.put(bytes, offset, length);
+			offset += length;
+		}
+		this.ensureSpace(LINE_SEPARATOR.length);
+		this.buffer.put(LINE_SEPARATOR);
+	}
+	
+	/**
+	 * Writes a tag and a tab at the start of the next line
+	 * 
+	 * @param tag
+	 * @throws IOException
+	 */
+	public void writeTag(long tag) throws IOException {
+		String text = Long.toString(tag);
+		this.ensureSpace(text.length() + 1);
+		for (int index = 0; index < text.length(); index++) {
+			this.buffer.put((byte) text.charAt(index));
+		}
+		this.buffer.put((byte) '\t');
+	}
+	
+	/**
+	 * Writes everything buffered so far to the channel
+	 */
+	@Override
+	public void flush() throws IOException {
+		this.buffer.flip();
+		while (this.buffer.hasRemaining()) {
+			this.channel.write(this.buffer);
+		}
+		this.buffer.clear();
+	}
+	
+	@Override
+	public void close() throws IOException {
+		try {
+			this.flush();
+		} finally {
+			this.channel.close();
+		}
+	}
+	
+	private void ensureSpace(int bytes) throws IOException {
+		if (this.buffer.remaining() < bytes) {
+			this.flush();
+		}
+	}
+}